@@ -0,0 +1,321 @@
+package sistemalivraria.dados;
+
+import java.util.AbstractList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import sistemalivraria.entidades.Editora;
+import sistemalivraria.entidades.Livro;
+
+/**
+ * Cache da listagem completa do catálogo (livros e editoras), compartilhado pelo
+ * processo. Cada listagem é um retrato imutável com número de versão; qualquer
+ * escrita incrementa a versão, e uma carga iniciada antes da escrita não é
+ * publicada (evita guardar dados já desatualizados).
+ *
+ * Inclusões, alterações e exclusões de livros invalidam o retrato de livros
+ * (a ordem por título pode mudar). Vendas apenas ajustam o estoque: os ajustes
+ * ficam acumulados por livro e são aplicados de uma vez na próxima leitura (uma
+ * cópia do retrato por leitura, não por venda), sem recarregar o catálogo do
+ * banco. Como o ajuste é relativo, nenhuma carga de livros é publicada enquanto
+ * houver baixa de estoque em andamento (ver iniciarBaixaEstoque): uma carga que
+ * já lesse o estoque baixado receberia o ajuste de novo.
+ *
+ * Alterações feitas por outros computadores (vendas, importações, cadastro) não
+ * passam por aqui; por isso as listagens expiram após um tempo de vida (TTL)
+ * contado da carga do banco, como no CacheEditoras.
+ *
+ * Livro e Editora têm setters: as listagens devolvem uma cópia de cada item
+ * lido, para que uma tela que altere o objeto não altere o cache.
+ */
+public final class CacheCatalogo {
+
+    private static final CacheCatalogo INSTANCIA = new CacheCatalogo(60 * 1000L);
+
+    private volatile long ttlMs; // 0 = sem expiração
+    private long versao = 0;
+    private int baixasEmAndamento = 0;
+    private volatile RetratoLivros livros = null;
+    private volatile RetratoEditoras editoras = null;
+
+    // Variação de estoque por ID de livro ainda não aplicada ao retrato de livros
+    private final Map<Integer, Integer> ajustesEstoque = new HashMap<>();
+    private volatile boolean temAjustesEstoque = false;
+
+    private CacheCatalogo(long ttlMs) {
+        this.ttlMs = ttlMs;
+    }
+
+    /** @return O cache do catálogo do processo. */
+    public static CacheCatalogo getInstancia() {
+        return INSTANCIA;
+    }
+
+    /**
+     * Altera o tempo de vida das listagens.
+     *
+     * @param ttlMs Tempo de vida em milissegundos, contado da carga do banco (0 = sem expiração).
+     */
+    public synchronized void configurar(long ttlMs) {
+        if (ttlMs < 0) {
+            throw new IllegalArgumentException("Tempo de vida do cache do catálogo inválido.");
+        }
+        this.ttlMs = ttlMs;
+    }
+
+    /** @return A versão atual; deve ser lida antes de carregar a listagem do banco. */
+    public synchronized long getVersao() {
+        return versao;
+    }
+
+    /**
+     * @return A listagem de livros em cache (somente leitura, com cópias dos livros),
+     *         ou null se não houver ou tiver expirado.
+     */
+    public List<Livro> getLivros() {
+        if (temAjustesEstoque) {
+            aplicarAjustesEstoque();
+        }
+        RetratoLivros retrato = livros;
+        return (retrato != null && !expirado(retrato.carregadoEm)) ? retrato.lista : null;
+    }
+
+    /**
+     * @param idLivro ID do livro.
+     * @return Cópia do livro no retrato em cache, ou null se não houver retrato
+     *         (ou tiver expirado) ou o livro não estiver nele.
+     */
+    public Livro getLivro(int idLivro) {
+        if (temAjustesEstoque) {
+            aplicarAjustesEstoque();
+        }
+        RetratoLivros retrato = livros;
+        if (retrato == null || expirado(retrato.carregadoEm)) {
+            return null;
+        }
+        Integer posicao;
+        synchronized (this) {
+            posicao = retrato.posicaoPorId().get(idLivro);
+        }
+        return (posicao != null) ? copiar(retrato.itens[posicao]) : null;
+    }
+
+    /**
+     * @return A listagem de editoras em cache (somente leitura, com cópias das editoras),
+     *         ou null se não houver ou tiver expirado.
+     */
+    public List<Editora> getEditoras() {
+        RetratoEditoras retrato = editoras;
+        return (retrato != null && !expirado(retrato.carregadoEm)) ? retrato.lista : null;
+    }
+
+    /**
+     * Publica a listagem de livros carregada do banco, se nada mudou desde getVersao().
+     *
+     * @param versaoLida Versão lida antes da carga.
+     * @param lista Livros em ordem de título.
+     * @return A listagem somente leitura (publicada ou não).
+     */
+    public synchronized List<Livro> publicarLivros(long versaoLida, List<Livro> lista) {
+        Livro[] itens = new Livro[lista.size()];
+        for (int i = 0; i < itens.length; i++) {
+            itens[i] = copiar(lista.get(i)); // O chamador pode alterar os objetos que passou
+        }
+        RetratoLivros retrato = new RetratoLivros(itens, null, System.currentTimeMillis());
+        if (versaoLida == versao && baixasEmAndamento == 0) {
+            livros = retrato;
+            descartarAjustesEstoque(); // Já refletidos na carga, feita depois deles
+        }
+        return retrato.lista;
+    }
+
+    /**
+     * Publica a listagem de editoras carregada do banco, se nada mudou desde getVersao().
+     *
+     * @param versaoLida Versão lida antes da carga.
+     * @param lista Editoras em ordem de nome.
+     * @return A listagem somente leitura (publicada ou não).
+     */
+    public synchronized List<Editora> publicarEditoras(long versaoLida, List<Editora> lista) {
+        Editora[] itens = new Editora[lista.size()];
+        for (int i = 0; i < itens.length; i++) {
+            itens[i] = copiar(lista.get(i));
+        }
+        RetratoEditoras retrato = new RetratoEditoras(itens, System.currentTimeMillis());
+        if (versaoLida == versao) {
+            editoras = retrato;
+        }
+        return retrato.lista;
+    }
+
+    /** Descarta a listagem de livros (livro incluído, alterado ou excluído). */
+    public synchronized void invalidarLivros() {
+        versao++;
+        livros = null;
+        descartarAjustesEstoque();
+    }
+
+    /** Descarta a listagem de editoras (editora incluída, alterada ou excluída). */
+    public synchronized void invalidarEditoras() {
+        versao++;
+        editoras = null;
+    }
+
+    /**
+     * Marca o início de uma baixa de estoque no banco, antes de qualquer escrita.
+     * Deve ser seguido de encerrarBaixaEstoque() em um finally, depois dos
+     * ajustarEstoque() da baixa.
+     */
+    public synchronized void iniciarBaixaEstoque() {
+        versao++;
+        baixasEmAndamento++;
+    }
+
+    /** Marca o fim de uma baixa iniciada com iniciarBaixaEstoque(), com ou sem sucesso. */
+    public synchronized void encerrarBaixaEstoque() {
+        versao++; // Cargas que começaram durante a baixa podem ter lido o estoque já baixado
+        baixasEmAndamento--;
+    }
+
+    /**
+     * Ajusta o estoque de um livro no retrato atual, sem recarregar o catálogo.
+     * O ajuste é só anotado (custo constante, chamado a cada venda de um lote da
+     * gravação agrupada) e aplicado na próxima leitura da listagem.
+     * Deve ser chamado após o commit da alteração de estoque no banco e antes de
+     * encerrarBaixaEstoque().
+     *
+     * @param idLivro ID do livro.
+     * @param delta Variação do estoque (ex: -1 em uma venda).
+     */
+    public synchronized void ajustarEstoque(int idLivro, int delta) {
+        versao++; // Cargas em andamento leram o estoque antigo: não devem ser publicadas
+        if (livros == null) {
+            return;
+        }
+        ajustesEstoque.merge(idLivro, delta, Integer::sum);
+        temAjustesEstoque = true;
+    }
+
+    // Copia o retrato uma vez com todos os ajustes anotados desde a última leitura
+    private synchronized void aplicarAjustesEstoque() {
+        RetratoLivros atual = livros;
+        if (atual == null || ajustesEstoque.isEmpty()) {
+            descartarAjustesEstoque();
+            return;
+        }
+        Livro[] itens = atual.itens.clone();
+        for (Map.Entry<Integer, Integer> ajuste : ajustesEstoque.entrySet()) {
+            Integer posicao = atual.posicaoPorId().get(ajuste.getKey());
+            if (posicao != null) {
+                Livro livro = copiar(itens[posicao]);
+                livro.setEstoque(livro.getEstoque() + ajuste.getValue());
+                itens[posicao] = livro;
+            }
+        }
+        livros = new RetratoLivros(itens, atual.posicaoPorId(), atual.carregadoEm);
+        descartarAjustesEstoque();
+    }
+
+    private void descartarAjustesEstoque() {
+        ajustesEstoque.clear();
+        temAjustesEstoque = false;
+    }
+
+    private boolean expirado(long carregadoEm) {
+        long ttl = ttlMs;
+        return ttl > 0 && System.currentTimeMillis() - carregadoEm > ttl;
+    }
+
+    private static Livro copiar(Livro livro) {
+        Livro copia = new Livro(livro.getId(), livro.getTitulo(), livro.getAutor(), livro.getIsbn(),
+                copiar(livro.getEditoraObj()), livro.getEstoque(), livro.getPreco(), livro.getCategoria());
+        if (livro.getEditoraObj() == null) {
+            copia.setIdEditora(livro.getIdEditora());
+        }
+        return copia;
+    }
+
+    private static Editora copiar(Editora editora) {
+        if (editora == null) {
+            return null;
+        }
+        return new Editora(editora.getId(), editora.getNome(), editora.getEndereco(), editora.getTelefone(),
+                editora.getGerente(), editora.getCategoria());
+    }
+
+    /**
+     * Lista somente leitura que devolve uma cópia do item a cada get(): os itens
+     * guardados no cache nunca chegam às telas.
+     */
+    private abstract static class ListaDeCopias<T> extends AbstractList<T> implements RandomAccess {
+        private final T[] itens;
+
+        ListaDeCopias(T[] itens) {
+            this.itens = itens;
+        }
+
+        abstract T copiarItem(T item);
+
+        @Override
+        public T get(int indice) {
+            return copiarItem(itens[indice]);
+        }
+
+        @Override
+        public int size() {
+            return itens.length;
+        }
+    }
+
+    /**
+     * Listagem imutável de livros. O índice por ID é montado na primeira
+     * alteração de estoque e reaproveitado pelas cópias seguintes, já que as
+     * posições não mudam.
+     */
+    private static final class RetratoLivros {
+        final Livro[] itens;
+        final List<Livro> lista;
+        final long carregadoEm; // Cópias com ajuste de estoque mantêm a hora da carga
+        private Map<Integer, Integer> posicaoPorId;
+
+        RetratoLivros(Livro[] itens, Map<Integer, Integer> posicaoPorId, long carregadoEm) {
+            this.itens = itens;
+            this.lista = new ListaDeCopias<Livro>(itens) {
+                @Override
+                Livro copiarItem(Livro item) {
+                    return copiar(item);
+                }
+            };
+            this.posicaoPorId = posicaoPorId;
+            this.carregadoEm = carregadoEm;
+        }
+
+        // Chamado apenas dentro dos métodos synchronized do cache
+        Map<Integer, Integer> posicaoPorId() {
+            if (posicaoPorId == null) {
+                posicaoPorId = new HashMap<>(itens.length * 2);
+                for (int i = 0; i < itens.length; i++) {
+                    posicaoPorId.put(itens[i].getId(), i);
+                }
+            }
+            return posicaoPorId;
+        }
+    }
+
+    /** Listagem imutável de editoras. */
+    private static final class RetratoEditoras {
+        final List<Editora> lista;
+        final long carregadoEm;
+
+        RetratoEditoras(Editora[] itens, long carregadoEm) {
+            this.lista = new ListaDeCopias<Editora>(itens) {
+                @Override
+                Editora copiarItem(Editora item) {
+                    return copiar(item);
+                }
+            };
+            this.carregadoEm = carregadoEm;
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package sistemalivraria.dados;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import sistemalivraria.entidades.Editora;
+
+/**
+ * Cache de editoras compartilhado por todo o processo, indexado por ID e por nome.
+ * Usado pelo EditoraDAO (leitura com preenchimento automático) e pela montagem de
+ * livros no LivroDAO/CompraDAO, para que todas as telas compartilhem a mesma
+ * instância de cada editora.
+ *
+ * O tamanho é limitado (remoção LRU) e, opcionalmente, as entradas expiram após
+ * um tempo de vida (TTL), cobrindo alterações feitas fora do sistema.
+ * Inclusões, alterações e exclusões de editoras devem chamar invalidar().
+ */
+public final class CacheEditoras {
+
+    private static final CacheEditoras INSTANCIA = new CacheEditoras(1000, 10 * 60 * 1000L);
+
+    private int capacidade;
+    private long ttlMs; // 0 = sem expiração
+
+    // accessOrder = true: a iteração começa pela editora menos usada recentemente
+    private final LinkedHashMap<Integer, Entrada> porId = new LinkedHashMap<>(64, 0.75f, true);
+    private final Map<String, Integer> idPorNome = new HashMap<>();
+
+    private final AtomicLong acertos = new AtomicLong(0);
+    private final AtomicLong falhas = new AtomicLong(0);
+
+    private CacheEditoras(int capacidade, long ttlMs) {
+        this.capacidade = capacidade;
+        this.ttlMs = ttlMs;
+    }
+
+    /** @return O cache de editoras do processo. */
+    public static CacheEditoras getInstancia() {
+        return INSTANCIA;
+    }
+
+    /**
+     * Altera o limite de tamanho e o tempo de vida das entradas.
+     *
+     * @param capacidade Máximo de editoras em cache.
+     * @param ttlMs Tempo de vida de cada entrada em milissegundos (0 = sem expiração).
+     */
+    public synchronized void configurar(int capacidade, long ttlMs) {
+        if (capacidade <= 0 || ttlMs < 0) {
+            throw new IllegalArgumentException("Configuração do cache de editoras inválida.");
+        }
+        this.capacidade = capacidade;
+        this.ttlMs = ttlMs;
+        removerExcedentes();
+    }
+
+    /**
+     * @param id ID da editora.
+     * @return A editora em cache, ou null se não estiver em cache (ou tiver expirado).
+     */
+    public synchronized Editora buscarPorId(int id) {
+        Entrada entrada = porId.get(id);
+        if (entrada != null && expirada(entrada)) {
+            remover(id);
+            entrada = null;
+        }
+        if (entrada == null) {
+            falhas.incrementAndGet();
+            return null;
+        }
+        acertos.incrementAndGet();
+        return entrada.editora;
+    }
+
+    /**
+     * @param nome Nome exato da editora.
+     * @return A editora em cache, ou null se não estiver em cache (ou tiver expirado).
+     */
+    public synchronized Editora buscarPorNome(String nome) {
+        Integer id = idPorNome.get(nome);
+        if (id == null) {
+            falhas.incrementAndGet();
+            return null;
+        }
+        return buscarPorId(id);
+    }
+
+    /**
+     * Guarda (ou substitui) uma editora lida do banco.
+     *
+     * @param editora A editora, com ID.
+     */
+    public synchronized void guardar(Editora editora) {
+        if (editora == null || editora.getId() <= 0) {
+            return;
+        }
+        Entrada anterior = porId.put(editora.getId(), new Entrada(editora, System.currentTimeMillis()));
+        if (anterior != null && anterior.editora.getNome() != null) {
+            idPorNome.remove(anterior.editora.getNome(), editora.getId());
+        }
+        if (editora.getNome() != null) {
+            idPorNome.putIfAbsent(editora.getNome(), editora.getId());
+        }
+        removerExcedentes();
+    }
+
+    /**
+     * Retira do cache a editora com o ID informado e qualquer entrada com o mesmo
+     * nome. Deve ser chamado após incluir, alterar ou excluir uma editora.
+     *
+     * @param id ID da editora (0 se ainda não houver).
+     * @param nome Nome da editora (pode ser null).
+     */
+    public synchronized void invalidar(int id, String nome) {
+        remover(id);
+        if (nome != null) {
+            Integer idDoNome = idPorNome.remove(nome);
+            if (idDoNome != null) {
+                remover(idDoNome);
+            }
+        }
+    }
+
+    /** Esvazia o cache. */
+    public synchronized void invalidarTudo() {
+        porId.clear();
+        idPorNome.clear();
+    }
+
+    public long getAcertos() {
+        return acertos.get();
+    }
+
+    public long getFalhas() {
+        return falhas.get();
+    }
+
+    /** @return Proporção de buscas atendidas pelo cache (0 a 1). */
+    public double getTaxaAcerto() {
+        long a = acertos.get();
+        long total = a + falhas.get();
+        return (total == 0) ? 0 : (double) a / total;
+    }
+
+    public synchronized int getTamanho() {
+        return porId.size();
+    }
+
+    private boolean expirada(Entrada entrada) {
+        return ttlMs > 0 && System.currentTimeMillis() - entrada.carregadaEm > ttlMs;
+    }
+
+    private void remover(int id) {
+        Entrada entrada = porId.remove(id);
+        if (entrada != null && entrada.editora.getNome() != null) {
+            idPorNome.remove(entrada.editora.getNome(), id);
+        }
+    }
+
+    private void removerExcedentes() {
+        Iterator<Map.Entry<Integer, Entrada>> it = porId.entrySet().iterator();
+        while (porId.size() > capacidade && it.hasNext()) {
+            Map.Entry<Integer, Entrada> maisAntiga = it.next();
+            it.remove();
+            String nome = maisAntiga.getValue().editora.getNome();
+            if (nome != null) {
+                idPorNome.remove(nome, maisAntiga.getKey());
+            }
+        }
+    }
+
+    private static final class Entrada {
+        final Editora editora;
+        final long carregadaEm;
+
+        Entrada(Editora editora, long carregadaEm) {
+            this.editora = editora;
+            this.carregadaEm = carregadaEm;
+        }
+    }
+}
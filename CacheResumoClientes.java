@@ -0,0 +1,200 @@
+package sistemalivraria.dados;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import sistemalivraria.entidades.ResumoCliente;
+
+/**
+ * Cache dos resumos de compras por cliente (ver CompraDAO.buscarResumoCliente),
+ * compartilhado pelo processo e limitado em tamanho (remoção LRU).
+ *
+ * Cada venda gravada atualiza o resumo do cliente em cache (registrarVenda), sem
+ * reler o histórico. Como em CacheCatalogo, uma alteração incrementa a versão e
+ * um resumo carregado antes dela não é publicado (a venda poderia ficar de fora
+ * ou ser contada em dobro). A versão é por cliente: uma venda descarta só as
+ * cargas em andamento do mesmo cliente. Para que a memória não cresça com o
+ * número de clientes, há um contador por faixa (id % FAIXAS); a venda descarta
+ * também as cargas dos outros clientes da faixa, o que é raro.
+ *
+ * Vendas feitas em outros computadores não passam por registrarVenda; por isso
+ * cada resumo expira após um tempo de vida (TTL) contado da carga do banco, como
+ * no CacheEditoras, e é recalculado na próxima consulta.
+ *
+ * O total gasto usa preços atuais (livros_comprados não guarda o preço da venda):
+ * a carga soma livros.preco e registrarVenda soma o preço do Livro informado, que
+ * pode estar desatualizado se o preço mudou em outro computador. A diferença some
+ * na próxima carga (TTL, ou invalidarTudo quando um preço é alterado aqui).
+ */
+public final class CacheResumoClientes {
+
+    private static final CacheResumoClientes INSTANCIA = new CacheResumoClientes(5000, 5 * 60 * 1000L);
+
+    /** Quantidade de categorias favoritas no resumo. */
+    static final int CATEGORIAS_FAVORITAS = 3;
+
+    // Contadores de versão por faixa de clientes (potência de 2)
+    private static final int FAIXAS = 1024;
+
+    private int capacidade;
+    private long ttlMs; // 0 = sem expiração
+    private final long[] versoes = new long[FAIXAS];
+
+    // accessOrder = true: a iteração começa pelo cliente menos consultado recentemente
+    private final LinkedHashMap<Integer, Acumulado> porCliente = new LinkedHashMap<>(64, 0.75f, true);
+
+    private CacheResumoClientes(int capacidade, long ttlMs) {
+        this.capacidade = capacidade;
+        this.ttlMs = ttlMs;
+    }
+
+    /** @return O cache de resumos do processo. */
+    public static CacheResumoClientes getInstancia() {
+        return INSTANCIA;
+    }
+
+    /**
+     * Altera o limite de tamanho e o tempo de vida dos resumos.
+     *
+     * @param capacidade Máximo de clientes em cache.
+     * @param ttlMs Tempo de vida de cada resumo em milissegundos (0 = sem expiração).
+     */
+    public synchronized void configurar(int capacidade, long ttlMs) {
+        if (capacidade <= 0 || ttlMs < 0) {
+            throw new IllegalArgumentException("Configuração do cache de resumos inválida.");
+        }
+        this.capacidade = capacidade;
+        this.ttlMs = ttlMs;
+        removerExcedentes();
+    }
+
+    /**
+     * @param idCliente ID do cliente.
+     * @return A versão atual do cliente; deve ser lida antes de carregar o seu resumo do banco.
+     */
+    public synchronized long getVersao(int idCliente) {
+        return versoes[faixa(idCliente)];
+    }
+
+    /**
+     * @param idCliente ID do cliente.
+     * @return O resumo em cache, ou null se não estiver em cache (ou tiver expirado).
+     */
+    public synchronized ResumoCliente buscar(int idCliente) {
+        Acumulado acumulado = porCliente.get(idCliente);
+        if (acumulado != null && ttlMs > 0 && System.currentTimeMillis() - acumulado.carregadoEm > ttlMs) {
+            porCliente.remove(idCliente);
+            acumulado = null;
+        }
+        return (acumulado != null) ? acumulado.resumo() : null;
+    }
+
+    /**
+     * Guarda um resumo carregado do banco, se nada mudou desde getVersao(idCliente).
+     *
+     * @param versaoLida Versão do cliente lida antes da carga.
+     * @param idCliente ID do cliente.
+     * @param comprasPorCategoria Compras do cliente por categoria.
+     * @param gastoPorCategoria Total gasto pelo cliente por categoria.
+     * @param ultimaCompra Data/hora da compra mais recente, ou null.
+     * @return O resumo montado (publicado ou não).
+     */
+    synchronized ResumoCliente publicar(long versaoLida, int idCliente, Map<String, Long> comprasPorCategoria,
+                                        Map<String, Double> gastoPorCategoria, Timestamp ultimaCompra) {
+        Acumulado acumulado = new Acumulado(idCliente, System.currentTimeMillis());
+        for (Map.Entry<String, Long> categoria : comprasPorCategoria.entrySet()) {
+            acumulado.somar(categoria.getKey(), categoria.getValue(), gastoPorCategoria.get(categoria.getKey()), null);
+        }
+        acumulado.ultimaCompra = ultimaCompra;
+        if (versaoLida == versoes[faixa(idCliente)]) {
+            porCliente.put(idCliente, acumulado);
+            removerExcedentes();
+        }
+        return acumulado.resumo();
+    }
+
+    /**
+     * Soma uma venda ao resumo do cliente, se ele estiver em cache.
+     * Deve ser chamado após a gravação da venda no banco.
+     *
+     * @param idCliente ID do cliente.
+     * @param quantidade Unidades vendidas.
+     * @param precoUnitario Preço do livro (o mesmo usado na venda; ver o comentário da classe).
+     * @param categoria Categoria do livro.
+     * @param dataCompra Data/hora da venda.
+     */
+    public synchronized void registrarVenda(int idCliente, int quantidade, double precoUnitario, String categoria, Timestamp dataCompra) {
+        versoes[faixa(idCliente)]++; // Cargas do cliente em andamento podem não ter visto esta venda
+        Acumulado acumulado = porCliente.get(idCliente);
+        if (acumulado != null) {
+            acumulado.somar(categoria, quantidade, quantidade * precoUnitario, dataCompra);
+        }
+    }
+
+    /** Descarta todos os resumos (ex: preço ou categoria de livros alterados). */
+    public synchronized void invalidarTudo() {
+        for (int i = 0; i < FAIXAS; i++) {
+            versoes[i]++;
+        }
+        porCliente.clear();
+    }
+
+    private static int faixa(int idCliente) {
+        return idCliente & (FAIXAS - 1);
+    }
+
+    private void removerExcedentes() {
+        while (porCliente.size() > capacidade) {
+            porCliente.remove(porCliente.keySet().iterator().next());
+        }
+    }
+
+    /**
+     * Totais de um cliente, com o último resumo montado reaproveitado até a próxima venda.
+     */
+    private static final class Acumulado {
+        final int idCliente;
+        final long carregadoEm; // Vendas somadas depois da carga não renovam o TTL
+        long quantidade = 0;
+        double total = 0;
+        Timestamp ultimaCompra = null;
+        final Map<String, Long> comprasPorCategoria = new HashMap<>();
+        ResumoCliente resumo = null;
+
+        Acumulado(int idCliente, long carregadoEm) {
+            this.idCliente = idCliente;
+            this.carregadoEm = carregadoEm;
+        }
+
+        void somar(String categoria, long compras, double gasto, Timestamp data) {
+            quantidade += compras;
+            total += gasto;
+            if (categoria != null) {
+                comprasPorCategoria.merge(categoria, compras, Long::sum);
+            }
+            if (data != null && (ultimaCompra == null || data.after(ultimaCompra))) {
+                ultimaCompra = data;
+            }
+            resumo = null;
+        }
+
+        ResumoCliente resumo() {
+            if (resumo == null) {
+                List<Map.Entry<String, Long>> categorias = new ArrayList<>(comprasPorCategoria.entrySet());
+                categorias.sort((a, b) -> (!a.getValue().equals(b.getValue()))
+                        ? Long.compare(b.getValue(), a.getValue()) : a.getKey().compareTo(b.getKey()));
+                List<String> favoritas = new ArrayList<>(CATEGORIAS_FAVORITAS);
+                for (int i = 0; i < categorias.size() && i < CATEGORIAS_FAVORITAS; i++) {
+                    favoritas.add(categorias.get(i).getKey());
+                }
+                LocalDateTime ultima = (ultimaCompra != null) ? ultimaCompra.toLocalDateTime() : null;
+                resumo = new ResumoCliente(idCliente, quantidade, total, ultima, favoritas);
+            }
+            return resumo;
+        }
+    }
+}
@@ -0,0 +1,220 @@
+package sistemalivraria.dados;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache de PreparedStatement de uma conexão física do pool, indexado pelo texto SQL.
+ * Manter o mesmo PreparedStatement vivo entre empréstimos permite ao driver do
+ * PostgreSQL reutilizar o statement preparado no servidor (sem novo parse/plan).
+ * A remoção segue a ordem LRU (menos usado recentemente).
+ * Não é thread-safe: cada conexão física é usada por um único empréstimo por vez.
+ */
+final class CacheStatements {
+
+    private final Connection fisica;
+    private final int capacidade;
+    private final LinkedHashMap<String, Entrada> entradas;
+
+    private final AtomicLong acertos = new AtomicLong(0);
+    private final AtomicLong falhas = new AtomicLong(0);
+    private final AtomicLong remocoes = new AtomicLong(0);
+
+    CacheStatements(Connection fisica, int capacidade) {
+        this.fisica = fisica;
+        this.capacidade = capacidade;
+        // accessOrder = true: a iteração começa pela entrada menos usada recentemente
+        this.entradas = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /**
+     * Obtém um PreparedStatement para o SQL informado, reaproveitando o que estiver em cache.
+     * O close() do statement retornado o devolve ao cache em vez de fechá-lo.
+     *
+     * @param sql O texto SQL.
+     * @param chavesGeradas Statement.RETURN_GENERATED_KEYS ou Statement.NO_GENERATED_KEYS.
+     * @param conexaoEmprestada A conexão (proxy do pool) devolvida por getConnection().
+     * @return O statement pronto para receber parâmetros.
+     * @throws SQLException Se ocorrer um erro ao preparar o statement.
+     */
+    PreparedStatement obter(String sql, int chavesGeradas, Connection conexaoEmprestada) throws SQLException {
+        if (capacidade <= 0) {
+            return preparar(sql, chavesGeradas);
+        }
+        String chave = (chavesGeradas == Statement.RETURN_GENERATED_KEYS) ? "K:" + sql : sql;
+        Entrada entrada = entradas.get(chave);
+        if (entrada != null && entrada.dono == null) {
+            acertos.incrementAndGet();
+        } else if (entrada != null) {
+            // Mesmo SQL já aberto nesta conexão (uso aninhado): não compartilha o statement
+            falhas.incrementAndGet();
+            return preparar(sql, chavesGeradas);
+        } else {
+            falhas.incrementAndGet();
+            entrada = new Entrada(chave, preparar(sql, chavesGeradas));
+            entradas.put(chave, entrada);
+            removerExcedentes();
+        }
+        entrada.dono = new Uso(entrada, conexaoEmprestada);
+        return (PreparedStatement) Proxy.newProxyInstance(
+                CacheStatements.class.getClassLoader(),
+                new Class<?>[]{PreparedStatement.class},
+                entrada.dono);
+    }
+
+    /**
+     * Devolve ao cache os statements que o empréstimo não fechou.
+     * Chamado quando a conexão emprestada é devolvida ao pool.
+     */
+    void liberarTodos() {
+        for (Entrada entrada : new ArrayList<>(entradas.values())) {
+            if (entrada.dono != null) {
+                devolver(entrada);
+            }
+        }
+    }
+
+    /**
+     * Fecha todos os statements em cache. Chamado quando a conexão física é descartada.
+     */
+    void fecharTodos() {
+        for (Entrada entrada : entradas.values()) {
+            fecharSilenciosamente(entrada.statement);
+        }
+        entradas.clear();
+    }
+
+    long getAcertos() {
+        return acertos.get();
+    }
+
+    long getFalhas() {
+        return falhas.get();
+    }
+
+    long getRemocoes() {
+        return remocoes.get();
+    }
+
+    private PreparedStatement preparar(String sql, int chavesGeradas) throws SQLException {
+        return fisica.prepareStatement(sql, chavesGeradas);
+    }
+
+    private void removerExcedentes() {
+        Iterator<Entrada> it = entradas.values().iterator();
+        while (entradas.size() > capacidade && it.hasNext()) {
+            Entrada maisAntiga = it.next();
+            if (maisAntiga.dono != null) {
+                continue; // Em uso agora; será avaliada na próxima inserção
+            }
+            it.remove();
+            remocoes.incrementAndGet();
+            fecharSilenciosamente(maisAntiga.statement);
+        }
+    }
+
+    private void devolver(Entrada entrada) {
+        entrada.dono = null;
+        try {
+            ResultSet rs = entrada.statement.getResultSet();
+            if (rs != null) {
+                rs.close();
+            }
+            entrada.statement.clearParameters();
+            entrada.statement.clearBatch();
+            if (entrada.statement.getFetchSize() != 0) {
+                entrada.statement.setFetchSize(0); // Restaura o padrão após leitura por cursor
+            }
+            entrada.statement.clearWarnings();
+        } catch (SQLException e) {
+            // Statement em estado inválido: retira do cache
+            entradas.remove(entrada.chave);
+            fecharSilenciosamente(entrada.statement);
+        }
+    }
+
+    private static void fecharSilenciosamente(PreparedStatement ps) {
+        try {
+            ps.close();
+        } catch (SQLException e) {
+            System.err.println("Erro ao fechar statement do cache: " + e.getMessage());
+        }
+    }
+
+    /** Statement em cache e o uso que o detém no momento (null se livre). */
+    private static final class Entrada {
+        final String chave;
+        final PreparedStatement statement;
+        Uso dono;
+
+        Entrada(String chave, PreparedStatement statement) {
+            this.chave = chave;
+            this.statement = statement;
+        }
+    }
+
+    /**
+     * Um uso de statement em cache pelo DAO. Intercepta close() para devolver
+     * o statement ao cache; chamadas após o close() falham.
+     */
+    private final class Uso implements InvocationHandler {
+
+        private final Entrada entrada;
+        private final Connection conexaoEmprestada;
+        private boolean fechado = false;
+
+        Uso(Entrada entrada, Connection conexaoEmprestada) {
+            this.entrada = entrada;
+            this.conexaoEmprestada = conexaoEmprestada;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String nome = method.getName();
+            if ("close".equals(nome)) {
+                if (!fechado) {
+                    fechado = true;
+                    if (entrada.dono == this) {
+                        devolver(entrada);
+                    }
+                }
+                return null;
+            }
+            if ("isClosed".equals(nome)) {
+                return fechado;
+            }
+            if ("getConnection".equals(nome)) {
+                return conexaoEmprestada;
+            }
+            if ("equals".equals(nome)) {
+                return proxy == args[0];
+            }
+            if ("hashCode".equals(nome)) {
+                return System.identityHashCode(proxy);
+            }
+            if ("toString".equals(nome)) {
+                return entrada.statement.toString();
+            }
+            if (fechado || entrada.dono != this) {
+                throw new SQLException("PreparedStatement já devolvido ao cache.");
+            }
+            try {
+                return method.invoke(entrada.statement, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+
+}
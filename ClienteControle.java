@@ -12,6 +12,12 @@ import java.util.List;
  */
 public class ClienteControle {
 
+    // Índice de sugestões por prefixo (nome/CPF-CNPJ), compartilhado por todas as telas.
+    // Construído a partir do banco na primeira sugestão e mantido nas alterações.
+    private static final IndicePrefixos<Cliente> indiceClientes =
+            new IndicePrefixos<>(c -> new String[]{c.getNome(), c.getCpfcnpj()}, Cliente::getId);
+    private static boolean indiceClientesConstruido = false;
+
     private ClienteDAO clienteDAO;
 
     public ClienteControle() {
@@ -42,6 +48,7 @@ public class ClienteControle {
         int idGerado = clienteDAO.inserir(cliente);
         if (idGerado > 0) {
              cliente.setId(idGerado);
+             atualizarIndice(cliente);
              System.out.println("Cliente cadastrado com sucesso: " + cliente.getNome() + " (ID: " + idGerado + ")");
         } else {
              System.err.println("Falha ao obter ID gerado para o cliente: " + cliente.getNome());
@@ -70,6 +77,24 @@ public class ClienteControle {
         return clienteDAO.listarTodos();
     }
 
+    /**
+     * Lista uma página de clientes ativos em ordem de nome (paginação por chave).
+     * Para a próxima página, passe o nome e o ID do último cliente recebido.
+     *
+     * @param aposNome Nome do último cliente da página anterior, ou null para a primeira página.
+     * @param aposId ID do último cliente da página anterior.
+     * @param limite Quantidade máxima de clientes na página.
+     * @return Lista de Clientes da página.
+     * @throws SQLException Se ocorrer erro no banco de dados.
+     * @throws IllegalArgumentException Se o limite for inválido.
+     */
+    public List<Cliente> listarPaginaClientes(String aposNome, int aposId, int limite) throws SQLException, IllegalArgumentException {
+        if (limite <= 0) {
+            throw new IllegalArgumentException("Limite da página deve ser maior que zero.");
+        }
+        return clienteDAO.listarPagina(aposNome, aposId, limite);
+    }
+
     /**
      * Atualiza os dados de um cliente existente.
      *
@@ -83,7 +108,11 @@ public class ClienteControle {
             throw new IllegalArgumentException("Dados do cliente inválidos para atualização.");
         }
         // Adicionar mais validações
-        return clienteDAO.atualizar(cliente);
+        boolean atualizado = clienteDAO.atualizar(cliente);
+        if (atualizado) {
+            atualizarIndice(cliente);
+        }
+        return atualizado;
     }
 
     /**
@@ -97,7 +126,49 @@ public class ClienteControle {
         if (id <= 0) {
              throw new IllegalArgumentException("ID do cliente inválido para exclusão.");
         }
-        return clienteDAO.excluir(id);
+        boolean excluido = clienteDAO.excluir(id);
+        if (excluido) {
+            removerDoIndice(id);
+        }
+        return excluido;
+    }
+
+    /**
+     * Sugere clientes ativos cujo nome (ou uma de suas palavras) ou CPF/CNPJ
+     * começa com o texto digitado. Usa um índice em memória, sem consultar o
+     * banco a cada tecla.
+     *
+     * @param prefixo Texto digitado.
+     * @param limite Quantidade máxima de sugestões.
+     * @return Clientes sugeridos, em ordem alfabética.
+     * @throws SQLException Se ocorrer erro ao construir o índice na primeira chamada.
+     * @throws IllegalArgumentException Se o limite for inválido.
+     */
+    public List<Cliente> sugerirClientes(String prefixo, int limite) throws SQLException, IllegalArgumentException {
+        if (limite <= 0) {
+            throw new IllegalArgumentException("Limite deve ser maior que zero.");
+        }
+        garantirIndice(clienteDAO);
+        return indiceClientes.buscar(prefixo, limite);
+    }
+
+    private static synchronized void garantirIndice(ClienteDAO clienteDAO) throws SQLException {
+        if (!indiceClientesConstruido) {
+            indiceClientes.construir(clienteDAO.listarTodos());
+            indiceClientesConstruido = true;
+        }
+    }
+
+    private static synchronized void atualizarIndice(Cliente cliente) {
+        if (indiceClientesConstruido) {
+            indiceClientes.atualizar(cliente);
+        }
+    }
+
+    private static synchronized void removerDoIndice(int id) {
+        if (indiceClientesConstruido) {
+            indiceClientes.remover(id);
+        }
     }
 }
 
@@ -16,6 +16,14 @@ import java.util.List;
  */
 public class ClienteDAO {
 
+    /**
+     * Colunas de cliente (alias c) usadas nos SELECTs com JOIN de outros DAOs.
+     * Lidas por montarCliente.
+     */
+    static final String COLUNAS_CLIENTE =
+            "c.id AS cliente_id, c.nome AS cliente_nome, c.endereco AS cliente_endereco, "
+            + "c.identificador AS cliente_identificador, c.tipo_pessoa AS cliente_tipo_pessoa, c.telefone AS cliente_telefone";
+
     /**
      * Insere um novo cliente no banco de dados.
      *
@@ -105,8 +113,8 @@ public class ClienteDAO {
         List<Cliente> clientes = new ArrayList<>();
 
         try (Connection conn = ConexaoBD.getConexao();
-             Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery(sql)) {
+             PreparedStatement pstmt = conn.prepareStatement(sql);
+             ResultSet rs = pstmt.executeQuery()) {
 
             while (rs.next()) {
                  // Usa o construtor que aceita todos os campos, incluindo ID
@@ -127,6 +135,52 @@ public class ClienteDAO {
         return clientes;
     }
 
+    /**
+     * Lista uma página de clientes ativos em ordem de nome, usando paginação por
+     * chave (keyset): a página começa logo após o par (nome, id) do último cliente
+     * da página anterior (índice cliente_ativo_nome_id_idx).
+     *
+     * @param aposNome Nome do último cliente da página anterior, ou null para a primeira página.
+     * @param aposId ID do último cliente da página anterior (ignorado na primeira página).
+     * @param limite Quantidade máxima de clientes na página.
+     * @return Os clientes da página; lista vazia quando não houver mais clientes.
+     * @throws SQLException Se ocorrer um erro durante a operação no banco.
+     */
+    public List<Cliente> listarPagina(String aposNome, int aposId, int limite) throws SQLException {
+        String sql = "SELECT id, nome, endereco, identificador, tipo_pessoa, telefone, ativo FROM public.cliente WHERE ativo = true"
+                + (aposNome != null ? " AND (nome, id) > (?, ?)" : "")
+                + " ORDER BY nome, id LIMIT ?";
+        List<Cliente> clientes = new ArrayList<>();
+
+        try (Connection conn = ConexaoBD.getConexao();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            int i = 1;
+            if (aposNome != null) {
+                pstmt.setString(i++, aposNome);
+                pstmt.setInt(i++, aposId);
+            }
+            pstmt.setInt(i, limite);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    Cliente cliente = new Cliente(
+                            rs.getInt("id"),
+                            rs.getString("nome"),
+                            rs.getString("identificador"),
+                            rs.getString("telefone"),
+                            rs.getString("endereco"),
+                            rs.getString("tipo_pessoa")
+                    );
+                    clientes.add(cliente);
+                }
+            }
+        } catch (SQLException e) {
+            System.err.println("Erro ao listar página de clientes: " + e.getMessage());
+            throw e;
+        }
+        return clientes;
+    }
+
     /**
      * Atualiza os dados de um cliente existente no banco.
      *
@@ -183,5 +237,26 @@ public class ClienteDAO {
         }
         return excluido;
     }
-}
 
+    /**
+     * Monta um Cliente a partir da linha atual de um SELECT que use COLUNAS_CLIENTE.
+     *
+     * @param rs ResultSet posicionado na linha.
+     * @return O Cliente montado, ou null se a linha não tiver cliente (LEFT JOIN sem correspondência).
+     * @throws SQLException Se ocorrer um erro ao ler o ResultSet.
+     */
+    static Cliente montarCliente(ResultSet rs) throws SQLException {
+        int id = rs.getInt("cliente_id");
+        if (rs.wasNull()) {
+            return null;
+        }
+        return new Cliente(
+                id,
+                rs.getString("cliente_nome"),
+                rs.getString("cliente_identificador"),
+                rs.getString("cliente_telefone"),
+                rs.getString("cliente_endereco"),
+                rs.getString("cliente_tipo_pessoa")
+        );
+    }
+}
@@ -13,14 +13,14 @@ import java.time.format.DateTimeFormatter; // Import adicionado na posição cor
  * @author Calel e Diego (Modificado por Manus)
  */
 public class Compra {
-    private int id;
+    private long id; // Identidade bigint de livros_comprados
     private Cliente cliente; // Usar objeto Cliente
     private Livro livro;     // Usar objeto Livro
     private LocalDate dataCompra; // Usar LocalDate
     private Timestamp dataCompraTimestamp; // Para compatibilidade com BD
 
     // Construtor principal usado pelo Controle
-    public Compra(int id, Cliente cliente, Livro livro, LocalDate dataCompra) {
+    public Compra(long id, Cliente cliente, Livro livro, LocalDate dataCompra) {
         this.id = id;
         this.cliente = cliente;
         this.livro = livro;
@@ -35,7 +35,7 @@ public class Compra {
 
     // Construtor para uso pelo DAO ao recuperar do banco
     // Assume que o DAO recuperará Cliente e Livro completos ou seus IDs
-    public Compra(int id, Cliente cliente, Livro livro, Timestamp dataCompraTimestamp) {
+    public Compra(long id, Cliente cliente, Livro livro, Timestamp dataCompraTimestamp) {
         this.id = id;
         this.cliente = cliente;
         this.livro = livro;
@@ -49,7 +49,7 @@ public class Compra {
     }
 
     // Getters
-    public int getId() {
+    public long getId() {
         return id;
     }
 
@@ -74,7 +74,7 @@ public class Compra {
     }
 
     // Setters
-    public void setId(int id) {
+    public void setId(long id) {
         this.id = id;
     }
 
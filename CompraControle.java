@@ -1,14 +1,24 @@
 package sistemalivraria.controles;
 
+import sistemalivraria.dados.CacheResumoClientes;
 import sistemalivraria.dados.CompraDAO;
 import sistemalivraria.dados.LivroDAO; // Para buscar livro por ID
 import sistemalivraria.dados.ClienteDAO; // Para buscar cliente por ID
 import sistemalivraria.entidades.Cliente;
 import sistemalivraria.entidades.Livro;
 import sistemalivraria.entidades.Compra;
+import sistemalivraria.entidades.ItemCarrinho;
+import sistemalivraria.entidades.ResumoCliente;
 import java.sql.SQLException;
+import java.sql.Timestamp;
 import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.stream.Stream;
 
 /**
  *
@@ -16,6 +26,12 @@ import java.util.List;
  */
 public class CompraControle {
 
+    // Tamanho da coluna livros_comprados.chave_idempotencia
+    private static final int TAMANHO_MAXIMO_CHAVE = 64;
+
+    // Chaves de idempotência recentes, compartilhadas por todas as telas
+    private static final JanelaIdempotencia JANELA_IDEMPOTENCIA = new JanelaIdempotencia(10000);
+
     private CompraDAO compraDAO;
     private LivroDAO livroDAO; // Adicionado para buscar livros
     private ClienteDAO clienteDAO; // Adicionado para buscar clientes
@@ -36,21 +52,236 @@ public class CompraControle {
      * @throws IllegalArgumentException Se os dados de entrada forem inválidos.
      */
     public void registrarCompra(Cliente cliente, Livro livro, LocalDate dataCompra) throws SQLException, IllegalArgumentException {
+        registrarCompra(cliente, livro, dataCompra, null);
+    }
+
+    /**
+     * Registra uma nova compra no banco de dados, uma única vez por chave de idempotência:
+     * um clique duplo ou uma nova tentativa após erro com a mesma chave devolve o
+     * resultado da primeira gravação, sem baixar o estoque de novo.
+     *
+     * @param cliente O cliente que realizou a compra.
+     * @param livro O livro comprado.
+     * @param dataCompra A data da compra.
+     * @param chaveIdempotencia Chave única da venda (ex: UUID gerado pela tela), ou null.
+     * @throws SQLException Se ocorrer um erro de banco de dados.
+     * @throws IllegalArgumentException Se os dados de entrada forem inválidos.
+     */
+    public void registrarCompra(Cliente cliente, Livro livro, LocalDate dataCompra, String chaveIdempotencia) throws SQLException, IllegalArgumentException {
+        validarCompra(cliente, livro, dataCompra, chaveIdempotencia);
+
+        CompletableFuture<Void> anterior = JANELA_IDEMPOTENCIA.registrar(chaveIdempotencia);
+        if (anterior != null) {
+            aguardar(anterior); // Repetição: mesmo resultado da primeira tentativa
+            return;
+        }
+
+        // Com o ServicoEstoque iniciado, a falta de estoque é detectada aqui, sem ir ao banco.
+        // O DAO confere o estoque de novo no mesmo comando do INSERT.
+        Timestamp data;
+        int resultado;
+        try {
+            boolean reservado = reservarEstoque(livro, 1);
+
+            // Chama o DAO para registrar a compra usando os IDs; a hora atual completa a data
+            // informada, mantendo a ordem das vendas do mesmo dia
+            try {
+                data = Timestamp.valueOf(dataCompra.atTime(LocalTime.now()));
+                resultado = compraDAO.registrarCompra(cliente.getId(), livro.getId(), data, chaveIdempotencia);
+            } catch (SQLException e) {
+                if (reservado) {
+                    ServicoEstoque.getInstancia().concluir(livro.getId(), 1, false);
+                }
+                throw e;
+            }
+            if (reservado) {
+                // Venda repetida barrada só pelo banco: nada foi baixado, a reserva é desfeita
+                ServicoEstoque.getInstancia().concluir(livro.getId(), 1, resultado == CompraDAO.COMPRA_GRAVADA);
+            }
+        } catch (SQLException | RuntimeException e) {
+            JANELA_IDEMPOTENCIA.falhou(chaveIdempotencia, e);
+            throw e;
+        }
+        JANELA_IDEMPOTENCIA.gravou(chaveIdempotencia);
+        if (resultado != CompraDAO.COMPRA_GRAVADA) {
+            return; // Já contada na gravação original
+        }
+        RankingMaisVendidos.getInstancia().registrar(livro.getId(), 1);
+        RecomendacaoLivros.getInstancia().registrar(cliente.getId(), livro.getId());
+        CacheResumoClientes.getInstancia().registrarVenda(cliente.getId(), 1, livro.getPreco(), livro.getCategoria(), data);
+    }
+
+    /**
+     * Registra uma nova compra sem bloquear a tela enquanto ela é gravada.
+     * Com a gravação agrupada ligada (CompraDAO.ativarGravacaoAgrupada), a venda
+     * é gravada junto com as de outros caixas, em um único commit.
+     * Com o ServicoEstoque iniciado, a falta de estoque é informada na hora.
+     *
+     * @param cliente O cliente que realizou a compra.
+     * @param livro O livro comprado.
+     * @param dataCompra A data da compra.
+     * @param chaveIdempotencia Chave única da venda (ex: UUID gerado pela tela), ou null.
+     * @return Future concluído após a gravação, ou com a SQLException da venda (ex: livro sem estoque).
+     * @throws SQLException Se o ServicoEstoque não tiver saldo do livro.
+     * @throws IllegalArgumentException Se os dados de entrada forem inválidos.
+     */
+    public CompletableFuture<Void> registrarCompraAsync(Cliente cliente, Livro livro, LocalDate dataCompra, String chaveIdempotencia) throws SQLException, IllegalArgumentException {
+        validarCompra(cliente, livro, dataCompra, chaveIdempotencia);
+
+        CompletableFuture<Void> anterior = JANELA_IDEMPOTENCIA.registrar(chaveIdempotencia);
+        if (anterior != null) {
+            return anterior;
+        }
+
+        int idCliente = cliente.getId();
+        int idLivro = livro.getId();
+        double preco = livro.getPreco();
+        String categoria = livro.getCategoria();
+        Timestamp data = Timestamp.valueOf(dataCompra.atTime(LocalTime.now()));
+        CompletableFuture<Integer> gravacao;
+        try {
+            if (reservarEstoque(livro, 1)) {
+                gravacao = compraDAO.registrarCompraAsync(idCliente, idLivro, data, chaveIdempotencia)
+                        .whenComplete((resultado, erro) -> ServicoEstoque.getInstancia().concluir(idLivro, 1,
+                                erro == null && resultado == CompraDAO.COMPRA_GRAVADA));
+            } else {
+                gravacao = compraDAO.registrarCompraAsync(idCliente, idLivro, data, chaveIdempotencia);
+            }
+        } catch (SQLException | RuntimeException e) {
+            JANELA_IDEMPOTENCIA.falhou(chaveIdempotencia, e);
+            throw e;
+        }
+        return gravacao.whenComplete((resultado, erro) -> {
+            if (erro != null) {
+                JANELA_IDEMPOTENCIA.falhou(chaveIdempotencia, erro);
+                return;
+            }
+            JANELA_IDEMPOTENCIA.gravou(chaveIdempotencia);
+            if (resultado == CompraDAO.COMPRA_GRAVADA) { // Repetida: já contada na gravação original
+                RankingMaisVendidos.getInstancia().registrar(idLivro, 1);
+                RecomendacaoLivros.getInstancia().registrar(idCliente, idLivro);
+                CacheResumoClientes.getInstancia().registrarVenda(idCliente, 1, preco, categoria, data);
+            }
+        }).thenApply(resultado -> null);
+    }
+
+    private static void validarCompra(Cliente cliente, Livro livro, LocalDate dataCompra, String chaveIdempotencia) {
         if (cliente == null || livro == null || dataCompra == null) {
             throw new IllegalArgumentException("Cliente, Livro e Data da Compra não podem ser nulos.");
         }
         if (cliente.getId() <= 0 || livro.getId() <= 0) {
              throw new IllegalArgumentException("IDs de Cliente e Livro devem ser válidos.");
         }
+        if (chaveIdempotencia != null && (chaveIdempotencia.isEmpty() || chaveIdempotencia.length() > TAMANHO_MAXIMO_CHAVE)) {
+            throw new IllegalArgumentException("Chave de idempotência deve ter entre 1 e " + TAMANHO_MAXIMO_CHAVE + " caracteres.");
+        }
+        validarDataCompra(dataCompra);
+    }
+
+    // Vendas de meses arquivados ficariam fora da partição do mês e do resumo vendas_diarias
+    private static void validarDataCompra(LocalDate dataCompra) {
+        if (ServicoParticoes.getInstancia().isMesArquivado(dataCompra)) {
+            throw new IllegalArgumentException("Data da Compra pertence a um mês já arquivado.");
+        }
+    }
+
+    // Espera a primeira tentativa com a mesma chave e repete o seu resultado
+    private static void aguardar(CompletableFuture<Void> anterior) throws SQLException {
+        try {
+            anterior.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrompido ao aguardar a gravação da compra.", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof SQLException) {
+                throw (SQLException) e.getCause();
+            }
+            throw new SQLException("Erro ao registrar compra: " + e.getCause(), e.getCause());
+        }
+    }
+
+    /**
+     * Registra a compra de vários livros por um cliente (carrinho) em uma única transação.
+     * Linhas repetidas do mesmo livro são somadas. Se algum livro não tiver estoque
+     * suficiente, nenhuma unidade é registrada.
+     *
+     * @param cliente O cliente que realizou a compra.
+     * @param itens Livros e quantidades do carrinho.
+     * @param dataCompra A data da compra.
+     * @throws SQLException Se ocorrer um erro de banco de dados ou faltar estoque.
+     * @throws IllegalArgumentException Se os dados de entrada forem inválidos.
+     */
+    public void registrarCarrinho(Cliente cliente, List<ItemCarrinho> itens, LocalDate dataCompra) throws SQLException, IllegalArgumentException {
+        if (cliente == null || itens == null || itens.isEmpty() || dataCompra == null) {
+            throw new IllegalArgumentException("Cliente, itens do carrinho e Data da Compra não podem ser nulos ou vazios.");
+        }
+        if (cliente.getId() <= 0) {
+            throw new IllegalArgumentException("ID do Cliente deve ser válido.");
+        }
+        validarDataCompra(dataCompra);
 
-        // Validações adicionais podem ser incluídas aqui (ex: verificar estoque do livro)
-        // A validação de estoque agora é feita dentro do DAO na transação
+        Map<Integer, Integer> quantidadePorLivro = new HashMap<>();
+        for (ItemCarrinho item : itens) {
+            if (item == null || item.getLivro() == null || item.getLivro().getId() <= 0) {
+                throw new IllegalArgumentException("Todos os itens do carrinho devem ter um livro válido.");
+            }
+            if (item.getQuantidade() <= 0) {
+                throw new IllegalArgumentException("Quantidade do livro '" + item.getLivro().getTitulo() + "' deve ser maior que zero.");
+            }
+            quantidadePorLivro.merge(item.getLivro().getId(), item.getQuantidade(), Integer::sum);
+        }
 
-        // Chama o DAO para registrar a compra usando os IDs
-        compraDAO.registrarCompra(cliente.getId(), livro.getId());
+        // Reserva todos os livros no ServicoEstoque (se iniciado); se faltar algum, desfaz as reservas
+        ServicoEstoque estoque = ServicoEstoque.getInstancia();
+        boolean reservado = estoque.isAtivo();
+        if (reservado) {
+            Map<Integer, Integer> reservas = new HashMap<>();
+            for (Map.Entry<Integer, Integer> item : quantidadePorLivro.entrySet()) {
+                if (!estoque.reservar(item.getKey(), item.getValue())) {
+                    reservas.forEach(estoque::cancelar);
+                    throw new SQLException("Falha ao registrar compra: Livro " + item.getKey() + " sem estoque suficiente.");
+                }
+                reservas.put(item.getKey(), item.getValue());
+            }
+        }
 
-        // A lógica de criar o objeto Compra foi removida daqui, pois o DAO lida com a inserção direta.
-        // A atualização de estoque também é feita no DAO.
+        boolean gravado = false;
+        try {
+            Timestamp data = Timestamp.valueOf(dataCompra.atTime(LocalTime.now()));
+            compraDAO.registrarCarrinho(cliente.getId(), quantidadePorLivro, data);
+            gravado = true;
+            quantidadePorLivro.forEach(RankingMaisVendidos.getInstancia()::registrar);
+            for (Integer idLivro : quantidadePorLivro.keySet()) {
+                RecomendacaoLivros.getInstancia().registrar(cliente.getId(), idLivro);
+            }
+            for (ItemCarrinho item : itens) {
+                CacheResumoClientes.getInstancia().registrarVenda(cliente.getId(), item.getQuantidade(),
+                        item.getLivro().getPreco(), item.getLivro().getCategoria(), data);
+            }
+        } finally {
+            if (reservado) {
+                for (Map.Entry<Integer, Integer> item : quantidadePorLivro.entrySet()) {
+                    estoque.concluir(item.getKey(), item.getValue(), gravado);
+                }
+            }
+        }
+    }
+
+    /**
+     * Reserva unidades no ServicoEstoque, se ele estiver iniciado.
+     *
+     * @return true se a reserva foi feita (deve ser encerrada com ServicoEstoque.concluir).
+     * @throws SQLException Se o livro não tiver saldo.
+     */
+    private boolean reservarEstoque(Livro livro, int quantidade) throws SQLException {
+        ServicoEstoque estoque = ServicoEstoque.getInstancia();
+        if (!estoque.isAtivo()) {
+            return false;
+        }
+        if (!estoque.reservar(livro.getId(), quantidade)) {
+            throw new SQLException("Falha ao registrar compra: Livro '" + livro.getTitulo() + "' sem estoque.");
+        }
+        return true;
     }
 
      /**
@@ -64,10 +295,139 @@ public class CompraControle {
         return compraDAO.listarTodos();
     }
 
+    /**
+     * Lista uma página de compras, da mais recente para a mais antiga (paginação por chave).
+     * Para a próxima página, passe a data e o ID da última compra recebida.
+     *
+     * @param antesDeData Data/hora da última compra da página anterior, ou null para a primeira página.
+     * @param antesDeId ID da última compra da página anterior.
+     * @param limite Quantidade máxima de compras na página.
+     * @return Lista de Compras da página.
+     * @throws SQLException Se ocorrer um erro de banco de dados.
+     * @throws IllegalArgumentException Se o limite for inválido.
+     */
+    public List<Compra> listarPaginaCompras(Timestamp antesDeData, long antesDeId, int limite) throws SQLException, IllegalArgumentException {
+        if (limite <= 0) {
+            throw new IllegalArgumentException("Limite da página deve ser maior que zero.");
+        }
+        return compraDAO.listarPagina(antesDeData, antesDeId, limite);
+    }
+
+    /**
+     * Percorre todas as compras sem carregá-las de uma vez na memória.
+     * O Stream deve ser fechado após o uso (try-with-resources).
+     *
+     * @return Stream de compras, da mais recente para a mais antiga.
+     * @throws SQLException Se ocorrer um erro de banco de dados.
+     */
+    public Stream<Compra> streamTodasCompras() throws SQLException {
+        return compraDAO.streamTodos();
+    }
+
     // Outros métodos de controle para Compra podem ser adicionados aqui (ex: buscar por cliente, por data, etc.)
     public List<Compra> listarComprasPorCliente(int idCliente) throws SQLException {
          return compraDAO.listarComprasPorCliente(idCliente);
     }
 
+    public List<Compra> listarComprasPorLivro(int idLivro) throws SQLException {
+         return compraDAO.listarComprasPorLivro(idLivro);
+    }
+
+    /**
+     * Resumo das compras de um cliente (quantidade, total gasto, última compra e
+     * categorias favoritas), sem carregar as compras. Fica em cache e é atualizado
+     * a cada venda; o detalhe é lido por listarPaginaComprasCliente, sob demanda.
+     *
+     * @param idCliente O ID do cliente.
+     * @return O resumo das compras do cliente.
+     * @throws SQLException Se ocorrer um erro de banco de dados.
+     * @throws IllegalArgumentException Se o ID for inválido.
+     */
+    public ResumoCliente resumirComprasCliente(int idCliente) throws SQLException, IllegalArgumentException {
+        if (idCliente <= 0) {
+            throw new IllegalArgumentException("ID do Cliente deve ser válido.");
+        }
+        return compraDAO.buscarResumoCliente(idCliente);
+    }
+
+    /**
+     * Lista uma página das compras de um cliente, da mais recente para a mais antiga.
+     * Para a próxima página, passe a data e o ID da última compra recebida.
+     *
+     * @param idCliente O ID do cliente.
+     * @param antesDeData Data/hora da última compra da página anterior, ou null para a primeira página.
+     * @param antesDeId ID da última compra da página anterior.
+     * @param limite Quantidade máxima de compras na página.
+     * @return Lista de Compras da página.
+     * @throws SQLException Se ocorrer um erro de banco de dados.
+     * @throws IllegalArgumentException Se o ID ou o limite forem inválidos.
+     */
+    public List<Compra> listarPaginaComprasCliente(int idCliente, Timestamp antesDeData, long antesDeId, int limite) throws SQLException, IllegalArgumentException {
+        if (idCliente <= 0) {
+            throw new IllegalArgumentException("ID do Cliente deve ser válido.");
+        }
+        if (limite <= 0) {
+            throw new IllegalArgumentException("Limite da página deve ser maior que zero.");
+        }
+        return compraDAO.listarPaginaPorCliente(idCliente, antesDeData, antesDeId, limite);
+    }
+
+    /**
+     * Lista as compras feitas entre duas datas (inclusive), da mais recente para a mais antiga.
+     *
+     * @param inicio Primeiro dia do período.
+     * @param fim Último dia do período.
+     * @return Lista de Compras do período.
+     * @throws SQLException Se ocorrer um erro de banco de dados.
+     * @throws IllegalArgumentException Se o período for inválido.
+     */
+    public List<Compra> listarComprasPorPeriodo(LocalDate inicio, LocalDate fim) throws SQLException, IllegalArgumentException {
+        validarPeriodo(inicio, fim);
+        return compraDAO.listarPorPeriodo(inicioDoDia(inicio), inicioDoDia(fim.plusDays(1)));
+    }
+
+    /**
+     * Lista as compras de um cliente entre duas datas (inclusive).
+     *
+     * @param idCliente O ID do cliente.
+     * @param inicio Primeiro dia do período.
+     * @param fim Último dia do período.
+     * @return Lista de Compras do período.
+     * @throws SQLException Se ocorrer um erro de banco de dados.
+     * @throws IllegalArgumentException Se o período for inválido.
+     */
+    public List<Compra> listarComprasPorPeriodoCliente(int idCliente, LocalDate inicio, LocalDate fim) throws SQLException, IllegalArgumentException {
+        validarPeriodo(inicio, fim);
+        return compraDAO.listarPorPeriodoCliente(idCliente, inicioDoDia(inicio), inicioDoDia(fim.plusDays(1)));
+    }
+
+    /**
+     * Lista as vendas de um livro entre duas datas (inclusive).
+     *
+     * @param idLivro O ID do livro.
+     * @param inicio Primeiro dia do período.
+     * @param fim Último dia do período.
+     * @return Lista de Compras do período.
+     * @throws SQLException Se ocorrer um erro de banco de dados.
+     * @throws IllegalArgumentException Se o período for inválido.
+     */
+    public List<Compra> listarComprasPorPeriodoLivro(int idLivro, LocalDate inicio, LocalDate fim) throws SQLException, IllegalArgumentException {
+        validarPeriodo(inicio, fim);
+        return compraDAO.listarPorPeriodoLivro(idLivro, inicioDoDia(inicio), inicioDoDia(fim.plusDays(1)));
+    }
+
+    private static void validarPeriodo(LocalDate inicio, LocalDate fim) {
+        if (inicio == null || fim == null) {
+            throw new IllegalArgumentException("Datas de início e fim do período não podem ser nulas.");
+        }
+        if (fim.isBefore(inicio)) {
+            throw new IllegalArgumentException("Data de fim não pode ser anterior à data de início.");
+        }
+    }
+
+    private static Timestamp inicioDoDia(LocalDate dia) {
+        return Timestamp.valueOf(dia.atStartOfDay());
+    }
+
 }
 
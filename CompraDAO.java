@@ -3,14 +3,25 @@ package sistemalivraria.dados;
 import sistemalivraria.entidades.Compra;
 import sistemalivraria.entidades.Livro;
 import sistemalivraria.entidades.Cliente;
+import sistemalivraria.entidades.Editora;
+import sistemalivraria.entidades.ResumoCliente;
+import sistemalivraria.entidades.VendaDiaria;
 
+import java.sql.Array;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Timestamp;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.stream.Stream;
 
 /**
  * Classe DAO (Data Access Object) para a entidade Compra (tabela livros_comprados).
@@ -18,57 +29,309 @@ import java.util.List;
  */
 public class CompraDAO {
 
-    private ClienteDAO clienteDAO; // Para buscar detalhes do cliente
-    private LivroDAO livroDAO;     // Para buscar detalhes do livro
+    // Linhas buscadas por vez na leitura dos pares (cliente, livro): linhas pequenas, lotes grandes
+    private static final int TAMANHO_LOTE_PARES = 10000;
 
-    public CompraDAO() {
-        // Instanciar DAOs necessários para buscar objetos completos
-        this.clienteDAO = new ClienteDAO();
-        this.livroDAO = new LivroDAO();
+    /**
+     * SELECT das compras com cliente, livro e editora em uma única consulta.
+     * O cliente usa LEFT JOIN com ativo = true para manter o comportamento de
+     * ClienteDAO.buscarPorId (clientes inativos aparecem como null).
+     */
+    private static final String SELECT_COMPRAS =
+            "SELECT lc.id AS compra_id, lc.id_cliente, lc.id_livro, lc.data_compra, "
+            + ClienteDAO.COLUNAS_CLIENTE + ", " + LivroDAO.COLUNAS_LIVRO_EDITORA
+            + " FROM public.livros_comprados lc"
+            + " JOIN public.livros l ON l.id = lc.id_livro"
+            + " LEFT JOIN public.editora e ON e.id = l.id_editora"
+            + " LEFT JOIN public.cliente c ON c.id = lc.id_cliente AND c.ativo = true";
+
+    /**
+     * Baixa o estoque e insere a compra em um único comando (CTE com UPDATE ... RETURNING).
+     * Se o livro não tiver estoque, o UPDATE não retorna linha e nada é inserido.
+     * Por ser um só comando, é atômico mesmo com autocommit.
+     * Também usado em lote pelo GravadorCompras.
+     *
+     * Livros com estoque fatiado (livros_estoque_slots) baixam uma fatia com saldo
+     * escolhida ao acaso, pulando as bloqueadas por outros caixas; a linha do livro
+     * só é alterada quando nenhuma fatia pôde ser usada.
+     *
+     * Com chave de idempotência, uma venda cuja chave já está gravada não baixa o
+     * estoque nem insere nada. A chave vai para livros_comprados_chaves (chave
+     * primária global; em livros_comprados, particionada por data, uma restrição
+     * única teria de incluir data_compra), o que barra duas tentativas simultâneas.
+     * Parâmetros: ver preencherCompra.
+     */
+    static final String SQL_REGISTRAR_COMPRA = montarSqlRegistrarCompra("FOR UPDATE SKIP LOCKED");
+
+    /**
+     * Igual a SQL_REGISTRAR_COMPRA, mas aguarda as fatias bloqueadas em vez de
+     * pulá-las. Usado apenas para confirmar uma venda que voltou "sem estoque"
+     * (todas as fatias com saldo podiam estar bloqueadas naquele instante).
+     */
+    static final String SQL_REGISTRAR_COMPRA_AGUARDANDO = montarSqlRegistrarCompra("FOR UPDATE");
+
+    private static String montarSqlRegistrarCompra(String bloqueioFatia) {
+        return "WITH param AS ("
+                + " SELECT ?::varchar(64) AS chave"
+                + "), repetida AS ("
+                + " SELECT 1 FROM public.livros_comprados_chaves c, param WHERE c.chave = param.chave"
+                + "), fatia AS ("
+                + " SELECT id_livro, slot FROM public.livros_estoque_slots"
+                + " WHERE id_livro = ? AND quantidade > 0 AND NOT EXISTS (SELECT 1 FROM repetida)"
+                + " ORDER BY random() LIMIT 1 " + bloqueioFatia
+                + "), baixa_fatia AS ("
+                + " UPDATE public.livros_estoque_slots s SET quantidade = s.quantidade - 1"
+                + " FROM fatia WHERE s.id_livro = fatia.id_livro AND s.slot = fatia.slot RETURNING s.id_livro AS id"
+                + "), baixa AS ("
+                + " UPDATE public.livros SET quantidade = quantidade - 1"
+                + " WHERE id = ? AND quantidade > 0 AND NOT EXISTS (SELECT 1 FROM baixa_fatia)"
+                + " AND NOT EXISTS (SELECT 1 FROM repetida) RETURNING id"
+                + "), baixas AS ("
+                + " SELECT id FROM baixa_fatia UNION ALL SELECT id FROM baixa"
+                + "), chave AS ("
+                + " INSERT INTO public.livros_comprados_chaves (chave)"
+                + " SELECT param.chave FROM param WHERE param.chave IS NOT NULL AND EXISTS (SELECT 1 FROM baixas)"
+                + ") INSERT INTO public.livros_comprados (id_cliente, id_livro, data_compra, chave_idempotencia)"
+                + " SELECT ?, baixas.id, ?, param.chave FROM baixas, param";
+    }
+
+    /** Define os parâmetros de SQL_REGISTRAR_COMPRA / SQL_REGISTRAR_COMPRA_AGUARDANDO. */
+    static void preencherCompra(PreparedStatement pstmt, int idCliente, int idLivro, Timestamp dataCompra, String chaveIdempotencia) throws SQLException {
+        pstmt.setString(1, chaveIdempotencia);
+        pstmt.setInt(2, idLivro);
+        pstmt.setInt(3, idLivro);
+        pstmt.setInt(4, idCliente);
+        pstmt.setTimestamp(5, dataCompra);
+    }
+
+    /** Resultados de gravarCompra; registrarCompra devolve COMPRA_GRAVADA ou COMPRA_REPETIDA. */
+    static final int COMPRA_SEM_ESTOQUE = 0;
+    /** A venda foi gravada agora (estoque baixado). */
+    public static final int COMPRA_GRAVADA = 1;
+    /** A chave de idempotência já estava gravada: nada foi gravado nem baixado. */
+    public static final int COMPRA_REPETIDA = 2;
+
+    // SQLState de violação de unicidade no PostgreSQL
+    private static final String ESTADO_VIOLACAO_UNICA = "23505";
+
+    /**
+     * Grava uma venda com autocommit: tenta pulando as fatias bloqueadas e, se
+     * voltar sem estoque, confirma aguardando-as. Sem inserção, confere se a chave
+     * de idempotência já estava gravada (venda repetida, não é falta de estoque).
+     * Também usado pelo GravadorCompras para vendas fora do lote.
+     *
+     * @return COMPRA_GRAVADA, COMPRA_SEM_ESTOQUE ou COMPRA_REPETIDA.
+     */
+    static int gravarCompra(Connection conn, int idCliente, int idLivro, Timestamp dataCompra, String chaveIdempotencia) throws SQLException {
+        try {
+            for (String sql : new String[]{SQL_REGISTRAR_COMPRA, SQL_REGISTRAR_COMPRA_AGUARDANDO}) {
+                try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                    preencherCompra(pstmt, idCliente, idLivro, dataCompra, chaveIdempotencia);
+                    if (pstmt.executeUpdate() > 0) {
+                        return COMPRA_GRAVADA;
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            // Outra tentativa com a mesma chave gravou primeiro
+            if (chaveIdempotencia != null && ESTADO_VIOLACAO_UNICA.equals(e.getSQLState())) {
+                return COMPRA_REPETIDA;
+            }
+            throw e;
+        }
+        return (chaveIdempotencia != null && existeChave(conn, chaveIdempotencia)) ? COMPRA_REPETIDA : COMPRA_SEM_ESTOQUE;
+    }
+
+    private static boolean existeChave(Connection conn, String chaveIdempotencia) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement("SELECT 1 FROM public.livros_comprados_chaves WHERE chave = ?")) {
+            pstmt.setString(1, chaveIdempotencia);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+
+    // Gravação agrupada (group commit), desligada por padrão
+    private static GravadorCompras gravadorAgrupado = null;
+
+    /**
+     * Liga a gravação agrupada de compras: as vendas passam a ser gravadas em lotes
+     * por uma thread própria, com um commit por lote. Útil em horários de pico,
+     * com muitos caixas vendendo ao mesmo tempo.
+     *
+     * @param capacidadeFila Máximo de vendas aguardando gravação.
+     * @param tamanhoMaximoLote Máximo de vendas por transação.
+     * @param atrasoMaximoMs Tempo máximo de espera para completar um lote (ms).
+     */
+    public static synchronized void ativarGravacaoAgrupada(int capacidadeFila, int tamanhoMaximoLote, long atrasoMaximoMs) {
+        GravadorCompras novo = new GravadorCompras(capacidadeFila, tamanhoMaximoLote, atrasoMaximoMs);
+        desativarGravacaoAgrupada();
+        gravadorAgrupado = novo;
+    }
+
+    /**
+     * Desliga a gravação agrupada, gravando antes as vendas que estão na fila.
+     */
+    public static synchronized void desativarGravacaoAgrupada() {
+        if (gravadorAgrupado != null) {
+            gravadorAgrupado.encerrar();
+            gravadorAgrupado = null;
+        }
+    }
+
+    /** @return true se a gravação agrupada estiver ligada. */
+    public static synchronized boolean isGravacaoAgrupadaAtiva() {
+        return gravadorAgrupado != null;
+    }
+
+    private static synchronized GravadorCompras getGravadorAgrupado() {
+        return gravadorAgrupado;
+    }
+
+    /**
+     * Registra uma compra sem aguardar a gravação. Com a gravação agrupada ligada,
+     * a venda entra na fila do lote; caso contrário, é gravada na hora.
+     *
+     * @param idCliente O ID do cliente que realizou a compra.
+     * @param idLivro O ID do livro comprado.
+     * @param dataCompra Data/hora da compra.
+     * @param chaveIdempotencia Chave única da venda (repetições não são gravadas de novo), ou null.
+     * @return Future concluído após o commit com COMPRA_GRAVADA ou COMPRA_REPETIDA,
+     *         ou com a SQLException da venda (ex: livro sem estoque).
+     */
+    public CompletableFuture<Integer> registrarCompraAsync(int idCliente, int idLivro, Timestamp dataCompra, String chaveIdempotencia) {
+        try {
+            GravadorCompras gravador = getGravadorAgrupado();
+            if (gravador != null) {
+                return gravador.enviar(idCliente, idLivro, dataCompra, chaveIdempotencia);
+            }
+            return CompletableFuture.completedFuture(gravarCompra(idCliente, idLivro, dataCompra, chaveIdempotencia));
+        } catch (SQLException e) {
+            CompletableFuture<Integer> falha = new CompletableFuture<>();
+            falha.completeExceptionally(e);
+            return falha;
+        }
     }
 
     /**
-     * Registra uma nova compra no banco de dados e atualiza o estoque do livro.
-     * Operação transacional.
+     * Registra uma nova compra no banco de dados e atualiza o estoque do livro,
+     * em uma única ida ao banco. Com a gravação agrupada ligada, aguarda o commit
+     * do lote que contém a venda.
      *
      * @param idCliente O ID do cliente que realizou a compra.
      * @param idLivro O ID do livro comprado.
+     * @param dataCompra Data/hora da compra.
+     * @param chaveIdempotencia Chave única da venda (repetições não são gravadas de novo), ou null.
+     * @return COMPRA_GRAVADA, ou COMPRA_REPETIDA se a chave já estava gravada (nada foi baixado).
      * @throws SQLException Se ocorrer um erro durante a operação no banco ou se o livro não tiver estoque.
      */
-    public void registrarCompra(int idCliente, int idLivro) throws SQLException {
-        String sqlCompra = "INSERT INTO public.livros_comprados (id_cliente, id_livro, data_compra) VALUES (?, ?, CURRENT_TIMESTAMP)";
-        String sqlUpdateEstoque = "UPDATE public.livros SET quantidade = quantidade - 1 WHERE id = ? AND quantidade > 0";
+    public int registrarCompra(int idCliente, int idLivro, Timestamp dataCompra, String chaveIdempotencia) throws SQLException {
+        GravadorCompras gravador = getGravadorAgrupado();
+        if (gravador == null) {
+            return gravarCompra(idCliente, idLivro, dataCompra, chaveIdempotencia);
+        }
+        try {
+            return gravador.enviar(idCliente, idLivro, dataCompra, chaveIdempotencia).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrompido ao aguardar a gravação da compra.", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof SQLException) {
+                throw (SQLException) e.getCause();
+            }
+            throw new SQLException("Erro ao registrar compra: " + e.getCause(), e.getCause());
+        }
+    }
+
+    private int gravarCompra(int idCliente, int idLivro, Timestamp dataCompra, String chaveIdempotencia) throws SQLException {
+        CacheCatalogo cache = CacheCatalogo.getInstancia();
+        cache.iniciarBaixaEstoque();
+        try {
+            int resultado;
+            try (Connection conn = ConexaoBD.getConexao()) {
+                resultado = gravarCompra(conn, idCliente, idLivro, dataCompra, chaveIdempotencia);
+                if (resultado == COMPRA_SEM_ESTOQUE) {
+                    throw new SQLException("Falha ao registrar compra: Livro sem estoque ou não encontrado.");
+                }
+            } catch (SQLException e) {
+                System.err.println("Erro ao registrar compra: " + e.getMessage());
+                throw e; // Relança a exceção para a camada de controle
+            }
+            if (resultado == COMPRA_GRAVADA) {
+                cache.ajustarEstoque(idLivro, -1);
+            }
+            return resultado;
+        } finally {
+            cache.encerrarBaixaEstoque();
+        }
+    }
+
+    /**
+     * Registra, em uma única transação, a compra de vários livros por um cliente.
+     * As baixas de estoque são enviadas em lote em ordem crescente de ID do livro,
+     * de modo que dois caixas vendendo livros em comum bloqueiem as linhas na mesma
+     * ordem (sem deadlock). Se algum livro não tiver estoque suficiente, nada é gravado.
+     *
+     * Livros com estoque fatiado são baixados depois, também em ordem de ID: as
+     * fatias com saldo são bloqueadas em ordem de slot e consumidas até completar a
+     * quantidade (a linha do livro cobre o que faltar).
+     *
+     * Cada unidade vira uma linha em livros_comprados, todas com a mesma data.
+     *
+     * @param idCliente O ID do cliente que realizou a compra.
+     * @param quantidadePorLivro Quantidade de unidades por ID de livro.
+     * @param dataCompra Data/hora da compra.
+     * @throws SQLException Se ocorrer um erro durante a operação no banco ou se algum livro não tiver estoque.
+     */
+    public void registrarCarrinho(int idCliente, Map<Integer, Integer> quantidadePorLivro, Timestamp dataCompra) throws SQLException {
+        String sqlUpdateEstoque = "UPDATE public.livros SET quantidade = quantidade - ? WHERE id = ? AND quantidade >= ? AND NOT estoque_fatiado";
+        String sqlCompra = "INSERT INTO public.livros_comprados (id_cliente, id_livro, data_compra) VALUES (?, ?, ?)";
+        TreeMap<Integer, Integer> itens = new TreeMap<>(quantidadePorLivro); // Ordem determinística de bloqueio
 
+        CacheCatalogo cache = CacheCatalogo.getInstancia();
+        cache.iniciarBaixaEstoque();
         Connection conn = null;
         try {
             conn = ConexaoBD.getConexao();
             conn.setAutoCommit(false); // Inicia transação
 
-            // 1. Verifica e atualiza o estoque
+            // 1. Baixa o estoque de todos os livros (bloqueia as linhas em ordem de ID)
             try (PreparedStatement pstmtEstoque = conn.prepareStatement(sqlUpdateEstoque)) {
-                pstmtEstoque.setInt(1, idLivro);
-                int affectedRowsEstoque = pstmtEstoque.executeUpdate();
-                if (affectedRowsEstoque == 0) {
-                    conn.rollback(); // Desfaz antes de lançar exceção
-                    throw new SQLException("Falha ao registrar compra: Livro sem estoque ou não encontrado.");
+                for (Map.Entry<Integer, Integer> item : itens.entrySet()) {
+                    pstmtEstoque.setInt(1, item.getValue());
+                    pstmtEstoque.setInt(2, item.getKey());
+                    pstmtEstoque.setInt(3, item.getValue());
+                    pstmtEstoque.addBatch();
+                }
+                int[] resultados = pstmtEstoque.executeBatch();
+                int i = 0;
+                for (Map.Entry<Integer, Integer> item : itens.entrySet()) {
+                    if (resultados[i++] == 0 && !baixarEstoqueFatiado(conn, item.getKey(), item.getValue())) {
+                        throw new SQLException("Falha ao registrar compra: Livro " + item.getKey() + " sem estoque suficiente ou não encontrado.");
+                    }
                 }
             }
 
-            // 2. Insere o registro da compra
+            // 2. Insere uma linha de compra por unidade
             try (PreparedStatement pstmtCompra = conn.prepareStatement(sqlCompra)) {
-                pstmtCompra.setInt(1, idCliente);
-                pstmtCompra.setInt(2, idLivro);
-                int affectedRowsCompra = pstmtCompra.executeUpdate();
-                if (affectedRowsCompra == 0) {
-                    conn.rollback(); // Desfaz antes de lançar exceção
-                    throw new SQLException("Falha ao registrar compra, nenhuma linha afetada na tabela de compras.");
+                for (Map.Entry<Integer, Integer> item : itens.entrySet()) {
+                    for (int unidade = 0; unidade < item.getValue(); unidade++) {
+                        pstmtCompra.setInt(1, idCliente);
+                        pstmtCompra.setInt(2, item.getKey());
+                        pstmtCompra.setTimestamp(3, dataCompra);
+                        pstmtCompra.addBatch();
+                    }
                 }
+                pstmtCompra.executeBatch();
             }
 
             conn.commit(); // Confirma a transação
 
+            for (Map.Entry<Integer, Integer> item : itens.entrySet()) {
+                cache.ajustarEstoque(item.getKey(), -item.getValue());
+            }
         } catch (SQLException e) {
-            System.err.println("Erro ao registrar compra: " + e.getMessage());
+            System.err.println("Erro ao registrar carrinho: " + e.getMessage());
             if (conn != null) {
                 try {
                     conn.rollback(); // Desfaz a transação em caso de erro
@@ -79,16 +342,47 @@ public class CompraDAO {
             }
             throw e; // Relança a exceção para a camada de controle
         } finally {
-            if (conn != null) {
-                try {
-                    conn.setAutoCommit(true); // Restaura o modo de autocommit
-                    // A conexão é fechada pelo try-with-resources do getConexao se implementado assim
-                    // ou deve ser fechada explicitamente se não for.
-                    // ConexaoBD.fecharConexao(conn); // Exemplo se necessário
-                } catch (SQLException ex) {
-                    System.err.println("Erro ao restaurar autocommit ou fechar conexão: " + ex.getMessage());
+            ConexaoBD.devolverConexao(conn);
+            cache.encerrarBaixaEstoque();
+        }
+    }
+
+    /**
+     * Baixa a quantidade das fatias de estoque de um livro, dentro da transação do carrinho.
+     *
+     * @return false se o livro não tiver estoque fatiado ou não tiver saldo suficiente.
+     */
+    private boolean baixarEstoqueFatiado(Connection conn, int idLivro, int quantidade) throws SQLException {
+        String sqlFatias = "SELECT slot, quantidade FROM public.livros_estoque_slots WHERE id_livro = ? AND quantidade > 0 ORDER BY slot FOR UPDATE";
+        String sqlBaixaFatia = "UPDATE public.livros_estoque_slots SET quantidade = quantidade - ? WHERE id_livro = ? AND slot = ?";
+        String sqlBaixaLivro = "UPDATE public.livros SET quantidade = quantidade - ? WHERE id = ? AND quantidade >= ? AND estoque_fatiado";
+
+        int restante = quantidade;
+        try (PreparedStatement pstmtFatias = conn.prepareStatement(sqlFatias);
+             PreparedStatement pstmtBaixa = conn.prepareStatement(sqlBaixaFatia)) {
+            pstmtFatias.setInt(1, idLivro);
+            try (ResultSet rs = pstmtFatias.executeQuery()) {
+                while (restante > 0 && rs.next()) {
+                    int retirada = Math.min(restante, rs.getInt("quantidade"));
+                    pstmtBaixa.setInt(1, retirada);
+                    pstmtBaixa.setInt(2, idLivro);
+                    pstmtBaixa.setInt(3, rs.getInt("slot"));
+                    pstmtBaixa.addBatch();
+                    restante -= retirada;
                 }
             }
+            if (restante < quantidade) {
+                pstmtBaixa.executeBatch();
+            }
+        }
+        if (restante == 0) {
+            return true;
+        }
+        try (PreparedStatement pstmtLivro = conn.prepareStatement(sqlBaixaLivro)) {
+            pstmtLivro.setInt(1, restante);
+            pstmtLivro.setInt(2, idLivro);
+            pstmtLivro.setInt(3, restante);
+            return pstmtLivro.executeUpdate() > 0;
         }
     }
 
@@ -99,27 +393,14 @@ public class CompraDAO {
      * @throws SQLException Se ocorrer um erro durante a operação no banco.
      */
     public List<Compra> listarTodos() throws SQLException {
-        String sql = "SELECT id, id_cliente, id_livro, data_compra FROM public.livros_comprados ORDER BY data_compra DESC";
-        List<Compra> compras = new ArrayList<>();
+        String sql = SELECT_COMPRAS + " ORDER BY lc.data_compra DESC, lc.id DESC";
+        List<Compra> compras;
 
         try (Connection conn = ConexaoBD.getConexao();
              PreparedStatement pstmt = conn.prepareStatement(sql);
              ResultSet rs = pstmt.executeQuery()) {
 
-            while (rs.next()) {
-                int idCompra = rs.getInt("id");
-                int idCliente = rs.getInt("id_cliente");
-                int idLivro = rs.getInt("id_livro");
-                Timestamp dataCompraTimestamp = rs.getTimestamp("data_compra");
-
-                // Buscar objetos Cliente e Livro completos usando seus DAOs
-                Cliente cliente = clienteDAO.buscarPorId(idCliente);
-                Livro livro = livroDAO.buscarPorId(idLivro);
-
-                // Criar objeto Compra com os objetos Cliente e Livro
-                Compra compra = new Compra(idCompra, cliente, livro, dataCompraTimestamp);
-                compras.add(compra);
-            }
+            compras = montarCompras(rs);
         } catch (SQLException e) {
             System.err.println("Erro ao listar todas as compras: " + e.getMessage());
             throw e;
@@ -129,43 +410,443 @@ public class CompraDAO {
 
 
     /**
-     * Lista todas as compras realizadas por um cliente específico.
+     * Lista todas as compras realizadas por um cliente específico
+     * (índice livros_comprados_cliente_data_idx).
      *
      * @param idCliente O ID do cliente.
      * @return Uma lista de objetos Compra.
      * @throws SQLException Se ocorrer um erro durante a operação no banco.
      */
     public List<Compra> listarComprasPorCliente(int idCliente) throws SQLException {
-        String sql = "SELECT id, id_cliente, id_livro, data_compra FROM public.livros_comprados WHERE id_cliente = ? ORDER BY data_compra DESC";
-        List<Compra> compras = new ArrayList<>();
+        String sql = SELECT_COMPRAS + " WHERE lc.id_cliente = ? ORDER BY lc.data_compra DESC, lc.id DESC";
+        List<Compra> compras;
+
+        try (Connection conn = ConexaoBD.getConexao();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setInt(1, idCliente);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                compras = montarCompras(rs);
+            }
+        } catch (SQLException e) {
+            System.err.println("Erro ao listar compras do cliente: " + e.getMessage());
+            throw e;
+        }
+        return compras;
+    }
+
+    /**
+     * Resumo das compras de um cliente (quantidade, total gasto, última compra e
+     * categorias favoritas), lido do CacheResumoClientes ou, se não estiver lá,
+     * calculado no banco com uma única agregação por categoria
+     * (índice livros_comprados_cliente_data_idx) e guardado no cache.
+     *
+     * @param idCliente O ID do cliente.
+     * @return O resumo (com zero compras se o cliente nunca comprou).
+     * @throws SQLException Se ocorrer um erro durante a operação no banco.
+     */
+    public ResumoCliente buscarResumoCliente(int idCliente) throws SQLException {
+        CacheResumoClientes cache = CacheResumoClientes.getInstancia();
+        ResumoCliente emCache = cache.buscar(idCliente);
+        if (emCache != null) {
+            return emCache;
+        }
+
+        String sql = "SELECT l.categoria, count(*) AS compras, sum(l.preco) AS gasto, max(lc.data_compra) AS ultima"
+                + " FROM public.livros_comprados lc JOIN public.livros l ON l.id = lc.id_livro"
+                + " WHERE lc.id_cliente = ? GROUP BY l.categoria";
+        long versao = cache.getVersao(idCliente);
+        Map<String, Long> comprasPorCategoria = new HashMap<>();
+        Map<String, Double> gastoPorCategoria = new HashMap<>();
+        Timestamp ultimaCompra = null;
 
         try (Connection conn = ConexaoBD.getConexao();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
             pstmt.setInt(1, idCliente);
-            ResultSet rs = pstmt.executeQuery();
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    String categoria = rs.getString("categoria");
+                    comprasPorCategoria.put(categoria, rs.getLong("compras"));
+                    gastoPorCategoria.put(categoria, rs.getDouble("gasto"));
+                    Timestamp ultima = rs.getTimestamp("ultima");
+                    if (ultimaCompra == null || ultima.after(ultimaCompra)) {
+                        ultimaCompra = ultima;
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            System.err.println("Erro ao resumir compras do cliente: " + e.getMessage());
+            throw e;
+        }
+        return cache.publicar(versao, idCliente, comprasPorCategoria, gastoPorCategoria, ultimaCompra);
+    }
 
-            while (rs.next()) {
-                 int idCompra = rs.getInt("id");
-                // int idCliente = rs.getInt("id_cliente"); // Já temos o idCliente
-                int idLivro = rs.getInt("id_livro");
-                Timestamp dataCompraTimestamp = rs.getTimestamp("data_compra");
+    /**
+     * Lista uma página das compras de um cliente, da mais recente para a mais antiga
+     * (paginação por chave, como listarPagina, sobre livros_comprados_cliente_data_idx).
+     *
+     * @param idCliente O ID do cliente.
+     * @param antesDeData Data da última compra da página anterior, ou null para a primeira página.
+     * @param antesDeId ID da última compra da página anterior.
+     * @param limite Quantidade máxima de compras na página.
+     * @return Uma lista de objetos Compra.
+     * @throws SQLException Se ocorrer um erro durante a operação no banco.
+     */
+    public List<Compra> listarPaginaPorCliente(int idCliente, Timestamp antesDeData, long antesDeId, int limite) throws SQLException {
+        String sql = SELECT_COMPRAS + " WHERE lc.id_cliente = ?"
+                + (antesDeData != null ? " AND lc.data_compra <= ? AND (lc.data_compra, lc.id) < (?, ?)" : "")
+                + " ORDER BY lc.data_compra DESC, lc.id DESC LIMIT ?";
+        List<Compra> compras;
 
-                // Buscar objetos Cliente e Livro completos usando seus DAOs
-                Cliente cliente = clienteDAO.buscarPorId(idCliente);
-                Livro livro = livroDAO.buscarPorId(idLivro);
+        try (Connection conn = ConexaoBD.getConexao();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
-                // Criar objeto Compra com os objetos Cliente e Livro
-                Compra compra = new Compra(idCompra, cliente, livro, dataCompraTimestamp);
-                compras.add(compra);
+            int i = 1;
+            pstmt.setInt(i++, idCliente);
+            if (antesDeData != null) {
+                pstmt.setTimestamp(i++, antesDeData);
+                pstmt.setTimestamp(i++, antesDeData);
+                pstmt.setLong(i++, antesDeId);
+            }
+            pstmt.setInt(i, limite);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                compras = montarCompras(rs);
             }
         } catch (SQLException e) {
-            System.err.println("Erro ao listar compras do cliente: " + e.getMessage());
+            System.err.println("Erro ao listar página de compras do cliente: " + e.getMessage());
+            throw e;
+        }
+        return compras;
+    }
+
+    /**
+     * Lista todas as vendas de um livro específico
+     * (índice livros_comprados_livro_data_idx).
+     *
+     * @param idLivro O ID do livro.
+     * @return Uma lista de objetos Compra.
+     * @throws SQLException Se ocorrer um erro durante a operação no banco.
+     */
+    public List<Compra> listarComprasPorLivro(int idLivro) throws SQLException {
+        String sql = SELECT_COMPRAS + " WHERE lc.id_livro = ? ORDER BY lc.data_compra DESC, lc.id DESC";
+        List<Compra> compras;
+
+        try (Connection conn = ConexaoBD.getConexao();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setInt(1, idLivro);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                compras = montarCompras(rs);
+            }
+        } catch (SQLException e) {
+            System.err.println("Erro ao listar vendas do livro: " + e.getMessage());
+            throw e;
+        }
+        return compras;
+    }
+
+    /**
+     * Lista as compras feitas no período [inicio, fim), da mais recente para a mais antiga.
+     * Percorre só as partições mensais do período; dentro delas, usa o índice
+     * livros_comprados_data_compra_idx (data_compra, id).
+     *
+     * @param inicio Início do período (inclusivo).
+     * @param fim Fim do período (exclusivo).
+     * @return Uma lista de objetos Compra.
+     * @throws SQLException Se ocorrer um erro durante a operação no banco.
+     */
+    public List<Compra> listarPorPeriodo(Timestamp inicio, Timestamp fim) throws SQLException {
+        return listarPorPeriodo(null, 0, inicio, fim);
+    }
+
+    /**
+     * Lista as compras de um cliente no período [inicio, fim)
+     * (índice livros_comprados_cliente_data_idx).
+     *
+     * @param idCliente O ID do cliente.
+     * @param inicio Início do período (inclusivo).
+     * @param fim Fim do período (exclusivo).
+     * @return Uma lista de objetos Compra.
+     * @throws SQLException Se ocorrer um erro durante a operação no banco.
+     */
+    public List<Compra> listarPorPeriodoCliente(int idCliente, Timestamp inicio, Timestamp fim) throws SQLException {
+        return listarPorPeriodo("lc.id_cliente", idCliente, inicio, fim);
+    }
+
+    /**
+     * Lista as vendas de um livro no período [inicio, fim)
+     * (índice livros_comprados_livro_data_idx).
+     *
+     * @param idLivro O ID do livro.
+     * @param inicio Início do período (inclusivo).
+     * @param fim Fim do período (exclusivo).
+     * @return Uma lista de objetos Compra.
+     * @throws SQLException Se ocorrer um erro durante a operação no banco.
+     */
+    public List<Compra> listarPorPeriodoLivro(int idLivro, Timestamp inicio, Timestamp fim) throws SQLException {
+        return listarPorPeriodo("lc.id_livro", idLivro, inicio, fim);
+    }
+
+    /**
+     * Totaliza as vendas de cada livro no período [inicio, fim), do mais vendido ao
+     * menos vendido. Para períodos de dias inteiros, prefira VendasDiariasDAO.
+     *
+     * @param inicio Início do período (inclusivo).
+     * @param fim Fim do período (exclusivo).
+     * @param limite Quantidade máxima de livros.
+     * @return Uma lista de VendaDiaria com dia null.
+     * @throws SQLException Se ocorrer um erro durante a operação no banco.
+     */
+    public List<VendaDiaria> totalizarPorLivro(Timestamp inicio, Timestamp fim, int limite) throws SQLException {
+        String sql = "SELECT lc.id_livro, l.nome, count(*) AS quantidade FROM public.livros_comprados lc"
+                + " JOIN public.livros l ON l.id = lc.id_livro"
+                + " WHERE lc.data_compra >= ? AND lc.data_compra < ?"
+                + " GROUP BY lc.id_livro, l.nome ORDER BY quantidade DESC, lc.id_livro LIMIT ?";
+        List<VendaDiaria> vendas = new ArrayList<>();
+
+        try (Connection conn = ConexaoBD.getConexao();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setTimestamp(1, inicio);
+            pstmt.setTimestamp(2, fim);
+            pstmt.setInt(3, limite);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    vendas.add(new VendaDiaria(null, rs.getInt("id_livro"), rs.getString("nome"), rs.getLong("quantidade")));
+                }
+            }
+        } catch (SQLException e) {
+            System.err.println("Erro ao totalizar vendas do período: " + e.getMessage());
+            throw e;
+        }
+        return vendas;
+    }
+
+    /**
+     * Totaliza as vendas de cada livro em faixas de tempo consecutivas (ex: os
+     * baldes de 5 minutos do ranking de mais vendidos), em um único GROUP BY
+     * sobre livros_comprados_data_compra_idx.
+     *
+     * @param limites Início de cada faixa, em ordem, mais o fim da última: a faixa
+     *                k (a partir de 1) é [limites[k - 1], limites[k]).
+     * @return {faixas, idsLivros, quantidades}, vetores paralelos ordenados por
+     *         faixa e, dentro da faixa, do livro mais vendido ao menos vendido.
+     * @throws SQLException Se ocorrer um erro durante a operação no banco.
+     */
+    public int[][] totalizarPorLivroEFaixa(Timestamp[] limites) throws SQLException {
+        String sql = "SELECT width_bucket(lc.data_compra, ?::timestamp[]) AS faixa, lc.id_livro, count(*)::integer AS quantidade"
+                + " FROM public.livros_comprados lc WHERE lc.data_compra >= ? AND lc.data_compra < ?"
+                + " GROUP BY 1, 2 ORDER BY 1, 3 DESC, 2";
+        int[] faixas = new int[256];
+        int[] livros = new int[256];
+        int[] quantidades = new int[256];
+        int total = 0;
+
+        try (Connection conn = ConexaoBD.getConexao();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            Array limitesSql = conn.createArrayOf("timestamp", limites);
+            try {
+                pstmt.setArray(1, limitesSql);
+                pstmt.setTimestamp(2, limites[0]);
+                pstmt.setTimestamp(3, limites[limites.length - 1]);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        if (total == faixas.length) {
+                            faixas = Arrays.copyOf(faixas, total * 2);
+                            livros = Arrays.copyOf(livros, total * 2);
+                            quantidades = Arrays.copyOf(quantidades, total * 2);
+                        }
+                        faixas[total] = rs.getInt(1);
+                        livros[total] = rs.getInt(2);
+                        quantidades[total] = rs.getInt(3);
+                        total++;
+                    }
+                }
+            } finally {
+                limitesSql.free();
+            }
+        } catch (SQLException e) {
+            System.err.println("Erro ao totalizar vendas por faixa de tempo: " + e.getMessage());
             throw e;
         }
+        return new int[][]{Arrays.copyOf(faixas, total), Arrays.copyOf(livros, total), Arrays.copyOf(quantidades, total)};
+    }
+
+    /**
+     * Lê os pares distintos (cliente, livro) de todas as compras, para a montagem
+     * do índice de recomendações. As linhas vêm do servidor em lotes (cursor) e
+     * são guardadas em vetores de int, sem um objeto por compra.
+     *
+     * @return {idsClientes, idsLivros}, vetores paralelos ordenados por cliente e livro.
+     * @throws SQLException Se ocorrer um erro durante a operação no banco.
+     */
+    public int[][] listarParesClienteLivro() throws SQLException {
+        String sql = "SELECT DISTINCT id_cliente, id_livro FROM public.livros_comprados ORDER BY id_cliente, id_livro";
+        int[] clientes = new int[1024];
+        int[] livros = new int[1024];
+        int total = 0;
+
+        Connection conn = null;
+        try {
+            conn = ConexaoBD.getConexao();
+            conn.setAutoCommit(false); // Necessário para o driver respeitar o fetchSize
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                pstmt.setFetchSize(TAMANHO_LOTE_PARES);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        if (total == clientes.length) {
+                            clientes = Arrays.copyOf(clientes, total * 2);
+                            livros = Arrays.copyOf(livros, total * 2);
+                        }
+                        clientes[total] = rs.getInt(1);
+                        livros[total] = rs.getInt(2);
+                        total++;
+                    }
+                }
+            }
+            conn.commit();
+        } catch (SQLException e) {
+            System.err.println("Erro ao listar pares cliente/livro: " + e.getMessage());
+            throw e;
+        } finally {
+            ConexaoBD.devolverConexao(conn);
+        }
+        return new int[][]{Arrays.copyOf(clientes, total), Arrays.copyOf(livros, total)};
+    }
+
+    // colunaFiltro: coluna fixa (não vem do usuário) comparada com idFiltro, ou null sem filtro
+    private List<Compra> listarPorPeriodo(String colunaFiltro, int idFiltro, Timestamp inicio, Timestamp fim) throws SQLException {
+        String sql = SELECT_COMPRAS
+                + " WHERE lc.data_compra >= ? AND lc.data_compra < ?"
+                + (colunaFiltro != null ? " AND " + colunaFiltro + " = ?" : "")
+                + " ORDER BY lc.data_compra DESC, lc.id DESC";
+        List<Compra> compras;
+
+        try (Connection conn = ConexaoBD.getConexao();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setTimestamp(1, inicio);
+            pstmt.setTimestamp(2, fim);
+            if (colunaFiltro != null) {
+                pstmt.setInt(3, idFiltro);
+            }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                compras = montarCompras(rs);
+            }
+        } catch (SQLException e) {
+            System.err.println("Erro ao listar compras do período: " + e.getMessage());
+            throw e;
+        }
+        return compras;
+    }
+
+    /**
+     * Lista uma página de compras da mais recente para a mais antiga, usando
+     * paginação por chave (keyset): a página começa logo após a compra
+     * (data_compra, id) que encerrou a página anterior. O id desempata compras
+     * com a mesma data, então o cursor é único
+     * (índice livros_comprados_data_compra_idx, percorrido em ordem inversa).
+     * O limite simples em data_compra permite ao planejador descartar as
+     * partições mensais posteriores ao cursor (a comparação de linha não permite).
+     *
+     * @param antesDeData Data da última compra da página anterior, ou null para a primeira página.
+     * @param antesDeId ID da última compra da página anterior.
+     * @param limite Quantidade máxima de compras na página.
+     * @return As compras da página; lista vazia quando não houver mais compras.
+     * @throws SQLException Se ocorrer um erro durante a operação no banco.
+     */
+    public List<Compra> listarPagina(Timestamp antesDeData, long antesDeId, int limite) throws SQLException {
+        String sql = SELECT_COMPRAS
+                + (antesDeData != null ? " WHERE lc.data_compra <= ? AND (lc.data_compra, lc.id) < (?, ?)" : "")
+                + " ORDER BY lc.data_compra DESC, lc.id DESC LIMIT ?";
+        List<Compra> compras;
+
+        try (Connection conn = ConexaoBD.getConexao();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            int i = 1;
+            if (antesDeData != null) {
+                pstmt.setTimestamp(i++, antesDeData);
+                pstmt.setTimestamp(i++, antesDeData);
+                pstmt.setLong(i++, antesDeId);
+            }
+            pstmt.setInt(i, limite);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                compras = montarCompras(rs);
+            }
+        } catch (SQLException e) {
+            System.err.println("Erro ao listar página de compras: " + e.getMessage());
+            throw e;
+        }
+        return compras;
+    }
+
+    /**
+     * Percorre todas as compras, da mais recente para a mais antiga, sem carregar
+     * o resultado inteiro na memória (cursor no servidor). Indicado para exportações
+     * e relatórios sobre todo o histórico. O Stream deve ser fechado após o uso:
+     * <pre>
+     * try (Stream&lt;Compra&gt; compras = compraDAO.streamTodos()) { ... }
+     * </pre>
+     * Apenas as editoras são compartilhadas entre as linhas, para que a memória
+     * usada não cresça com o tamanho do histórico.
+     *
+     * @return Stream de compras, com Cliente e Livro associados.
+     * @throws SQLException Se ocorrer um erro ao abrir o cursor.
+     */
+    public Stream<Compra> streamTodos() throws SQLException {
+        String sql = SELECT_COMPRAS + " ORDER BY lc.data_compra DESC, lc.id DESC";
+        final Map<Integer, Editora> editoras = new HashMap<>();
+        try {
+            return CursorBD.abrir(sql, CursorBD.TAMANHO_LOTE_PADRAO, null,
+                    rs -> montarCompra(rs, new HashMap<>(), new HashMap<>(), editoras));
+        } catch (SQLException e) {
+            System.err.println("Erro ao abrir cursor de compras: " + e.getMessage());
+            throw e;
+        }
+    }
+
+    /**
+     * Monta as compras a partir de um SELECT baseado em SELECT_COMPRAS.
+     * Clientes, livros e editoras repetidos no resultado compartilham a mesma instância.
+     */
+    private List<Compra> montarCompras(ResultSet rs) throws SQLException {
+        List<Compra> compras = new ArrayList<>();
+        Map<Integer, Cliente> clientes = new HashMap<>();
+        Map<Integer, Livro> livros = new HashMap<>();
+        Map<Integer, Editora> editoras = new HashMap<>();
+
+        while (rs.next()) {
+            compras.add(montarCompra(rs, clientes, livros, editoras));
+        }
         return compras;
     }
 
+    /**
+     * Monta a compra da linha atual, reaproveitando Cliente, Livro e Editora já presentes nos mapas.
+     */
+    private static Compra montarCompra(ResultSet rs, Map<Integer, Cliente> clientes, Map<Integer, Livro> livros,
+            Map<Integer, Editora> editoras) throws SQLException {
+        int idCliente = rs.getInt("id_cliente");
+        Cliente cliente = clientes.get(idCliente);
+        if (cliente == null && !clientes.containsKey(idCliente)) {
+            cliente = ClienteDAO.montarCliente(rs); // null se o cliente estiver inativo
+            clientes.put(idCliente, cliente);
+        }
+
+        int idLivro = rs.getInt("id_livro");
+        Livro livro = livros.get(idLivro);
+        if (livro == null) {
+            livro = LivroDAO.montarLivro(rs, editoras);
+            livros.put(idLivro, livro);
+        }
+
+        Timestamp dataCompraTimestamp = rs.getTimestamp("data_compra");
+        return new Compra(rs.getLong("compra_id"), cliente, livro, dataCompraTimestamp);
+    }
+
     // Outros métodos podem ser adicionados conforme necessário.
 }
 
@@ -1,37 +1,79 @@
 package sistemalivraria.dados;
 
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
 
 /**
  * Classe responsável por estabelecer a conexão com o banco de dados PostgreSQL.
+ * As conexões são emprestadas de um pool (PoolConexoes): cada operação do DAO
+ * recebe uma conexão própria e o close() a devolve ao pool.
  */
 public class ConexaoBD {
 
-    // --- ATENÇÃO: Configure aqui os dados do seu banco PostgreSQL --- 
+    // --- ATENÇÃO: Configure aqui os dados do seu banco PostgreSQL ---
     private static final String URL = "jdbc:postgresql://localhost:5432/postgres"; // Substitua 'livraria_db' pelo nome do seu banco
     private static final String USER = "postgres"; // Usuário padrão do PostgreSQL
     private static final String PASSWORD = "postgres"; // Defina a senha do seu usuário postgres
     // ----------------------------------------------------------------
 
-    private static Connection conn = null;
+    // --- Configuração do pool de conexões (pode ser alterada via configurarPool) ---
+    private static int poolTamanhoMinimo = 2;
+    private static int poolTamanhoMaximo = 10;
+    private static long poolTimeoutEmprestimoMs = 5000;
+    private static int poolTimeoutValidacaoSeg = 2;
+    private static int poolTamanhoCacheStatements = 32; // PreparedStatement em cache por conexão
+    // ----------------------------------------------------------------
+
+    private static PoolConexoes pool = null;
 
     /**
-     * Obtém uma conexão com o banco de dados.
-     * Se a conexão ainda não foi estabelecida, ela é criada.
+     * Altera a configuração do pool. Deve ser chamado antes da primeira conexão;
+     * se o pool já existir, ele é encerrado e recriado na próxima chamada a getConexao().
      *
-     * @return Uma instância de Connection.
+     * @param tamanhoMinimo Conexões abertas na inicialização do pool.
+     * @param tamanhoMaximo Máximo de conexões emprestadas ao mesmo tempo.
+     * @param timeoutEmprestimoMs Tempo máximo de espera por uma conexão livre (ms).
+     * @param timeoutValidacaoSeg Tempo máximo da validação da conexão no empréstimo (s).
+     */
+    public static synchronized void configurarPool(int tamanhoMinimo, int tamanhoMaximo, long timeoutEmprestimoMs, int timeoutValidacaoSeg) {
+        if (tamanhoMinimo < 0 || tamanhoMaximo <= 0 || tamanhoMinimo > tamanhoMaximo) {
+            throw new IllegalArgumentException("Tamanhos do pool inválidos: mínimo=" + tamanhoMinimo + ", máximo=" + tamanhoMaximo);
+        }
+        poolTamanhoMinimo = tamanhoMinimo;
+        poolTamanhoMaximo = tamanhoMaximo;
+        poolTimeoutEmprestimoMs = timeoutEmprestimoMs;
+        poolTimeoutValidacaoSeg = timeoutValidacaoSeg;
+        encerrarPool();
+    }
+
+    /**
+     * Altera o número máximo de PreparedStatement mantidos em cache por conexão do pool
+     * (0 desliga o cache). Assim como configurarPool, recria o pool na próxima conexão.
+     *
+     * @param tamanho Máximo de statements em cache por conexão.
+     */
+    public static synchronized void configurarCacheStatements(int tamanho) {
+        if (tamanho < 0) {
+            throw new IllegalArgumentException("Tamanho do cache de statements não pode ser negativo.");
+        }
+        poolTamanhoCacheStatements = tamanho;
+        encerrarPool();
+    }
+
+    /**
+     * Obtém o pool de conexões (DataSource), criando-o na primeira chamada.
+     *
+     * @return O pool de conexões.
      * @throws SQLException Se ocorrer um erro ao conectar ao banco.
      */
-    public static Connection getConexao() throws SQLException {
-        if (conn == null || conn.isClosed()) {
+    public static synchronized PoolConexoes getDataSource() throws SQLException {
+        if (pool == null) {
             try {
                 // Carrega o driver JDBC do PostgreSQL
                 Class.forName("org.postgresql.Driver");
-                // Estabelece a conexão
-                conn = DriverManager.getConnection(URL, USER, PASSWORD);
-                System.out.println("Conexão com o banco de dados estabelecida com sucesso!");
+                pool = new PoolConexoes(URL, USER, PASSWORD, poolTamanhoMinimo, poolTamanhoMaximo,
+                        poolTimeoutEmprestimoMs, poolTimeoutValidacaoSeg, poolTamanhoCacheStatements);
+                System.out.println("Pool de conexões com o banco de dados criado com sucesso!");
             } catch (ClassNotFoundException e) {
                 System.err.println("Erro: Driver JDBC do PostgreSQL não encontrado.");
                 throw new SQLException("Driver não encontrado", e);
@@ -40,23 +82,61 @@ public class ConexaoBD {
                 throw e; // Relança a exceção para ser tratada no nível superior
             }
         }
-        return conn;
+        return pool;
     }
 
     /**
-     * Fecha a conexão com o banco de dados, se estiver aberta.
+     * Obtém uma conexão com o banco de dados, emprestada do pool.
+     * A conexão deve ser fechada (de preferência com try-with-resources)
+     * para ser devolvida ao pool.
+     *
+     * @return Uma instância de Connection.
+     * @throws SQLException Se ocorrer um erro ao conectar ao banco.
      */
-    public static void fecharConexao() {
-        if (conn != null) {
+    public static Connection getConexao() throws SQLException {
+        return getDataSource().getConnection();
+    }
+
+    /**
+     * Devolve ao pool uma conexão usada em transação manual (autocommit desligado).
+     * Restaura o autocommit e fecha a conexão; o close() acontece mesmo que a
+     * restauração falhe (ex: conexão quebrada), senão o empréstimo não seria
+     * liberado e o pool se esgotaria.
+     *
+     * @param conn A conexão, ou null (nada é feito).
+     */
+    public static void devolverConexao(Connection conn) {
+        if (conn == null) {
+            return;
+        }
+        try {
+            conn.setAutoCommit(true); // Restaura o modo de autocommit
+        } catch (SQLException ex) {
+            System.err.println("Erro ao restaurar autocommit: " + ex.getMessage());
+        } finally {
             try {
-                if (!conn.isClosed()) {
-                    conn.close();
-                    System.out.println("Conexão com o banco de dados fechada.");
-                }
-            } catch (SQLException e) {
-                System.err.println("Erro ao fechar a conexão com o banco de dados: " + e.getMessage());
+                conn.close(); // Devolve a conexão ao pool
+            } catch (SQLException ex) {
+                System.err.println("Erro ao fechar conexão: " + ex.getMessage());
             }
         }
     }
-}
 
+    /**
+     * Encerra o pool, fechando todas as conexões livres. Antes, grava as vendas
+     * pendentes da gravação agrupada de compras, se estiver ligada.
+     */
+    public static void fecharConexao() {
+        // Fora do synchronized: a thread gravadora precisa de getConexao() para esvaziar a fila
+        CompraDAO.desativarGravacaoAgrupada();
+        encerrarPool();
+    }
+
+    private static synchronized void encerrarPool() {
+        if (pool != null) {
+            pool.encerrar();
+            pool = null;
+            System.out.println("Pool de conexões com o banco de dados encerrado.");
+        }
+    }
+}
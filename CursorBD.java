@@ -0,0 +1,108 @@
+package sistemalivraria.dados;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Leitura de consultas grandes via cursor no servidor, exposta como Stream.
+ * Com autocommit desligado e fetchSize definido, o driver do PostgreSQL busca
+ * as linhas em lotes em vez de carregar o resultado inteiro na memória.
+ * A conexão fica emprestada até o Stream ser fechado (use try-with-resources)
+ * ou até a última linha ser lida.
+ */
+final class CursorBD {
+
+    /** Quantidade padrão de linhas buscadas do servidor por vez. */
+    static final int TAMANHO_LOTE_PADRAO = 500;
+
+    /** Define os parâmetros do PreparedStatement antes da execução. */
+    interface Parametros {
+        void aplicar(PreparedStatement pstmt) throws SQLException;
+    }
+
+    /** Converte a linha atual do ResultSet em um objeto. */
+    interface Linha<T> {
+        T montar(ResultSet rs) throws SQLException;
+    }
+
+    private CursorBD() {
+    }
+
+    /**
+     * Executa a consulta e devolve um Stream que lê as linhas sob demanda.
+     *
+     * @param sql A consulta.
+     * @param tamanhoLote Linhas buscadas do servidor por vez (fetchSize).
+     * @param parametros Parâmetros da consulta, ou null se não houver.
+     * @param linha Conversão de cada linha em objeto.
+     * @return Stream que deve ser fechado para devolver a conexão ao pool.
+     * @throws SQLException Se ocorrer um erro ao abrir o cursor.
+     */
+    static <T> Stream<T> abrir(String sql, int tamanhoLote, Parametros parametros, final Linha<T> linha) throws SQLException {
+        final Connection conn = ConexaoBD.getConexao();
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+        try {
+            conn.setAutoCommit(false); // Sem isso o driver ignora o fetchSize e lê tudo de uma vez
+            pstmt = conn.prepareStatement(sql);
+            pstmt.setFetchSize(tamanhoLote);
+            if (parametros != null) {
+                parametros.aplicar(pstmt);
+            }
+            rs = pstmt.executeQuery();
+        } catch (SQLException e) {
+            fechar(rs, pstmt, conn);
+            throw e;
+        }
+
+        final PreparedStatement statement = pstmt;
+        final ResultSet cursor = rs;
+        Spliterator<T> spliterator = new Spliterators.AbstractSpliterator<T>(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL) {
+            @Override
+            public boolean tryAdvance(Consumer<? super T> acao) {
+                try {
+                    if (!cursor.next()) {
+                        fechar(cursor, statement, conn); // Fim do resultado: devolve a conexão sem esperar o close()
+                        return false;
+                    }
+                    acao.accept(linha.montar(cursor));
+                    return true;
+                } catch (SQLException e) {
+                    fechar(cursor, statement, conn);
+                    throw new RuntimeException("Erro ao ler registro do cursor: " + e.getMessage(), e);
+                }
+            }
+        };
+        return StreamSupport.stream(spliterator, false).onClose(() -> fechar(cursor, statement, conn));
+    }
+
+    /**
+     * Fecha o cursor e devolve a conexão ao pool (que desfaz a transação
+     * de leitura e restaura o autocommit). Pode ser chamado mais de uma vez.
+     */
+    private static void fechar(ResultSet rs, PreparedStatement pstmt, Connection conn) {
+        try {
+            if (rs != null) {
+                rs.close();
+            }
+            if (pstmt != null) {
+                pstmt.close();
+            }
+        } catch (SQLException e) {
+            System.err.println("Erro ao fechar cursor: " + e.getMessage());
+        } finally {
+            try {
+                conn.close();
+            } catch (SQLException e) {
+                System.err.println("Erro ao devolver conexão do cursor: " + e.getMessage());
+            }
+        }
+    }
+}
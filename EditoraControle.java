@@ -1,5 +1,6 @@
 package sistemalivraria.controles;
 
+import sistemalivraria.dados.CacheCatalogo;
 import sistemalivraria.dados.EditoraDAO;
 import sistemalivraria.entidades.Editora;
 import java.sql.SQLException;
@@ -58,12 +59,18 @@ public class EditoraControle {
     /**
      * Lista todas as editoras.
      *
-     * @return Lista de Editoras.
+     * @return Lista de Editoras (somente leitura).
      * @throws SQLException Se ocorrer erro no banco de dados.
      */
     public List<Editora> listarTodasEditoras() throws SQLException {
-        // Precisa garantir que o método listarTodos exista no DAO
-        return editoraDAO.listarTodos();
+        // A listagem fica em cache até a próxima inclusão de editora
+        CacheCatalogo cache = CacheCatalogo.getInstancia();
+        List<Editora> emCache = cache.getEditoras();
+        if (emCache != null) {
+            return emCache;
+        }
+        long versao = cache.getVersao();
+        return cache.publicarEditoras(versao, editoraDAO.listarTodos());
     }
 
     /**
@@ -12,9 +12,12 @@ import java.util.List;
 /**
  * Classe DAO para a entidade Editora.
  * Modificado por Manus para retornar ID gerado.
+ * As buscas passam pelo CacheEditoras, compartilhado por todo o processo.
  */
 public class EditoraDAO {
 
+    private final CacheEditoras cache = CacheEditoras.getInstancia();
+
     /**
      * Insere uma nova editora no banco de dados.
      *
@@ -51,6 +54,9 @@ public class EditoraDAO {
             System.err.println("Erro ao inserir editora: " + e.getMessage());
             throw e;
         }
+        // Uma editora com o mesmo nome pode estar em cache: buscarPorNome deve consultar o banco
+        cache.invalidar(generatedId, editora.getNome());
+        CacheCatalogo.getInstancia().invalidarEditoras();
         return generatedId;
     }
 
@@ -62,6 +68,10 @@ public class EditoraDAO {
      * @throws SQLException Se ocorrer um erro durante a operação no banco.
      */
     public Editora buscarPorId(int id) throws SQLException {
+        Editora emCache = cache.buscarPorId(id);
+        if (emCache != null) {
+            return emCache;
+        }
         String sql = "SELECT id, nome, endereco, telefone, gerente, categoria FROM public.editora WHERE id = ?";
         Editora editora = null;
 
@@ -80,6 +90,7 @@ public class EditoraDAO {
                     rs.getString("gerente"),
                     rs.getString("categoria")
                 );
+                cache.guardar(editora);
             }
         } catch (SQLException e) {
             System.err.println("Erro ao buscar editora por ID: " + e.getMessage());
@@ -96,6 +107,10 @@ public class EditoraDAO {
      * @throws SQLException Se ocorrer um erro durante a operação no banco.
      */
     public Editora buscarPorNome(String nome) throws SQLException {
+        Editora emCache = cache.buscarPorNome(nome);
+        if (emCache != null) {
+            return emCache;
+        }
         String sql = "SELECT id, nome, endereco, telefone, gerente, categoria FROM public.editora WHERE nome = ?";
         Editora editora = null;
 
@@ -114,6 +129,7 @@ public class EditoraDAO {
                     rs.getString("gerente"),
                     rs.getString("categoria")
                 );
+                cache.guardar(editora);
             }
         } catch (SQLException e) {
             System.err.println("Erro ao buscar editora por Nome: " + e.getMessage());
@@ -155,6 +171,7 @@ public class EditoraDAO {
     }
 
     // Métodos para atualizar e deletar podem ser adicionados aqui.
+    // Ao implementá-los, chamar cache.invalidar(id, nome) após a alteração.
 
 }
 
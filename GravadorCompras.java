@@ -0,0 +1,236 @@
+package sistemalivraria.dados;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Gravação agrupada de compras (group commit) para horários de pico.
+ * As vendas entram em uma fila limitada e uma thread gravadora as grava em
+ * pequenos lotes, com uma única transação (e um único commit) por lote.
+ * Cada venda recebe seu próprio CompletableFuture, concluído com o resultado
+ * (CompraDAO.COMPRA_GRAVADA ou COMPRA_REPETIDA) ou com a SQLException da venda
+ * (ex: livro sem estoque).
+ *
+ * Se o lote falhar por erro de banco (ex: cliente inexistente), as vendas do
+ * lote são regravadas uma a uma, para que só a venda com problema falhe.
+ */
+final class GravadorCompras {
+
+    // Espera máxima por vaga na fila antes de recusar a venda
+    private static final long ESPERA_MAXIMA_FILA_MS = 10_000;
+
+    private final BlockingQueue<Pedido> fila;
+    private final int tamanhoMaximoLote;
+    private final long atrasoMaximoNs;
+    private final Thread gravadora;
+    private volatile boolean ativo = true;
+
+    // Leitura: enviar (vários ao mesmo tempo); escrita: encerrar. Nenhuma venda
+    // entra na fila depois que encerrar() desligou o gravador.
+    private final ReadWriteLock travaEncerramento = new ReentrantReadWriteLock();
+
+    /**
+     * Cria o gravador e inicia a thread gravadora.
+     *
+     * @param capacidadeFila Máximo de vendas aguardando gravação (enviar() aguarda vaga se a fila estiver cheia).
+     * @param tamanhoMaximoLote Máximo de vendas gravadas por transação.
+     * @param atrasoMaximoMs Tempo máximo que a primeira venda de um lote espera por outras antes da gravação.
+     */
+    GravadorCompras(int capacidadeFila, int tamanhoMaximoLote, long atrasoMaximoMs) {
+        if (capacidadeFila <= 0 || tamanhoMaximoLote <= 0 || atrasoMaximoMs < 0) {
+            throw new IllegalArgumentException("Configuração da gravação agrupada inválida.");
+        }
+        this.fila = new ArrayBlockingQueue<>(capacidadeFila);
+        this.tamanhoMaximoLote = tamanhoMaximoLote;
+        this.atrasoMaximoNs = TimeUnit.MILLISECONDS.toNanos(atrasoMaximoMs);
+        this.gravadora = new Thread(this::executar, "gravador-compras");
+        this.gravadora.setDaemon(true);
+        this.gravadora.start();
+    }
+
+    /**
+     * Coloca uma venda na fila de gravação.
+     *
+     * @return Future concluído após o commit do lote que contém a venda.
+     * @throws SQLException Se o gravador estiver encerrado, a fila continuar cheia
+     *         após ESPERA_MAXIMA_FILA_MS ou a espera por vaga for interrompida.
+     */
+    CompletableFuture<Integer> enviar(int idCliente, int idLivro, Timestamp dataCompra, String chaveIdempotencia) throws SQLException {
+        Pedido pedido = new Pedido(idCliente, idLivro, dataCompra, chaveIdempotencia);
+        travaEncerramento.readLock().lock();
+        try {
+            if (!ativo || !gravadora.isAlive()) {
+                throw new SQLException("Gravação agrupada de compras encerrada.");
+            }
+            if (!fila.offer(pedido, ESPERA_MAXIMA_FILA_MS, TimeUnit.MILLISECONDS)) {
+                throw new SQLException("Fila de gravação de compras cheia; tente novamente.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrompido ao aguardar vaga na fila de compras.", e);
+        } finally {
+            travaEncerramento.readLock().unlock();
+        }
+        return pedido.resultado;
+    }
+
+    /**
+     * Grava as vendas que já estão na fila e encerra a thread gravadora.
+     * Envios que chegarem depois falham com SQLException.
+     */
+    void encerrar() {
+        travaEncerramento.writeLock().lock(); // Aguarda os envios em andamento entrarem na fila
+        try {
+            ativo = false;
+        } finally {
+            travaEncerramento.writeLock().unlock();
+        }
+        try {
+            gravadora.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        Pedido restante;
+        while ((restante = fila.poll()) != null) {
+            restante.resultado.completeExceptionally(new SQLException("Gravação agrupada de compras encerrada."));
+        }
+    }
+
+    private void executar() {
+        List<Pedido> lote = new ArrayList<>(tamanhoMaximoLote);
+        while (ativo || !fila.isEmpty()) {
+            try {
+                Pedido primeiro = fila.poll(100, TimeUnit.MILLISECONDS);
+                if (primeiro == null) {
+                    continue;
+                }
+                lote.add(primeiro);
+                fila.drainTo(lote, tamanhoMaximoLote - 1);
+                long prazo = System.nanoTime() + atrasoMaximoNs;
+                while (lote.size() < tamanhoMaximoLote) {
+                    long restante = prazo - System.nanoTime();
+                    Pedido proximo = (restante > 0) ? fila.poll(restante, TimeUnit.NANOSECONDS) : null;
+                    if (proximo == null) {
+                        break;
+                    }
+                    lote.add(proximo);
+                    fila.drainTo(lote, tamanhoMaximoLote - lote.size());
+                }
+            } catch (InterruptedException e) {
+                // Segue gravando o que já foi retirado da fila
+            }
+            if (!lote.isEmpty()) {
+                try {
+                    gravar(lote);
+                } catch (RuntimeException e) {
+                    // Não deixa a thread gravadora morrer: falha só as vendas deste lote
+                    System.err.println("Erro inesperado ao gravar lote de compras: " + e);
+                    for (Pedido pedido : lote) {
+                        pedido.resultado.completeExceptionally(new SQLException("Erro inesperado ao gravar compra: " + e, e));
+                    }
+                }
+                lote.clear();
+            }
+        }
+    }
+
+    private void gravar(List<Pedido> lote) {
+        // Mesma ordem de bloqueio do carrinho (ID do livro); a ordenação é estável,
+        // então vendas do mesmo livro mantêm a ordem de chegada
+        lote.sort(Comparator.comparingInt(p -> p.idLivro));
+        CacheCatalogo cache = CacheCatalogo.getInstancia();
+        cache.iniciarBaixaEstoque(); // Os ajustes de estoque do lote acontecem antes do encerramento
+        try {
+            gravarEmLote(lote);
+        } catch (SQLException e) {
+            System.err.println("Erro ao gravar lote de " + lote.size() + " compras, gravando uma a uma: " + e.getMessage());
+            for (Pedido pedido : lote) {
+                gravarSozinho(pedido);
+            }
+        } finally {
+            cache.encerrarBaixaEstoque();
+        }
+    }
+
+    private void gravarEmLote(List<Pedido> lote) throws SQLException {
+        int[] resultados;
+        Connection conn = null;
+        try {
+            conn = ConexaoBD.getConexao();
+            conn.setAutoCommit(false);
+            try (PreparedStatement pstmt = conn.prepareStatement(CompraDAO.SQL_REGISTRAR_COMPRA)) {
+                for (Pedido pedido : lote) {
+                    CompraDAO.preencherCompra(pstmt, pedido.idCliente, pedido.idLivro, pedido.dataCompra, pedido.chaveIdempotencia);
+                    pstmt.addBatch();
+                }
+                resultados = pstmt.executeBatch();
+            }
+            conn.commit(); // Um único commit para o lote inteiro
+        } catch (SQLException e) {
+            if (conn != null) {
+                try {
+                    conn.rollback();
+                } catch (SQLException ex) {
+                    System.err.println("Erro ao reverter transação: " + ex.getMessage());
+                }
+            }
+            throw e;
+        } finally {
+            ConexaoBD.devolverConexao(conn);
+        }
+
+        for (int i = 0; i < lote.size(); i++) {
+            if (resultados[i] == 0) {
+                gravarSozinho(lote.get(i)); // Confirma a falta de estoque (fatias bloqueadas ou venda repetida)
+            } else {
+                concluir(lote.get(i), CompraDAO.COMPRA_GRAVADA);
+            }
+        }
+    }
+
+    private void gravarSozinho(Pedido pedido) {
+        try (Connection conn = ConexaoBD.getConexao()) {
+            concluir(pedido, CompraDAO.gravarCompra(conn, pedido.idCliente, pedido.idLivro, pedido.dataCompra, pedido.chaveIdempotencia));
+        } catch (SQLException e) {
+            System.err.println("Erro ao registrar compra: " + e.getMessage());
+            pedido.resultado.completeExceptionally(e);
+        }
+    }
+
+    private static void concluir(Pedido pedido, int resultado) {
+        if (resultado == CompraDAO.COMPRA_SEM_ESTOQUE) {
+            pedido.resultado.completeExceptionally(new SQLException("Falha ao registrar compra: Livro sem estoque ou não encontrado."));
+            return;
+        }
+        if (resultado == CompraDAO.COMPRA_GRAVADA) {
+            CacheCatalogo.getInstancia().ajustarEstoque(pedido.idLivro, -1);
+        }
+        pedido.resultado.complete(resultado);
+    }
+
+    private static final class Pedido {
+        final int idCliente;
+        final int idLivro;
+        final Timestamp dataCompra;
+        final String chaveIdempotencia;
+        final CompletableFuture<Integer> resultado = new CompletableFuture<>();
+
+        Pedido(int idCliente, int idLivro, Timestamp dataCompra, String chaveIdempotencia) {
+            this.idCliente = idCliente;
+            this.idLivro = idLivro;
+            this.dataCompra = dataCompra;
+            this.chaveIdempotencia = chaveIdempotencia;
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package sistemalivraria.dados;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyManager;
+
+/**
+ * Importação de catálogos de livros a partir de arquivos CSV.
+ * O arquivo é enviado ao banco com COPY FROM STDIN para uma tabela temporária
+ * e depois incorporado a public.editora e public.livros com comandos SQL sobre
+ * o conjunto inteiro, em vez de um INSERT por livro.
+ *
+ * Formato do CSV (com cabeçalho, separado por vírgula):
+ * nome,autor,isbn,preco,categoria,quantidade,editora
+ *
+ * Linhas sem isbn ou sem nome são ignoradas. Linhas com o mesmo isbn formam um
+ * único livro: as quantidades são somadas e os demais campos vêm da última
+ * dessas linhas no arquivo. Os totais de linhas ignoradas e repetidas vão no
+ * resultado.
+ */
+public class ImportacaoCatalogoDAO {
+
+    private static final String SQL_CRIAR_TEMPORARIA =
+            "CREATE TEMP TABLE importacao_livros (linha bigserial, nome text, autor text, isbn text, preco numeric(10,2), "
+            + "categoria text, quantidade integer, editora text) ON COMMIT DROP";
+
+    private static final String SQL_COPY =
+            "COPY importacao_livros (nome, autor, isbn, preco, categoria, quantidade, editora) "
+            + "FROM STDIN WITH (FORMAT csv, HEADER true)";
+
+    // Editoras citadas no arquivo que ainda não existem (mesmo critério de EditoraDAO.buscarPorNome: nome igual)
+    private static final String SQL_INSERIR_EDITORAS =
+            "INSERT INTO public.editora (nome) "
+            + "SELECT DISTINCT i.editora FROM importacao_livros i "
+            + "WHERE i.editora IS NOT NULL AND NOT EXISTS (SELECT 1 FROM public.editora e WHERE e.nome = i.editora)";
+
+    // Linhas sem isbn ou nome (ignoradas) e linhas válidas além da primeira de cada isbn (somadas)
+    private static final String SQL_CONTAR_DESCARTES =
+            "SELECT count(*) FILTER (WHERE isbn IS NULL OR nome IS NULL),"
+            + " count(*) FILTER (WHERE isbn IS NOT NULL AND nome IS NOT NULL)"
+            + " - count(DISTINCT isbn) FILTER (WHERE isbn IS NOT NULL AND nome IS NOT NULL)"
+            + " FROM importacao_livros";
+
+    // Insere os livros novos e atualiza os existentes (mesmo ISBN). Para livros já
+    // cadastrados, a quantidade do arquivo é somada ao estoque (unidades recebidas).
+    // Linhas repetidas do mesmo ISBN: quantidades somadas, demais campos da última linha.
+    private static final String SQL_MESCLAR_LIVROS =
+            "WITH agrupados AS ("
+            + " SELECT DISTINCT ON (i.isbn) i.isbn, i.nome, i.autor, i.preco, i.categoria, i.editora,"
+            + " sum(COALESCE(i.quantidade, 0)) OVER (PARTITION BY i.isbn)::integer AS quantidade"
+            + " FROM importacao_livros i"
+            + " WHERE i.isbn IS NOT NULL AND i.nome IS NOT NULL"
+            + " ORDER BY i.isbn, i.linha DESC"
+            + "), mesclados AS ("
+            + " INSERT INTO public.livros AS l (id_editora, nome, autor, preco, categoria, isbn, quantidade)"
+            + " SELECT e.id, a.nome, a.autor, a.preco, a.categoria, a.isbn, a.quantidade"
+            + " FROM agrupados a"
+            + " LEFT JOIN (SELECT nome, min(id) AS id FROM public.editora GROUP BY nome) e ON e.nome = a.editora"
+            + " ORDER BY a.isbn"
+            + " ON CONFLICT (isbn) DO UPDATE SET id_editora = COALESCE(EXCLUDED.id_editora, l.id_editora),"
+            + " nome = EXCLUDED.nome, autor = EXCLUDED.autor, preco = EXCLUDED.preco,"
+            + " categoria = EXCLUDED.categoria, quantidade = l.quantidade + EXCLUDED.quantidade"
+            + " RETURNING (xmax = 0) AS inserido"
+            + ") SELECT count(*) FILTER (WHERE inserido), count(*) FILTER (WHERE NOT inserido) FROM mesclados";
+
+    /**
+     * Importa um catálogo CSV em uma única transação: se qualquer etapa falhar,
+     * nada é gravado.
+     *
+     * @param arquivo Caminho do arquivo CSV (UTF-8).
+     * @return Totais da importação, incluindo a vazão em linhas por segundo.
+     * @throws SQLException Se ocorrer um erro durante a operação no banco.
+     * @throws IOException Se ocorrer um erro ao ler o arquivo.
+     */
+    public ResultadoImportacao importarCsv(Path arquivo) throws SQLException, IOException {
+        long inicio = System.nanoTime();
+        ResultadoImportacao resultado = new ResultadoImportacao();
+
+        Connection conn = null;
+        try {
+            conn = ConexaoBD.getConexao();
+            conn.setAutoCommit(false); // A tabela temporária existe até o commit
+
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute(SQL_CRIAR_TEMPORARIA);
+            }
+
+            CopyManager copyManager = conn.unwrap(PGConnection.class).getCopyAPI();
+            try (Reader leitor = Files.newBufferedReader(arquivo, StandardCharsets.UTF_8)) {
+                resultado.linhasLidas = copyManager.copyIn(SQL_COPY, leitor);
+            }
+
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute("ANALYZE importacao_livros"); // Estatísticas para o planejador das junções abaixo
+                try (ResultSet rs = stmt.executeQuery(SQL_CONTAR_DESCARTES)) {
+                    if (rs.next()) {
+                        resultado.linhasIgnoradas = rs.getLong(1);
+                        resultado.linhasRepetidas = rs.getLong(2);
+                    }
+                }
+                resultado.editorasCriadas = stmt.executeUpdate(SQL_INSERIR_EDITORAS);
+            }
+
+            try (PreparedStatement pstmt = conn.prepareStatement(SQL_MESCLAR_LIVROS);
+                 ResultSet rs = pstmt.executeQuery()) {
+                if (rs.next()) {
+                    resultado.livrosInseridos = rs.getLong(1);
+                    resultado.livrosAtualizados = rs.getLong(2);
+                }
+            }
+
+            conn.commit();
+            CacheCatalogo.getInstancia().invalidarLivros();
+            if (resultado.livrosAtualizados > 0) {
+                CacheResumoClientes.getInstancia().invalidarTudo(); // Preço ou categoria podem ter mudado
+            }
+            if (resultado.editorasCriadas > 0) {
+                CacheCatalogo.getInstancia().invalidarEditoras();
+            }
+        } catch (SQLException | IOException e) {
+            System.err.println("Erro ao importar catálogo: " + e.getMessage());
+            if (conn != null) {
+                try {
+                    conn.rollback();
+                    System.err.println("Transação revertida.");
+                } catch (SQLException ex) {
+                    System.err.println("Erro ao reverter transação: " + ex.getMessage());
+                }
+            }
+            throw e;
+        } finally {
+            ConexaoBD.devolverConexao(conn);
+        }
+
+        resultado.duracaoMs = (System.nanoTime() - inicio) / 1_000_000;
+        System.out.println("Catálogo importado: " + resultado);
+        return resultado;
+    }
+
+    /**
+     * Totais de uma importação de catálogo.
+     */
+    public static class ResultadoImportacao {
+        private long linhasLidas;
+        private long linhasIgnoradas;
+        private long linhasRepetidas;
+        private long editorasCriadas;
+        private long livrosInseridos;
+        private long livrosAtualizados;
+        private long duracaoMs;
+
+        public long getLinhasLidas() {
+            return linhasLidas;
+        }
+
+        /** @return Linhas sem isbn ou sem nome, não importadas. */
+        public long getLinhasIgnoradas() {
+            return linhasIgnoradas;
+        }
+
+        /** @return Linhas com isbn já presente em outra linha do arquivo (quantidades somadas). */
+        public long getLinhasRepetidas() {
+            return linhasRepetidas;
+        }
+
+        public long getEditorasCriadas() {
+            return editorasCriadas;
+        }
+
+        public long getLivrosInseridos() {
+            return livrosInseridos;
+        }
+
+        public long getLivrosAtualizados() {
+            return livrosAtualizados;
+        }
+
+        public long getDuracaoMs() {
+            return duracaoMs;
+        }
+
+        /** @return Linhas do arquivo processadas por segundo (COPY + mescla). */
+        public double getLinhasPorSegundo() {
+            return (duracaoMs > 0) ? linhasLidas * 1000.0 / duracaoMs : linhasLidas;
+        }
+
+        @Override
+        public String toString() {
+            return linhasLidas + " linhas em " + duracaoMs + " ms (" + String.format("%.0f", getLinhasPorSegundo()) + " linhas/s), "
+                    + linhasIgnoradas + " ignoradas, " + linhasRepetidas + " com isbn repetido, "
+                    + livrosInseridos + " livros novos, " + livrosAtualizados + " atualizados, " + editorasCriadas + " editoras criadas";
+        }
+    }
+}
@@ -0,0 +1,438 @@
+package sistemalivraria.controles;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+import java.util.regex.Pattern;
+
+/**
+ * Índice em memória para busca por prefixo enquanto o usuário digita
+ * (ex: combos de cliente e livro na TelaCompra).
+ *
+ * As chaves (texto normalizado: minúsculo, sem acentos) ficam ordenadas em um
+ * único char[] com um int[] de posições, em vez de um objeto por nó como numa
+ * trie, e a busca é uma pesquisa binária seguida de uma varredura curta.
+ * Cada campo indexado gera uma chave com o texto completo e uma por palavra,
+ * então "post" encontra "Memórias Póstumas".
+ *
+ * Inclusões e alterações vão para uma lista pequena de pendentes (também
+ * ordenada), consultada junto com a base; quando ela cresce, é mesclada à base.
+ * Leituras não bloqueiam: usam um retrato imutável trocado a cada escrita.
+ *
+ * @param <T> Tipo dos itens indexados.
+ */
+public class IndicePrefixos<T> {
+
+    /** Quantidade de chaves pendentes que dispara a mescla com a base. */
+    private static final int LIMITE_PENDENTES = 512;
+    /** Fração de posições mortas em itens (1/N) que dispara a compactação na mescla. */
+    private static final int FRACAO_POSICOES_MORTAS = 4;
+
+    private static final Pattern MARCAS = Pattern.compile("\\p{M}+");
+    private static final Pattern ESPACOS = Pattern.compile("\\s+");
+    private static final Pattern SEPARADOR_PALAVRAS = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private final Function<T, String[]> campos;
+    private final ToIntFunction<T> identificador;
+
+    // Estado de escrita (protegido por synchronized)
+    private final Map<Integer, Integer> posicaoPorId = new HashMap<>();
+    private Object[] itens = new Object[0]; // posição -> item (null se removido)
+    private int totalItens = 0;
+    private int removidos = 0;
+
+    private volatile Retrato retrato = new Retrato(new char[0], new int[]{0}, new int[0], new String[0], new int[0], new Object[0]);
+
+    /**
+     * @param campos Textos indexados de cada item (ex: título e autor).
+     * @param identificador ID único do item, usado para atualizar ou remover.
+     */
+    public IndicePrefixos(Function<T, String[]> campos, ToIntFunction<T> identificador) {
+        this.campos = campos;
+        this.identificador = identificador;
+    }
+
+    /**
+     * Reconstrói o índice do zero com os itens informados.
+     *
+     * @param novosItens Todos os itens a indexar.
+     */
+    public synchronized void construir(Iterable<T> novosItens) {
+        posicaoPorId.clear();
+        List<String> chaves = new ArrayList<>();
+        List<Object> lista = new ArrayList<>();
+        for (T item : novosItens) {
+            int posicaoItem = lista.size();
+            Integer anterior = posicaoPorId.put(identificador.applyAsInt(item), posicaoItem);
+            if (anterior != null) {
+                lista.set(anterior, null); // ID repetido: vale o último
+            }
+            // A posição do item vai no fim da chave, após um '\0' (menor que qualquer caractere),
+            // para ordenar um String[] simples sem perder a ordem entre as chaves
+            String sufixo = "\0" + (char) (posicaoItem >>> 16) + (char) posicaoItem;
+            for (String chave : gerarChaves(item)) {
+                chaves.add(chave + sufixo);
+            }
+            lista.add(item);
+        }
+
+        itens = lista.toArray();
+        totalItens = itens.length;
+        removidos = 0;
+
+        String[] ordenadas = chaves.toArray(new String[0]);
+        chaves = null;
+        Arrays.sort(ordenadas);
+
+        int tamanhoTexto = 0;
+        for (String chave : ordenadas) {
+            tamanhoTexto += chave.length() - 3;
+        }
+        char[] texto = new char[tamanhoTexto];
+        int[] inicio = new int[ordenadas.length + 1];
+        int[] posicao = new int[ordenadas.length];
+        int cursor = 0;
+        for (int i = 0; i < ordenadas.length; i++) {
+            String chave = ordenadas[i];
+            int tam = chave.length() - 3;
+            inicio[i] = cursor;
+            chave.getChars(0, tam, texto, cursor);
+            cursor += tam;
+            posicao[i] = (chave.charAt(tam + 1) << 16) | chave.charAt(tam + 2);
+            ordenadas[i] = null; // Libera a memória durante a cópia
+        }
+        inicio[ordenadas.length] = cursor;
+
+        retrato = new Retrato(texto, inicio, posicao, new String[0], new int[0], itens);
+    }
+
+    /**
+     * Inclui um item, ou substitui o item com o mesmo ID (ex: após uma alteração).
+     *
+     * @param item O item incluído ou alterado.
+     */
+    public synchronized void atualizar(T item) {
+        marcarRemovido(identificador.applyAsInt(item));
+
+        if (totalItens == itens.length) {
+            itens = Arrays.copyOf(itens, Math.max(16, itens.length * 2));
+        }
+        int posicao = totalItens++;
+        itens[posicao] = item;
+        posicaoPorId.put(identificador.applyAsInt(item), posicao);
+
+        Retrato atual = retrato;
+        List<String> novasChaves = gerarChaves(item);
+        String[] pendChaves = Arrays.copyOf(atual.pendChaves, atual.pendChaves.length + novasChaves.size());
+        int[] pendPosicao = Arrays.copyOf(atual.pendPosicao, pendChaves.length);
+        int n = atual.pendChaves.length;
+        for (String chave : novasChaves) {
+            // Inserção ordenada: a lista de pendentes é pequena
+            int i = n - 1;
+            while (i >= 0 && pendChaves[i].compareTo(chave) > 0) {
+                pendChaves[i + 1] = pendChaves[i];
+                pendPosicao[i + 1] = pendPosicao[i];
+                i--;
+            }
+            pendChaves[i + 1] = chave;
+            pendPosicao[i + 1] = posicao;
+            n++;
+        }
+
+        retrato = new Retrato(atual.texto, atual.inicio, atual.posicao, pendChaves, pendPosicao, itens);
+        if (pendChaves.length > LIMITE_PENDENTES || removidos > totalItens / 4) {
+            mesclar();
+        }
+    }
+
+    /**
+     * Remove o item com o ID informado.
+     *
+     * @param id ID do item.
+     */
+    public synchronized void remover(int id) {
+        marcarRemovido(id);
+        if (removidos > totalItens / 4) {
+            mesclar();
+        }
+    }
+
+    /**
+     * Busca os primeiros itens (em ordem alfabética da chave) cujo algum campo,
+     * ou alguma palavra de um campo, começa com o prefixo.
+     *
+     * @param prefixo Texto digitado (maiúsculas e acentos são ignorados).
+     * @param limite Quantidade máxima de itens.
+     * @return Itens encontrados, sem repetição.
+     */
+    @SuppressWarnings("unchecked")
+    public List<T> buscar(String prefixo, int limite) {
+        List<T> resultado = new ArrayList<>();
+        String p = normalizar(prefixo);
+        if (p.isEmpty() || limite <= 0) {
+            return resultado;
+        }
+        Retrato r = retrato;
+        int[] vistos = new int[Math.min(limite, 16)]; // Posições já incluídas (cresce se o limite for maior)
+        int qtd = 0;
+
+        int i = r.primeiraChaveMaiorOuIgual(p);
+        int j = primeiraMaiorOuIgual(r.pendChaves, p);
+        while (qtd < limite) {
+            boolean temBase = i < r.posicao.length && r.comecaCom(i, p);
+            boolean temPend = j < r.pendChaves.length && r.pendChaves[j].startsWith(p);
+            int posicao;
+            if (temBase && (!temPend || r.compararChave(i, r.pendChaves[j]) <= 0)) {
+                posicao = r.posicao[i++];
+            } else if (temPend) {
+                posicao = r.pendPosicao[j++];
+            } else {
+                break;
+            }
+            Object item = r.itens[posicao];
+            if (item == null || contem(vistos, qtd, posicao)) {
+                continue; // Removido/alterado, ou já incluído por outra chave
+            }
+            if (qtd == vistos.length) {
+                vistos = Arrays.copyOf(vistos, vistos.length * 2);
+            }
+            vistos[qtd++] = posicao;
+            resultado.add((T) item);
+        }
+        return resultado;
+    }
+
+    /** @return Quantidade de itens ativos no índice. */
+    public synchronized int tamanho() {
+        return posicaoPorId.size();
+    }
+
+    /**
+     * Normaliza um texto para comparação: minúsculo, sem acentos e com espaços simples.
+     */
+    static String normalizar(String texto) {
+        if (texto == null) {
+            return "";
+        }
+        String semAcentos = texto;
+        if (possuiNaoAscii(texto)) { // Texto ASCII não tem acentos a remover
+            semAcentos = MARCAS.matcher(Normalizer.normalize(texto, Normalizer.Form.NFD)).replaceAll("");
+        }
+        return ESPACOS.matcher(semAcentos.toLowerCase(Locale.ROOT).trim()).replaceAll(" ");
+    }
+
+    private static boolean possuiNaoAscii(String texto) {
+        for (int i = 0; i < texto.length(); i++) {
+            if (texto.charAt(i) > 127) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private List<String> gerarChaves(T item) {
+        List<String> chaves = new ArrayList<>();
+        String[] textos = campos.apply(item);
+        if (textos == null) {
+            return chaves;
+        }
+        for (String texto : textos) {
+            String completo = normalizar(texto);
+            if (completo.isEmpty()) {
+                continue;
+            }
+            chaves.add(completo);
+            String[] palavras = SEPARADOR_PALAVRAS.split(completo);
+            for (int i = 1; i < palavras.length; i++) { // A 1ª palavra já é prefixo do texto completo
+                if (palavras[i].length() > 1) {
+                    chaves.add(palavras[i]);
+                }
+            }
+        }
+        return chaves;
+    }
+
+    private void marcarRemovido(int id) {
+        Integer anterior = posicaoPorId.remove(id);
+        if (anterior != null && itens[anterior] != null) {
+            itens[anterior] = null; // As chaves antigas ficam na base até a próxima mescla
+            removidos++;
+        }
+    }
+
+    /**
+     * Mescla as chaves pendentes na base (ambas já ordenadas), descartando
+     * chaves de itens removidos. Se muitas posições de itens ficaram vazias,
+     * também renumera os itens ativos (ver compactarItens).
+     */
+    private void mesclar() {
+        Retrato r = retrato;
+        int[] novaPosicao = null;
+        if (totalItens - posicaoPorId.size() > totalItens / FRACAO_POSICOES_MORTAS) {
+            novaPosicao = compactarItens();
+        }
+        int total = r.posicao.length + r.pendChaves.length;
+        char[] texto = new char[r.texto.length + tamanhoTotal(r.pendChaves)];
+        int[] inicio = new int[total + 1];
+        int[] posicao = new int[total];
+        int n = 0;
+        int cursor = 0;
+        int i = 0;
+        int j = 0;
+        while (i < r.posicao.length || j < r.pendChaves.length) {
+            boolean usarBase = j >= r.pendChaves.length
+                    || (i < r.posicao.length && r.compararChave(i, r.pendChaves[j]) <= 0);
+            if (usarBase) {
+                if (r.itens[r.posicao[i]] != null) {
+                    int tam = r.inicio[i + 1] - r.inicio[i];
+                    System.arraycopy(r.texto, r.inicio[i], texto, cursor, tam);
+                    inicio[n] = cursor;
+                    posicao[n++] = novaPosicao == null ? r.posicao[i] : novaPosicao[r.posicao[i]];
+                    cursor += tam;
+                }
+                i++;
+            } else {
+                if (r.itens[r.pendPosicao[j]] != null) {
+                    String chave = r.pendChaves[j];
+                    chave.getChars(0, chave.length(), texto, cursor);
+                    inicio[n] = cursor;
+                    posicao[n++] = novaPosicao == null ? r.pendPosicao[j] : novaPosicao[r.pendPosicao[j]];
+                    cursor += chave.length();
+                }
+                j++;
+            }
+        }
+        inicio[n] = cursor;
+        retrato = new Retrato(Arrays.copyOf(texto, cursor), Arrays.copyOf(inicio, n + 1), Arrays.copyOf(posicao, n),
+                new String[0], new int[0], itens);
+        removidos = 0;
+    }
+
+    /**
+     * Copia os itens ativos para um array novo, sem as posições vazias deixadas
+     * por remoções e alterações, e atualiza posicaoPorId. O array antigo continua
+     * no retrato atual até a mescla publicar o novo, então as leituras em curso
+     * não são afetadas.
+     *
+     * @return Nova posição de cada posição antiga (sem significado para as vazias).
+     */
+    private int[] compactarItens() {
+        Object[] antigos = itens;
+        int[] novaPosicao = new int[totalItens];
+        Object[] novos = new Object[Math.max(16, posicaoPorId.size() * 2)];
+        int n = 0;
+        for (int p = 0; p < totalItens; p++) {
+            if (antigos[p] != null) {
+                novaPosicao[p] = n;
+                novos[n++] = antigos[p];
+            }
+        }
+        for (Map.Entry<Integer, Integer> entrada : posicaoPorId.entrySet()) {
+            entrada.setValue(novaPosicao[entrada.getValue()]);
+        }
+        itens = novos;
+        totalItens = n;
+        return novaPosicao;
+    }
+
+    private static int tamanhoTotal(String[] chaves) {
+        int total = 0;
+        for (String chave : chaves) {
+            total += chave.length();
+        }
+        return total;
+    }
+
+    private static int primeiraMaiorOuIgual(String[] chaves, String p) {
+        int ini = 0;
+        int fim = chaves.length;
+        while (ini < fim) {
+            int meio = (ini + fim) >>> 1;
+            if (chaves[meio].compareTo(p) < 0) {
+                ini = meio + 1;
+            } else {
+                fim = meio;
+            }
+        }
+        return ini;
+    }
+
+    private static boolean contem(int[] valores, int qtd, int valor) {
+        for (int i = 0; i < qtd; i++) {
+            if (valores[i] == valor) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Retrato imutável do índice usado pelas leituras: chaves da base ordenadas
+     * em texto/inicio, posição do item de cada chave, e as chaves pendentes.
+     */
+    private static final class Retrato {
+        final char[] texto;
+        final int[] inicio; // Chave k = texto[inicio[k] .. inicio[k + 1])
+        final int[] posicao;
+        final String[] pendChaves;
+        final int[] pendPosicao;
+        final Object[] itens;
+
+        Retrato(char[] texto, int[] inicio, int[] posicao, String[] pendChaves, int[] pendPosicao, Object[] itens) {
+            this.texto = texto;
+            this.inicio = inicio;
+            this.posicao = posicao;
+            this.pendChaves = pendChaves;
+            this.pendPosicao = pendPosicao;
+            this.itens = itens;
+        }
+
+        /** Compara a chave k da base com s (mesma ordem de String.compareTo). */
+        int compararChave(int k, String s) {
+            int ini = inicio[k];
+            int tam = inicio[k + 1] - ini;
+            int lim = Math.min(tam, s.length());
+            for (int c = 0; c < lim; c++) {
+                char a = texto[ini + c];
+                char b = s.charAt(c);
+                if (a != b) {
+                    return a - b;
+                }
+            }
+            return tam - s.length();
+        }
+
+        boolean comecaCom(int k, String p) {
+            int ini = inicio[k];
+            if (inicio[k + 1] - ini < p.length()) {
+                return false;
+            }
+            for (int c = 0; c < p.length(); c++) {
+                if (texto[ini + c] != p.charAt(c)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        int primeiraChaveMaiorOuIgual(String p) {
+            int ini = 0;
+            int fim = posicao.length;
+            while (ini < fim) {
+                int meio = (ini + fim) >>> 1;
+                if (compararChave(meio, p) < 0) {
+                    ini = meio + 1;
+                } else {
+                    fim = meio;
+                }
+            }
+            return ini;
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package sistemalivraria.entidades;
+
+/**
+ * Linha de um carrinho de compras: um livro e a quantidade de unidades.
+ */
+public class ItemCarrinho {
+
+    private Livro livro;
+    private int quantidade;
+
+    public ItemCarrinho(Livro livro, int quantidade) {
+        this.livro = livro;
+        this.quantidade = quantidade;
+    }
+
+    // Getters e Setters
+    public Livro getLivro() {
+        return livro;
+    }
+
+    public void setLivro(Livro livro) {
+        this.livro = livro;
+    }
+
+    public int getQuantidade() {
+        return quantidade;
+    }
+
+    public void setQuantidade(int quantidade) {
+        this.quantidade = quantidade;
+    }
+
+    @Override
+    public String toString() {
+        return quantidade + " x " + livro;
+    }
+}
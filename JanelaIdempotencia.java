@@ -0,0 +1,73 @@
+package sistemalivraria.controles;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Janela limitada das chaves de idempotência das vendas mais recentes.
+ * A primeira tentativa com uma chave registra um Future; as repetições (clique
+ * duplo, nova tentativa) recebem o mesmo Future em vez de gravar de novo.
+ *
+ * Só as vendas gravadas ficam na janela: se a tentativa falhar, a chave sai
+ * para que uma nova tentativa possa gravar. Chaves que já saíram da janela
+ * (mais antigas ou de antes de reiniciar o sistema) são barradas pela chave
+ * primária de livros_comprados_chaves (CompraDAO devolve COMPRA_REPETIDA).
+ */
+final class JanelaIdempotencia {
+
+    private final Map<String, CompletableFuture<Void>> chaves;
+
+    /**
+     * @param capacidade Máximo de chaves lembradas (as mais antigas saem primeiro).
+     */
+    JanelaIdempotencia(final int capacidade) {
+        this.chaves = new LinkedHashMap<String, CompletableFuture<Void>>(256, 0.75f) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CompletableFuture<Void>> maisAntiga) {
+                return size() > capacidade;
+            }
+        };
+    }
+
+    /**
+     * Registra a primeira tentativa de uma chave.
+     *
+     * @param chave Chave de idempotência, ou null (sem controle).
+     * @return null se esta é a primeira tentativa; senão, o Future da tentativa original.
+     */
+    synchronized CompletableFuture<Void> registrar(String chave) {
+        if (chave == null) {
+            return null;
+        }
+        CompletableFuture<Void> anterior = chaves.get(chave);
+        if (anterior == null) {
+            chaves.put(chave, new CompletableFuture<>());
+        }
+        return anterior;
+    }
+
+    /** Marca a venda da chave como gravada; as repetições passam a ter sucesso imediato. */
+    void gravou(String chave) {
+        CompletableFuture<Void> tentativa = obter(chave);
+        if (tentativa != null) {
+            tentativa.complete(null);
+        }
+    }
+
+    /** Retira a chave da janela e repassa o erro às repetições que aguardavam a tentativa. */
+    void falhou(String chave, Throwable erro) {
+        CompletableFuture<Void> tentativa;
+        synchronized (this) {
+            tentativa = (chave != null) ? chaves.remove(chave) : null;
+        }
+        if (tentativa != null) {
+            tentativa.completeExceptionally((erro instanceof CompletionException && erro.getCause() != null) ? erro.getCause() : erro);
+        }
+    }
+
+    private synchronized CompletableFuture<Void> obter(String chave) {
+        return (chave != null) ? chaves.get(chave) : null;
+    }
+}
@@ -1,10 +1,22 @@
 package sistemalivraria.controles;
 
+import sistemalivraria.dados.CacheCatalogo;
+import sistemalivraria.dados.ImportacaoCatalogoDAO;
 import sistemalivraria.dados.LivroDAO;
 import sistemalivraria.entidades.Livro;
 import sistemalivraria.entidades.Editora;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
 
 /**
  * Classe de controle para gerenciar operações relacionadas a Livros.
@@ -12,10 +24,22 @@ import java.util.List;
  */
 public class LivroControle {
 
+    // Índice de sugestões por prefixo (título/autor), compartilhado por todas as telas.
+    // Construído a partir do banco na primeira sugestão e mantido nas inclusões. Guarda só
+    // ID e textos: estoque e preço mudam a cada venda e são lidos na hora da sugestão.
+    private static final IndicePrefixos<TextoLivro> indiceLivros =
+            new IndicePrefixos<>(t -> new String[]{t.titulo, t.autor}, t -> t.id);
+    private static boolean indiceLivrosConstruido = false;
+
+    // Limite de fatias do estoque fatiado (cada fatia é uma linha em livros_estoque_slots)
+    private static final int MAXIMO_FATIAS_ESTOQUE = 64;
+
     private LivroDAO livroDAO;
+    private ImportacaoCatalogoDAO importacaoCatalogoDAO;
 
     public LivroControle() {
         this.livroDAO = new LivroDAO();
+        this.importacaoCatalogoDAO = new ImportacaoCatalogoDAO();
     }
 
     /**
@@ -26,6 +50,86 @@ public class LivroControle {
      * @throws IllegalArgumentException Se dados inválidos forem fornecidos.
      */
     public void cadastrarLivro(Livro livro) throws SQLException, IllegalArgumentException {
+        validarLivro(livro);
+
+        // O DAO agora retorna o ID gerado, atualizamos o objeto
+        int idGerado = livroDAO.inserir(livro, livro.getEditoraObj().getId());
+        if (idGerado > 0) {
+            livro.setId(idGerado);
+            atualizarIndice(livro);
+            System.out.println("Livro cadastrado com sucesso: " + livro.getTitulo() + " (ID: " + idGerado + ")");
+        } else {
+             System.err.println("Falha ao obter ID gerado para o livro: " + livro.getTitulo());
+             // Considerar lançar exceção se o ID for crucial aqui
+        }
+    }
+
+    /**
+     * Cadastra vários livros de uma vez (ex: remessa de uma editora).
+     * Cada livro passa pela mesma validação de cadastrarLivro; os inválidos são
+     * ignorados e informados no retorno, e os válidos são inseridos em lote
+     * numa única transação.
+     *
+     * @param livros Os livros a serem cadastrados.
+     * @return Erros de validação por posição na lista (vazio se todos forem válidos).
+     * @throws SQLException Se ocorrer erro no banco de dados (nenhum livro é inserido).
+     * @throws IllegalArgumentException Se a lista for nula.
+     */
+    public Map<Integer, String> cadastrarLivros(List<Livro> livros) throws SQLException, IllegalArgumentException {
+        if (livros == null) {
+            throw new IllegalArgumentException("Lista de livros não pode ser nula.");
+        }
+        Map<Integer, String> erros = new LinkedHashMap<>();
+        List<Livro> validos = new ArrayList<>();
+        for (int i = 0; i < livros.size(); i++) {
+            try {
+                validarLivro(livros.get(i));
+                validos.add(livros.get(i));
+            } catch (IllegalArgumentException e) {
+                erros.put(i, e.getMessage());
+            }
+        }
+
+        if (!validos.isEmpty()) {
+            livroDAO.inserirLote(validos);
+            for (Livro livro : validos) {
+                atualizarIndice(livro);
+            }
+            System.out.println(validos.size() + " livro(s) cadastrado(s) em lote; " + erros.size() + " rejeitado(s).");
+        }
+        return erros;
+    }
+
+    /**
+     * Importa um catálogo de livros a partir de um arquivo CSV (cargas iniciais e
+     * catálogos de editoras). Usa COPY no banco, bem mais rápido que o cadastro em lote.
+     *
+     * @param caminhoArquivo Caminho do arquivo CSV (nome,autor,isbn,preco,categoria,quantidade,editora).
+     * @return Totais da importação, incluindo linhas por segundo.
+     * @throws SQLException Se ocorrer erro no banco de dados (nada é importado).
+     * @throws IOException Se ocorrer erro ao ler o arquivo.
+     * @throws IllegalArgumentException Se o arquivo não existir.
+     */
+    public ImportacaoCatalogoDAO.ResultadoImportacao importarCatalogoCsv(String caminhoArquivo) throws SQLException, IOException, IllegalArgumentException {
+        if (caminhoArquivo == null || caminhoArquivo.trim().isEmpty()) {
+            throw new IllegalArgumentException("Caminho do arquivo não pode ser vazio.");
+        }
+        Path arquivo = Paths.get(caminhoArquivo);
+        if (!Files.isRegularFile(arquivo)) {
+            throw new IllegalArgumentException("Arquivo de catálogo não encontrado: " + caminhoArquivo);
+        }
+        ImportacaoCatalogoDAO.ResultadoImportacao resultado = importacaoCatalogoDAO.importarCsv(arquivo);
+        invalidarIndice(); // Muitos livros novos: mais barato reconstruir na próxima sugestão
+        return resultado;
+    }
+
+    /**
+     * Valida os dados de um livro para cadastro.
+     *
+     * @param livro O livro a validar.
+     * @throws IllegalArgumentException Se algum dado for inválido.
+     */
+    private void validarLivro(Livro livro) throws IllegalArgumentException {
         if (livro == null) {
             throw new IllegalArgumentException("Objeto Livro não pode ser nulo.");
         }
@@ -44,16 +148,6 @@ public class LivroControle {
         if (livro.getPreco() < 0) {
             throw new IllegalArgumentException("Preço não pode ser negativo.");
         }
-
-        // O DAO agora retorna o ID gerado, atualizamos o objeto
-        int idGerado = livroDAO.inserir(livro, livro.getEditoraObj().getId());
-        if (idGerado > 0) {
-            livro.setId(idGerado);
-            System.out.println("Livro cadastrado com sucesso: " + livro.getTitulo() + " (ID: " + idGerado + ")");
-        } else {
-             System.err.println("Falha ao obter ID gerado para o livro: " + livro.getTitulo());
-             // Considerar lançar exceção se o ID for crucial aqui
-        }
     }
 
     /**
@@ -68,15 +162,208 @@ public class LivroControle {
         return livroDAO.buscarPorId(id);
     }
 
+    /**
+     * Sugere livros comprados pelos mesmos clientes que compraram o livro
+     * ("quem comprou este livro também comprou").
+     *
+     * @param livro O livro de referência.
+     * @param limite Quantidade máxima de sugestões.
+     * @return Os livros sugeridos, do mais ao menos frequente.
+     * @throws SQLException Se ocorrer erro no banco de dados.
+     * @throws IllegalArgumentException Se o livro ou o limite forem inválidos.
+     */
+    public List<Livro> recomendarLivros(Livro livro, int limite) throws SQLException, IllegalArgumentException {
+        if (livro == null || livro.getId() <= 0) {
+            throw new IllegalArgumentException("Livro inválido para recomendação.");
+        }
+        if (limite <= 0) {
+            throw new IllegalArgumentException("Limite deve ser maior que zero.");
+        }
+        return livroDAO.buscarPorIds(RecomendacaoLivros.getInstancia().recomendar(livro.getId(), limite));
+    }
+
+    /**
+     * Busca vários livros pelo ID em uma única consulta.
+     *
+     * @param ids IDs dos livros.
+     * @return Os livros encontrados, na ordem dos IDs informados.
+     * @throws SQLException Se ocorrer erro no banco de dados.
+     * @throws IllegalArgumentException Se a lista de IDs for nula.
+     */
+    public List<Livro> buscarLivrosPorIds(int[] ids) throws SQLException, IllegalArgumentException {
+        if (ids == null) {
+            throw new IllegalArgumentException("Lista de IDs não pode ser nula.");
+        }
+        return livroDAO.buscarPorIds(ids);
+    }
+
     /**
      * Lista todos os livros.
      *
-     * @return Lista de Livros.
+     * @return Lista de Livros (somente leitura).
      * @throws SQLException Se ocorrer erro no banco de dados.
      */
     public List<Livro> listarTodosLivros() throws SQLException {
-        // O DAO listarTodos precisa carregar a Editora associada
-        return livroDAO.listarTodos();
+        // A listagem fica em cache até a próxima inclusão/alteração/exclusão de livro;
+        // as vendas só ajustam o estoque do livro vendido no cache
+        CacheCatalogo cache = CacheCatalogo.getInstancia();
+        List<Livro> emCache = cache.getLivros();
+        if (emCache != null) {
+            return emCache;
+        }
+        long versao = cache.getVersao();
+        return cache.publicarLivros(versao, livroDAO.listarTodos());
+    }
+
+    /**
+     * Sugere livros cujo título ou autor (ou uma de suas palavras) começa com o
+     * texto digitado. Usa um índice em memória, sem consultar o banco a cada tecla;
+     * estoque e preço vêm do catálogo em cache (CacheCatalogo), ou do banco para os
+     * livros que não estiverem nele.
+     *
+     * @param prefixo Texto digitado.
+     * @param limite Quantidade máxima de sugestões.
+     * @return Livros sugeridos, em ordem alfabética.
+     * @throws SQLException Se ocorrer erro ao construir o índice na primeira chamada
+     *         ou ao ler livros fora do cache.
+     * @throws IllegalArgumentException Se o limite for inválido.
+     */
+    public List<Livro> sugerirLivros(String prefixo, int limite) throws SQLException, IllegalArgumentException {
+        if (limite <= 0) {
+            throw new IllegalArgumentException("Limite deve ser maior que zero.");
+        }
+        garantirIndice(livroDAO);
+        List<TextoLivro> encontrados = indiceLivros.buscar(prefixo, limite);
+
+        // Dados atuais do retrato do catálogo em cache; os que não estiverem nele, numa única consulta
+        CacheCatalogo cache = CacheCatalogo.getInstancia();
+        Livro[] atuais = new Livro[encontrados.size()];
+        int[] faltantes = new int[encontrados.size()];
+        int numeroFaltantes = 0;
+        for (int i = 0; i < atuais.length; i++) {
+            atuais[i] = cache.getLivro(encontrados.get(i).id);
+            if (atuais[i] == null) {
+                faltantes[numeroFaltantes++] = encontrados.get(i).id;
+            }
+        }
+        if (numeroFaltantes > 0) {
+            Map<Integer, Livro> lidos = new HashMap<>();
+            for (Livro livro : livroDAO.buscarPorIds(Arrays.copyOf(faltantes, numeroFaltantes))) {
+                lidos.put(livro.getId(), livro);
+            }
+            for (int i = 0; i < atuais.length; i++) {
+                if (atuais[i] == null) {
+                    atuais[i] = lidos.get(encontrados.get(i).id);
+                }
+            }
+        }
+        List<Livro> sugeridos = new ArrayList<>(atuais.length);
+        for (Livro livro : atuais) {
+            if (livro != null) { // Excluído desde a construção do índice
+                sugeridos.add(livro);
+            }
+        }
+        return sugeridos;
+    }
+
+    private static synchronized void garantirIndice(LivroDAO livroDAO) throws SQLException {
+        if (!indiceLivrosConstruido) {
+            try (Stream<TextoLivro> textos = livroDAO.streamTodos().map(TextoLivro::new)) {
+                indiceLivros.construir(textos::iterator);
+            }
+            indiceLivrosConstruido = true;
+        }
+    }
+
+    private static synchronized void atualizarIndice(Livro livro) {
+        if (indiceLivrosConstruido) {
+            indiceLivros.atualizar(new TextoLivro(livro));
+        }
+    }
+
+    private static synchronized void invalidarIndice() {
+        indiceLivrosConstruido = false;
+    }
+
+    /**
+     * Busca livros por título, autor ou categoria (busca textual com prefixos,
+     * adequada para pesquisa enquanto se digita).
+     *
+     * @param texto Texto digitado.
+     * @param limite Quantidade máxima de resultados.
+     * @return Livros encontrados, do mais ao menos relevante.
+     * @throws SQLException Se ocorrer erro no banco de dados.
+     * @throws IllegalArgumentException Se o limite for inválido.
+     */
+    public List<Livro> buscarLivros(String texto, int limite) throws SQLException, IllegalArgumentException {
+        if (limite <= 0) {
+            throw new IllegalArgumentException("Limite da busca deve ser maior que zero.");
+        }
+        return livroDAO.buscarPorTexto(texto, limite);
+    }
+
+    /**
+     * Percorre todos os livros sem carregar o catálogo inteiro na memória.
+     * O Stream deve ser fechado após o uso (try-with-resources).
+     *
+     * @return Stream de Livros em ordem de título.
+     * @throws SQLException Se ocorrer erro no banco de dados.
+     */
+    public Stream<Livro> streamTodosLivros() throws SQLException {
+        return livroDAO.streamTodos();
+    }
+
+    /**
+     * Lista uma página de livros em ordem de título (paginação por chave).
+     * Para a próxima página, passe o título e o ID do último livro recebido.
+     *
+     * @param aposTitulo Título do último livro da página anterior, ou null para a primeira página.
+     * @param aposId ID do último livro da página anterior.
+     * @param limite Quantidade máxima de livros na página.
+     * @return Lista de Livros da página.
+     * @throws SQLException Se ocorrer erro no banco de dados.
+     * @throws IllegalArgumentException Se o limite for inválido.
+     */
+    public List<Livro> listarPaginaLivros(String aposTitulo, int aposId, int limite) throws SQLException, IllegalArgumentException {
+        if (limite <= 0) {
+            throw new IllegalArgumentException("Limite da página deve ser maior que zero.");
+        }
+        return livroDAO.listarPagina(aposTitulo, aposId, limite);
+    }
+
+    /**
+     * Liga o estoque fatiado para um título muito vendido: o estoque é dividido em
+     * fatias e cada venda baixa uma fatia diferente, sem fila no bloqueio da linha
+     * do livro. O estoque total (Livro.getEstoque) continua sendo a soma.
+     *
+     * @param idLivro ID do livro.
+     * @param fatias Número de fatias (ex: número de caixas vendendo o título).
+     * @return true se o livro existir.
+     * @throws SQLException Se ocorrer erro no banco de dados.
+     * @throws IllegalArgumentException Se os dados forem inválidos.
+     */
+    public boolean fatiarEstoqueLivro(int idLivro, int fatias) throws SQLException, IllegalArgumentException {
+        if (idLivro <= 0) {
+            throw new IllegalArgumentException("ID do livro inválido.");
+        }
+        if (fatias < 2 || fatias > MAXIMO_FATIAS_ESTOQUE) {
+            throw new IllegalArgumentException("Número de fatias deve estar entre 2 e " + MAXIMO_FATIAS_ESTOQUE + ".");
+        }
+        return livroDAO.fatiarEstoque(idLivro, fatias);
+    }
+
+    /**
+     * Desliga o estoque fatiado de um livro, devolvendo o saldo das fatias à linha do livro.
+     *
+     * @param idLivro ID do livro.
+     * @return true se o livro existir.
+     * @throws SQLException Se ocorrer erro no banco de dados.
+     */
+    public boolean desfazerFatiamentoLivro(int idLivro) throws SQLException {
+        if (idLivro <= 0) {
+            throw new IllegalArgumentException("ID do livro inválido.");
+        }
+        return livroDAO.desfazerFatiamento(idLivro);
     }
 
     /**
@@ -118,5 +405,17 @@ public class LivroControle {
          System.err.println("Método excluirLivro não implementado completamente (depende do DAO).");
         return false; // Placeholder
     }
-}
 
+    /** Entrada do índice de sugestões: só o que é buscado por prefixo. */
+    private static final class TextoLivro {
+        final int id;
+        final String titulo;
+        final String autor;
+
+        TextoLivro(Livro livro) {
+            this.id = livro.getId();
+            this.titulo = livro.getTitulo();
+            this.autor = livro.getAutor();
+        }
+    }
+}
@@ -2,13 +2,17 @@ package sistemalivraria.dados;
 
 import sistemalivraria.entidades.Livro;
 import sistemalivraria.entidades.Editora;
+import java.sql.Array;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
 
 /**
  * Classe DAO (Data Access Object) para a entidade Livro.
@@ -16,11 +20,26 @@ import java.util.List;
  */
 public class LivroDAO {
 
-    private EditoraDAO editoraDAO; // Para buscar a editora associada
+    /**
+     * Estoque total de um livro (alias l): para livros com estoque fatiado, é a soma
+     * da linha do livro com as fatias.
+     */
+    private static final String EXPRESSAO_ESTOQUE =
+            "CASE WHEN l.estoque_fatiado THEN l.quantidade + (SELECT COALESCE(sum(s.quantidade), 0)::integer"
+            + " FROM public.livros_estoque_slots s WHERE s.id_livro = l.id) ELSE l.quantidade END";
 
-    public LivroDAO() {
-        this.editoraDAO = new EditoraDAO(); // Instancia o DAO de Editora
-    }
+    /**
+     * Colunas de livros (alias l) e editora (alias e) usadas nos SELECTs com JOIN.
+     * Lidas por montarLivro; também usadas pelo CompraDAO.
+     */
+    static final String COLUNAS_LIVRO_EDITORA =
+            "l.id AS livro_id, l.nome AS livro_nome, l.autor AS livro_autor, l.preco AS livro_preco, "
+            + "l.categoria AS livro_categoria, l.isbn AS livro_isbn, " + EXPRESSAO_ESTOQUE + " AS livro_quantidade, "
+            + "e.id AS editora_id, e.nome AS editora_nome, e.endereco AS editora_endereco, "
+            + "e.telefone AS editora_telefone, e.gerente AS editora_gerente, e.categoria AS editora_categoria";
+
+    /** Quantidade de INSERTs enviados por executeBatch em inserirLote. */
+    private static final int TAMANHO_LOTE_INSERCAO = 500;
 
     /**
      * Insere um novo livro no banco de dados.
@@ -61,9 +80,85 @@ public class LivroDAO {
             System.err.println("Erro ao inserir livro: " + e.getMessage());
             throw e;
         }
+        CacheCatalogo.getInstancia().invalidarLivros();
         return generatedId; // Retorna o ID gerado
     }
 
+    /**
+     * Insere vários livros em uma única transação, enviando os INSERTs em lotes
+     * (addBatch/executeBatch) para reduzir as idas e voltas ao banco.
+     * Se qualquer livro falhar, nenhum é inserido.
+     *
+     * @param livros Os livros a inserir (a editora de cada um vem de getIdEditora()).
+     * @return Os IDs gerados, na mesma ordem dos livros recebidos. Os IDs também são atualizados nos objetos.
+     * @throws SQLException Se ocorrer um erro durante a operação no banco.
+     */
+    public int[] inserirLote(List<Livro> livros) throws SQLException {
+        String sql = "INSERT INTO public.livros (id_editora, nome, autor, preco, categoria, isbn, quantidade) VALUES (?, ?, ?, ?, ?, ?, ?)";
+        int[] idsGerados = new int[livros.size()];
+        if (livros.isEmpty()) {
+            return idsGerados;
+        }
+
+        Connection conn = null;
+        try {
+            conn = ConexaoBD.getConexao();
+            conn.setAutoCommit(false); // Todos os lotes na mesma transação
+
+            try (PreparedStatement pstmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+                int proximo = 0; // Posição do próximo ID gerado a ler
+                for (int i = 0; i < livros.size(); i++) {
+                    Livro livro = livros.get(i);
+                    pstmt.setInt(1, livro.getIdEditora());
+                    pstmt.setString(2, livro.getTitulo());
+                    pstmt.setString(3, livro.getAutor());
+                    pstmt.setDouble(4, livro.getPreco());
+                    pstmt.setString(5, livro.getCategoria());
+                    pstmt.setString(6, livro.getIsbn());
+                    pstmt.setInt(7, livro.getEstoque());
+                    pstmt.addBatch();
+
+                    if ((i + 1) % TAMANHO_LOTE_INSERCAO == 0 || i == livros.size() - 1) {
+                        pstmt.executeBatch();
+                        // As chaves geradas voltam na ordem em que os INSERTs foram adicionados ao lote
+                        try (ResultSet generatedKeys = pstmt.getGeneratedKeys()) {
+                            while (generatedKeys.next()) {
+                                idsGerados[proximo] = generatedKeys.getInt(1);
+                                livros.get(proximo).setId(idsGerados[proximo]);
+                                proximo++;
+                            }
+                        }
+                    }
+                }
+                if (proximo != livros.size()) {
+                    throw new SQLException("Falha ao inserir livros em lote: " + proximo + " IDs gerados para " + livros.size() + " livros.");
+                }
+            }
+
+            conn.commit();
+            CacheCatalogo.getInstancia().invalidarLivros();
+        } catch (SQLException e) {
+            // Em lotes, o detalhe do erro do PostgreSQL costuma vir em getNextException()
+            SQLException causa = (e.getNextException() != null) ? e.getNextException() : e;
+            System.err.println("Erro ao inserir livros em lote: " + causa.getMessage());
+            if (conn != null) {
+                try {
+                    conn.rollback();
+                    System.err.println("Transação revertida.");
+                } catch (SQLException ex) {
+                    System.err.println("Erro ao reverter transação: " + ex.getMessage());
+                }
+            }
+            for (Livro livro : livros) {
+                livro.setId(0); // Nenhum livro foi persistido
+            }
+            throw e;
+        } finally {
+            ConexaoBD.devolverConexao(conn);
+        }
+        return idsGerados;
+    }
+
     /**
      * Busca um livro pelo seu ID, incluindo a editora associada.
      *
@@ -72,30 +167,18 @@ public class LivroDAO {
      * @throws SQLException Se ocorrer um erro durante a operação no banco.
      */
     public Livro buscarPorId(int id) throws SQLException {
-        String sql = "SELECT id, id_editora, nome, autor, preco, categoria, isbn, quantidade FROM public.livros WHERE id = ?";
+        // Livro e editora em um único SELECT (LEFT JOIN: a editora pode ser nula)
+        String sql = "SELECT " + COLUNAS_LIVRO_EDITORA + " FROM public.livros l LEFT JOIN public.editora e ON e.id = l.id_editora WHERE l.id = ?";
         Livro livro = null;
 
         try (Connection conn = ConexaoBD.getConexao();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
             pstmt.setInt(1, id);
-            ResultSet rs = pstmt.executeQuery();
-
-            if (rs.next()) {
-                int idEditora = rs.getInt("id_editora");
-                Editora editora = editoraDAO.buscarPorId(idEditora); // Busca a editora
-
-                // Usa o construtor que aceita ID e objeto Editora
-                livro = new Livro(
-                        rs.getInt("id"),
-                        rs.getString("nome"), // Mapeando nome para titulo
-                        rs.getString("autor"),
-                        rs.getString("isbn"),
-                        editora, // Passa o objeto Editora
-                        rs.getInt("quantidade"), // Mapeando quantidade para estoque
-                        rs.getDouble("preco"),
-                        rs.getString("categoria")
-                );
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (rs.next()) {
+                    livro = montarLivro(rs, new HashMap<>());
+                }
             }
         } catch (SQLException e) {
             System.err.println("Erro ao buscar livro por ID: " + e.getMessage());
@@ -104,36 +187,66 @@ public class LivroDAO {
         return livro;
     }
 
+    /**
+     * Busca vários livros pelo ID em um único SELECT, incluindo as editoras.
+     *
+     * @param ids IDs dos livros.
+     * @return Os livros encontrados, na ordem dos IDs informados (IDs inexistentes são ignorados).
+     * @throws SQLException Se ocorrer um erro durante a operação no banco.
+     */
+    public List<Livro> buscarPorIds(int[] ids) throws SQLException {
+        List<Livro> livros = new ArrayList<>(ids.length);
+        if (ids.length == 0) {
+            return livros;
+        }
+        // A posição no vetor (WITH ORDINALITY) mantém a ordem pedida
+        String sql = "SELECT " + COLUNAS_LIVRO_EDITORA + " FROM unnest(?::integer[]) WITH ORDINALITY AS p(id, ordem)"
+                + " JOIN public.livros l ON l.id = p.id LEFT JOIN public.editora e ON e.id = l.id_editora ORDER BY p.ordem";
+        Integer[] valores = new Integer[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            valores[i] = ids[i];
+        }
+
+        try (Connection conn = ConexaoBD.getConexao();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            Array idsSql = conn.createArrayOf("integer", valores);
+            try {
+                pstmt.setArray(1, idsSql);
+                Map<Integer, Editora> editoras = new HashMap<>();
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        livros.add(montarLivro(rs, editoras));
+                    }
+                }
+            } finally {
+                idsSql.free();
+            }
+        } catch (SQLException e) {
+            System.err.println("Erro ao buscar livros por ID: " + e.getMessage());
+            throw e;
+        }
+        return livros;
+    }
+
     /**
      * Lista todos os livros no banco de dados, incluindo a editora associada.
+     * Livros da mesma editora compartilham o mesmo objeto Editora.
      *
      * @return Uma lista de objetos Livro.
      * @throws SQLException Se ocorrer um erro durante a operação no banco.
      */
     public List<Livro> listarTodos() throws SQLException {
-        String sql = "SELECT id, id_editora, nome, autor, preco, categoria, isbn, quantidade FROM public.livros ORDER BY nome";
+        String sql = "SELECT " + COLUNAS_LIVRO_EDITORA + " FROM public.livros l LEFT JOIN public.editora e ON e.id = l.id_editora ORDER BY l.nome";
         List<Livro> livros = new ArrayList<>();
+        Map<Integer, Editora> editoras = new HashMap<>(); // Uma instância por editora no resultado
 
         try (Connection conn = ConexaoBD.getConexao();
-             Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery(sql)) {
+             PreparedStatement pstmt = conn.prepareStatement(sql);
+             ResultSet rs = pstmt.executeQuery()) {
 
             while (rs.next()) {
-                 int idEditora = rs.getInt("id_editora");
-                 Editora editora = editoraDAO.buscarPorId(idEditora); // Busca a editora
-
-                 // Usa o construtor que aceita ID e objeto Editora
-                 Livro livro = new Livro(
-                        rs.getInt("id"),
-                        rs.getString("nome"),
-                        rs.getString("autor"),
-                        rs.getString("isbn"),
-                        editora,
-                        rs.getInt("quantidade"),
-                        rs.getDouble("preco"),
-                        rs.getString("categoria")
-                );
-                livros.add(livro);
+                livros.add(montarLivro(rs, editoras));
             }
         } catch (SQLException e) {
             System.err.println("Erro ao listar livros: " + e.getMessage());
@@ -142,8 +255,203 @@ public class LivroDAO {
         return livros;
     }
 
+    /**
+     * Busca livros por texto no título, autor e categoria, usando a coluna
+     * tsvector "busca" e seu índice GIN (livros_busca_idx). Cada palavra digitada
+     * é tratada como prefixo, então a busca funciona enquanto o usuário digita.
+     * Os resultados vêm ordenados por relevância (título pesa mais que autor,
+     * que pesa mais que categoria).
+     *
+     * @param texto Texto digitado (ex: "machado mem").
+     * @param limite Quantidade máxima de livros retornados.
+     * @return Os livros encontrados, do mais ao menos relevante; lista vazia se o texto não tiver palavras.
+     * @throws SQLException Se ocorrer um erro durante a operação no banco.
+     */
+    public List<Livro> buscarPorTexto(String texto, int limite) throws SQLException {
+        List<Livro> livros = new ArrayList<>();
+        String consulta = montarConsultaPrefixo(texto);
+        if (consulta.isEmpty()) {
+            return livros;
+        }
+        String sql = "SELECT " + COLUNAS_LIVRO_EDITORA
+                + " FROM public.livros l LEFT JOIN public.editora e ON e.id = l.id_editora,"
+                + " to_tsquery('portuguese', ?) q"
+                + " WHERE l.busca @@ q"
+                + " ORDER BY ts_rank_cd(l.busca, q) DESC, l.nome, l.id LIMIT ?";
+        Map<Integer, Editora> editoras = new HashMap<>();
+
+        try (Connection conn = ConexaoBD.getConexao();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setString(1, consulta);
+            pstmt.setInt(2, limite);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    livros.add(montarLivro(rs, editoras));
+                }
+            }
+        } catch (SQLException e) {
+            System.err.println("Erro ao buscar livros por texto: " + e.getMessage());
+            throw e;
+        }
+        return livros;
+    }
+
+    /**
+     * Converte o texto digitado em uma tsquery de prefixos: "machado mem" vira
+     * "machado:* &amp; mem:*". Apenas letras e dígitos são mantidos, evitando que
+     * caracteres especiais da sintaxe de tsquery causem erro no banco.
+     */
+    private static String montarConsultaPrefixo(String texto) {
+        if (texto == null) {
+            return "";
+        }
+        StringBuilder consulta = new StringBuilder();
+        for (String palavra : texto.split("[^\\p{L}\\p{N}]+")) {
+            if (palavra.isEmpty()) {
+                continue;
+            }
+            if (consulta.length() > 0) {
+                consulta.append(" & ");
+            }
+            consulta.append(palavra).append(":*");
+        }
+        return consulta.toString();
+    }
+
+    /**
+     * Percorre todos os livros em ordem de título sem carregar o catálogo inteiro
+     * na memória (cursor no servidor). O Stream deve ser fechado após o uso
+     * (try-with-resources) para devolver a conexão ao pool.
+     *
+     * @return Stream de livros, com a editora associada.
+     * @throws SQLException Se ocorrer um erro ao abrir o cursor.
+     */
+    public Stream<Livro> streamTodos() throws SQLException {
+        String sql = "SELECT " + COLUNAS_LIVRO_EDITORA + " FROM public.livros l LEFT JOIN public.editora e ON e.id = l.id_editora ORDER BY l.nome, l.id";
+        final Map<Integer, Editora> editoras = new HashMap<>(); // Poucas editoras: seguro compartilhar
+        try {
+            return CursorBD.abrir(sql, CursorBD.TAMANHO_LOTE_PADRAO, null, rs -> montarLivro(rs, editoras));
+        } catch (SQLException e) {
+            System.err.println("Erro ao abrir cursor de livros: " + e.getMessage());
+            throw e;
+        }
+    }
+
+    /**
+     * Lê o estoque de todos os livros (sem os demais dados), para o ServicoEstoque.
+     *
+     * @return Estoque total por ID de livro.
+     * @throws SQLException Se ocorrer um erro durante a operação no banco.
+     */
+    public Map<Integer, Integer> listarEstoques() throws SQLException {
+        String sql = "SELECT l.id, " + EXPRESSAO_ESTOQUE + " AS quantidade FROM public.livros l";
+        Map<Integer, Integer> estoques = new HashMap<>();
+
+        try (Connection conn = ConexaoBD.getConexao();
+             PreparedStatement pstmt = conn.prepareStatement(sql);
+             ResultSet rs = pstmt.executeQuery()) {
+
+            while (rs.next()) {
+                estoques.put(rs.getInt("id"), rs.getInt("quantidade"));
+            }
+        } catch (SQLException e) {
+            System.err.println("Erro ao listar estoques: " + e.getMessage());
+            throw e;
+        }
+        return estoques;
+    }
+
+    /**
+     * Lista uma página de livros em ordem de título, usando paginação por chave
+     * (keyset): a página começa logo após o par (título, id) do último livro da
+     * página anterior. O custo não depende de quantas páginas já foram lidas
+     * (índice livros_nome_id_idx).
+     *
+     * @param aposTitulo Título do último livro da página anterior, ou null para a primeira página.
+     * @param aposId ID do último livro da página anterior (ignorado na primeira página).
+     * @param limite Quantidade máxima de livros na página.
+     * @return Os livros da página; lista vazia quando não houver mais livros.
+     * @throws SQLException Se ocorrer um erro durante a operação no banco.
+     */
+    public List<Livro> listarPagina(String aposTitulo, int aposId, int limite) throws SQLException {
+        String sql = "SELECT " + COLUNAS_LIVRO_EDITORA + " FROM public.livros l LEFT JOIN public.editora e ON e.id = l.id_editora"
+                + (aposTitulo != null ? " WHERE (l.nome, l.id) > (?, ?)" : "")
+                + " ORDER BY l.nome, l.id LIMIT ?";
+        List<Livro> livros = new ArrayList<>();
+        Map<Integer, Editora> editoras = new HashMap<>();
+
+        try (Connection conn = ConexaoBD.getConexao();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            int i = 1;
+            if (aposTitulo != null) {
+                pstmt.setString(i++, aposTitulo);
+                pstmt.setInt(i++, aposId);
+            }
+            pstmt.setInt(i, limite);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    livros.add(montarLivro(rs, editoras));
+                }
+            }
+        } catch (SQLException e) {
+            System.err.println("Erro ao listar página de livros: " + e.getMessage());
+            throw e;
+        }
+        return livros;
+    }
+
+    /**
+     * Monta um Livro (com sua Editora) a partir da linha atual de um SELECT
+     * que use COLUNAS_LIVRO_EDITORA. A editora é reaproveitada do mapa se já
+     * tiver aparecido no resultado, ou do CacheEditoras.
+     *
+     * @param rs ResultSet posicionado na linha do livro.
+     * @param editoras Editoras já montadas neste resultado, por ID.
+     * @return O Livro montado.
+     * @throws SQLException Se ocorrer um erro ao ler o ResultSet.
+     */
+    static Livro montarLivro(ResultSet rs, Map<Integer, Editora> editoras) throws SQLException {
+        Editora editora = null;
+        int idEditora = rs.getInt("editora_id");
+        if (!rs.wasNull()) {
+            editora = editoras.get(idEditora);
+            if (editora == null) {
+                // Reaproveita a instância do cache do processo; se não houver, monta e guarda
+                CacheEditoras cache = CacheEditoras.getInstancia();
+                editora = cache.buscarPorId(idEditora);
+                if (editora == null) {
+                    editora = new Editora(
+                            idEditora,
+                            rs.getString("editora_nome"),
+                            rs.getString("editora_endereco"),
+                            rs.getString("editora_telefone"),
+                            rs.getString("editora_gerente"),
+                            rs.getString("editora_categoria")
+                    );
+                    cache.guardar(editora);
+                }
+                editoras.put(idEditora, editora);
+            }
+        }
+
+        // Usa o construtor que aceita ID e objeto Editora
+        return new Livro(
+                rs.getInt("livro_id"),
+                rs.getString("livro_nome"), // Mapeando nome para titulo
+                rs.getString("livro_autor"),
+                rs.getString("livro_isbn"),
+                editora,
+                rs.getInt("livro_quantidade"), // Mapeando quantidade para estoque
+                rs.getDouble("livro_preco"),
+                rs.getString("livro_categoria")
+        );
+    }
+
     /**
      * Atualiza os dados de um livro existente no banco.
+     * Se o livro tiver estoque fatiado, o novo estoque é redistribuído entre as fatias.
      *
      * @param livro O objeto Livro com os dados atualizados.
      * @param idEditora O ID da editora associada (redundante se já estiver no objeto Livro).
@@ -152,31 +460,198 @@ public class LivroDAO {
      */
     public boolean atualizar(Livro livro, int idEditora) throws SQLException {
         // idEditora pode ser obtido de livro.getEditoraObj().getId() ou livro.getIdEditora()
-        String sql = "UPDATE public.livros SET id_editora = ?, nome = ?, autor = ?, preco = ?, categoria = ?, isbn = ?, quantidade = ? WHERE id = ?";
+        // O FROM lê a linha antes da alteração: preço e categoria só invalidam os resumos de clientes se mudarem
+        String sql = "UPDATE public.livros l SET id_editora = ?, nome = ?, autor = ?, preco = ?, categoria = ?, isbn = ?, quantidade = ?"
+                + " FROM (SELECT id, preco, categoria FROM public.livros WHERE id = ? FOR UPDATE) anterior"
+                + " WHERE l.id = anterior.id"
+                + " RETURNING l.estoque_fatiado,"
+                + " (l.preco IS DISTINCT FROM anterior.preco OR l.categoria IS DISTINCT FROM anterior.categoria) AS resumo_alterado";
         boolean atualizado = false;
+        boolean resumoAlterado = false;
 
-        try (Connection conn = ConexaoBD.getConexao();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+        Connection conn = null;
+        try {
+            conn = ConexaoBD.getConexao();
+            conn.setAutoCommit(false); // Inicia transação (atualização + fatias)
 
-            pstmt.setInt(1, livro.getIdEditora()); // Usa o ID da editora do objeto Livro
-            pstmt.setString(2, livro.getTitulo());
-            pstmt.setString(3, livro.getAutor());
-            pstmt.setDouble(4, livro.getPreco());
-            pstmt.setString(5, livro.getCategoria());
-            pstmt.setString(6, livro.getIsbn());
-            pstmt.setInt(7, livro.getEstoque());
-            pstmt.setInt(8, livro.getId());
-
-            int affectedRows = pstmt.executeUpdate();
-            atualizado = affectedRows > 0;
+            boolean fatiado = false;
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                pstmt.setInt(1, livro.getIdEditora()); // Usa o ID da editora do objeto Livro
+                pstmt.setString(2, livro.getTitulo());
+                pstmt.setString(3, livro.getAutor());
+                pstmt.setDouble(4, livro.getPreco());
+                pstmt.setString(5, livro.getCategoria());
+                pstmt.setString(6, livro.getIsbn());
+                pstmt.setInt(7, livro.getEstoque());
+                pstmt.setInt(8, livro.getId());
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    if (rs.next()) {
+                        atualizado = true;
+                        fatiado = rs.getBoolean("estoque_fatiado");
+                        resumoAlterado = rs.getBoolean("resumo_alterado");
+                    }
+                }
+            }
+            if (fatiado) {
+                redistribuirFatias(conn, livro.getId());
+            }
 
+            conn.commit();
+            if (atualizado) {
+                CacheCatalogo.getInstancia().invalidarLivros();
+            }
+            if (resumoAlterado) {
+                CacheResumoClientes.getInstancia().invalidarTudo(); // Total gasto e categorias favoritas mudam
+            }
         } catch (SQLException e) {
             System.err.println("Erro ao atualizar livro: " + e.getMessage());
+            desfazer(conn);
             throw e;
+        } finally {
+            ConexaoBD.devolverConexao(conn);
         }
         return atualizado;
     }
 
+    /**
+     * Divide o estoque de um livro em fatias (livros_estoque_slots), para que vendas
+     * simultâneas do mesmo título baixem linhas diferentes em vez de disputar o
+     * bloqueio da linha do livro. Indicado para lançamentos e best-sellers.
+     * Chamado de novo, refaz a divisão com o novo número de fatias.
+     *
+     * @param idLivro ID do livro.
+     * @param fatias Número de fatias.
+     * @return true se o livro existir.
+     * @throws SQLException Se ocorrer um erro durante a operação no banco.
+     */
+    public boolean fatiarEstoque(int idLivro, int fatias) throws SQLException {
+        String sqlJuntar = "UPDATE public.livros SET estoque_fatiado = true WHERE id = ?";
+        String sqlCriarFatias = "INSERT INTO public.livros_estoque_slots (id_livro, slot, quantidade) SELECT ?, g, 0 FROM generate_series(0, ? - 1) g";
+        boolean existe;
+
+        Connection conn = null;
+        try {
+            conn = ConexaoBD.getConexao();
+            conn.setAutoCommit(false); // Inicia transação
+
+            existe = juntarFatias(conn, idLivro, sqlJuntar);
+            if (existe) {
+                try (PreparedStatement pstmt = conn.prepareStatement(sqlCriarFatias)) {
+                    pstmt.setInt(1, idLivro);
+                    pstmt.setInt(2, fatias);
+                    pstmt.executeUpdate();
+                }
+                redistribuirFatias(conn, idLivro);
+            }
+
+            conn.commit();
+        } catch (SQLException e) {
+            System.err.println("Erro ao fatiar estoque do livro: " + e.getMessage());
+            desfazer(conn);
+            throw e;
+        } finally {
+            ConexaoBD.devolverConexao(conn);
+        }
+        return existe;
+    }
+
+    /**
+     * Desfaz o fatiamento: o saldo das fatias volta para a linha do livro.
+     *
+     * @param idLivro ID do livro.
+     * @return true se o livro existir.
+     * @throws SQLException Se ocorrer um erro durante a operação no banco.
+     */
+    public boolean desfazerFatiamento(int idLivro) throws SQLException {
+        String sqlJuntar = "UPDATE public.livros SET estoque_fatiado = false WHERE id = ?";
+        boolean existe;
+
+        Connection conn = null;
+        try {
+            conn = ConexaoBD.getConexao();
+            conn.setAutoCommit(false); // Inicia transação
+            existe = juntarFatias(conn, idLivro, sqlJuntar);
+            conn.commit();
+        } catch (SQLException e) {
+            System.err.println("Erro ao desfazer fatiamento do estoque: " + e.getMessage());
+            desfazer(conn);
+            throw e;
+        } finally {
+            ConexaoBD.devolverConexao(conn);
+        }
+        return existe;
+    }
+
+    /**
+     * Move o saldo das fatias para a linha do livro, apaga as fatias e aplica
+     * sqlMarcar (que altera a marcação estoque_fatiado). As fatias são bloqueadas
+     * antes da soma, para que nenhuma venda em andamento se perca.
+     */
+    private boolean juntarFatias(Connection conn, int idLivro, String sqlMarcar) throws SQLException {
+        String sqlBloquear = "SELECT slot FROM public.livros_estoque_slots WHERE id_livro = ? ORDER BY slot FOR UPDATE";
+        String sqlSomar = "UPDATE public.livros SET quantidade = quantidade"
+                + " + (SELECT COALESCE(sum(quantidade), 0)::integer FROM public.livros_estoque_slots WHERE id_livro = ?) WHERE id = ?";
+        String sqlApagar = "DELETE FROM public.livros_estoque_slots WHERE id_livro = ?";
+
+        try (PreparedStatement pstmt = conn.prepareStatement(sqlBloquear)) {
+            pstmt.setInt(1, idLivro);
+            pstmt.executeQuery().close();
+        }
+        try (PreparedStatement pstmt = conn.prepareStatement(sqlSomar)) {
+            pstmt.setInt(1, idLivro);
+            pstmt.setInt(2, idLivro);
+            if (pstmt.executeUpdate() == 0) {
+                return false;
+            }
+        }
+        try (PreparedStatement pstmt = conn.prepareStatement(sqlApagar)) {
+            pstmt.setInt(1, idLivro);
+            pstmt.executeUpdate();
+        }
+        try (PreparedStatement pstmt = conn.prepareStatement(sqlMarcar)) {
+            pstmt.setInt(1, idLivro);
+            pstmt.executeUpdate();
+        }
+        return true; // O estoque total não muda: o cache do catálogo continua válido
+    }
+
+    /**
+     * Divide a quantidade da linha do livro igualmente entre as fatias existentes
+     * (as primeiras recebem o resto) e zera a linha do livro.
+     */
+    private void redistribuirFatias(Connection conn, int idLivro) throws SQLException {
+        String sqlDividir = "UPDATE public.livros_estoque_slots s"
+                + " SET quantidade = t.total / t.n + CASE WHEN s.slot < t.total % t.n THEN 1 ELSE 0 END"
+                + " FROM (SELECT l.quantidade AS total, (SELECT count(*)::integer FROM public.livros_estoque_slots WHERE id_livro = l.id) AS n"
+                + " FROM public.livros l WHERE l.id = ?) t"
+                + " WHERE s.id_livro = ? AND t.n > 0 AND t.total >= 0";
+        String sqlZerar = "UPDATE public.livros SET quantidade = 0 WHERE id = ?";
+
+        int divididas;
+        try (PreparedStatement pstmt = conn.prepareStatement(sqlDividir)) {
+            pstmt.setInt(1, idLivro);
+            pstmt.setInt(2, idLivro);
+            divididas = pstmt.executeUpdate();
+        }
+        if (divididas > 0) {
+            try (PreparedStatement pstmt = conn.prepareStatement(sqlZerar)) {
+                pstmt.setInt(1, idLivro);
+                pstmt.executeUpdate();
+            }
+        }
+    }
+
+    private static void desfazer(Connection conn) {
+        if (conn != null) {
+            try {
+                conn.rollback();
+                System.err.println("Transação revertida.");
+            } catch (SQLException ex) {
+                System.err.println("Erro ao reverter transação: " + ex.getMessage());
+            }
+        }
+    }
+
     /**
      * Exclui um livro do banco de dados.
      *
@@ -195,6 +670,9 @@ public class LivroDAO {
                 pstmtLivro.setInt(1, id);
                 int affectedRows = pstmtLivro.executeUpdate();
                 excluido = affectedRows > 0;
+                if (excluido) {
+                    CacheCatalogo.getInstancia().invalidarLivros();
+                }
 
         } catch (SQLException e) {
             // Se for erro de FK (livro em compra), pode lançar uma exceção mais específica
@@ -0,0 +1,105 @@
+package sistemalivraria.controles;
+
+/**
+ * Mapa de int para int com endereçamento aberto (sondagem linear), sem objetos
+ * por entrada. Usado como linha da matriz de recomendações e como conjunto de
+ * livros de um cliente (valor 1).
+ *
+ * As chaves devem ser maiores que zero (IDs do banco): 0 marca posição vazia.
+ * Não há remoção. Não é sincronizado.
+ */
+final class MapaIntInt {
+
+    private int[] chaves;
+    private int[] valores;
+    private int tamanho = 0;
+
+    MapaIntInt(int capacidadeInicial) {
+        int capacidade = 4;
+        while (capacidade < capacidadeInicial * 2) {
+            capacidade <<= 1;
+        }
+        chaves = new int[capacidade];
+        valores = new int[capacidade];
+    }
+
+    /** @return O valor da chave, ou 0 se não houver. */
+    int get(int chave) {
+        int i = posicao(chaves, chave);
+        return (chaves[i] == chave) ? valores[i] : 0;
+    }
+
+    /**
+     * Soma delta ao valor da chave (incluindo-a com 0 se não houver).
+     *
+     * @return O novo valor.
+     */
+    int somar(int chave, int delta) {
+        int i = posicao(chaves, chave);
+        if (chaves[i] == 0) {
+            chaves[i] = chave;
+            tamanho++;
+            if (tamanho * 3 > chaves.length * 2) { // Ocupação acima de 2/3
+                crescer();
+                i = posicao(chaves, chave);
+            }
+        }
+        valores[i] += delta;
+        return valores[i];
+    }
+
+    /**
+     * Inclui a chave com valor 1, como em um conjunto.
+     *
+     * @return true se a chave ainda não existia.
+     */
+    boolean adicionar(int chave) {
+        if (get(chave) != 0) {
+            return false;
+        }
+        somar(chave, 1);
+        return true;
+    }
+
+    int tamanho() {
+        return tamanho;
+    }
+
+    /** @return Número de posições, para percorrer com chaveEm/valorEm. */
+    int capacidade() {
+        return chaves.length;
+    }
+
+    /** @return A chave na posição, ou 0 se a posição estiver vazia. */
+    int chaveEm(int posicao) {
+        return chaves[posicao];
+    }
+
+    int valorEm(int posicao) {
+        return valores[posicao];
+    }
+
+    private void crescer() {
+        int[] chavesAntigas = chaves;
+        int[] valoresAntigos = valores;
+        chaves = new int[chavesAntigas.length * 2];
+        valores = new int[chavesAntigas.length * 2];
+        for (int i = 0; i < chavesAntigas.length; i++) {
+            if (chavesAntigas[i] != 0) {
+                int j = posicao(chaves, chavesAntigas[i]);
+                chaves[j] = chavesAntigas[i];
+                valores[j] = valoresAntigos[i];
+            }
+        }
+    }
+
+    // Posição da chave, ou da primeira posição vazia da sua sequência de sondagem
+    static int posicao(int[] chaves, int chave) {
+        int mascara = chaves.length - 1;
+        int i = (chave * 0x9E3779B9) >>> Integer.numberOfLeadingZeros(mascara); // Bits altos: IDs sequenciais espalhados
+        while (chaves[i] != 0 && chaves[i] != chave) {
+            i = (i + 1) & mascara;
+        }
+        return i;
+    }
+}
@@ -0,0 +1,237 @@
+package sistemalivraria.dados;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Manutenção das partições mensais de public.livros_comprados (particionada por
+ * faixa de data_compra). Cada mês fica em public.livros_comprados_aaaa_mm; vendas
+ * fora de qualquer mês criado caem em public.livros_comprados_padrao.
+ *
+ * As partições dos próximos meses são criadas antes de serem necessárias, e as
+ * partições antigas podem ser desanexadas e movidas para o schema arquivo: saem
+ * das consultas, do VACUUM e dos índices do histórico ativo, mas os dados continuam
+ * disponíveis para consulta direta.
+ */
+public class ParticoesComprasDAO {
+
+    private static final String PREFIXO_PARTICAO = "livros_comprados_";
+    private static final String SCHEMA_ARQUIVO = "arquivo";
+
+    // Partições mensais anexadas, com o início da faixa (a partição padrão não tem faixa)
+    private static final String SQL_LISTAR_PARTICOES =
+            "SELECT c.relname, substring(pg_get_expr(c.relpartbound, c.oid) FROM 'FROM \\(''([0-9-]+)') AS inicio"
+            + " FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid"
+            + " WHERE i.inhparent = 'public.livros_comprados'::regclass"
+            + " AND pg_get_expr(c.relpartbound, c.oid) <> 'DEFAULT' ORDER BY 2";
+
+    /**
+     * Cria as partições do mês atual e dos próximos meses que ainda não existirem.
+     *
+     * Se a partição padrão já tiver compras do mês (ex: venda com data muito à
+     * frente, gravada antes de a partição existir), o PostgreSQL recusaria a nova
+     * partição; essas compras são retiradas da padrão e regravadas na partição
+     * nova, na mesma transação e com os mesmos IDs.
+     *
+     * @param mesesAdiante Quantidade de meses futuros a preparar.
+     * @return Nomes das partições criadas.
+     * @throws SQLException Se ocorrer um erro durante a operação no banco.
+     */
+    public List<String> criarParticoesFuturas(int mesesAdiante) throws SQLException {
+        List<String> criadas = new ArrayList<>();
+        List<String> existentes = nomes(listarParticoes());
+        YearMonth mes = YearMonth.now();
+
+        Connection conn = null;
+        try {
+            conn = ConexaoBD.getConexao();
+            conn.setAutoCommit(false); // Uma transação por mês: mover as compras e criar a partição juntos
+
+            for (int i = 0; i <= mesesAdiante; i++, mes = mes.plusMonths(1)) {
+                String nome = nomeParticao(mes);
+                if (existentes.contains(nome)) {
+                    continue;
+                }
+                int movidas = criarParticao(conn, nome, mes);
+                conn.commit();
+                criadas.add(nome);
+                if (movidas > 0) {
+                    System.out.println(movidas + " compras movidas da partição padrão para " + nome + ".");
+                }
+            }
+        } catch (SQLException e) {
+            System.err.println("Erro ao criar partições de compras: " + e.getMessage());
+            if (conn != null) {
+                try {
+                    conn.rollback();
+                    System.err.println("Transação revertida.");
+                } catch (SQLException ex) {
+                    System.err.println("Erro ao reverter transação: " + ex.getMessage());
+                }
+            }
+            throw e;
+        } finally {
+            ConexaoBD.devolverConexao(conn);
+        }
+        if (!criadas.isEmpty()) {
+            System.out.println("Partições de compras criadas: " + criadas);
+        }
+        return criadas;
+    }
+
+    // Retira da partição padrão as compras do mês, cria a partição e as regrava nela
+    private static int criarParticao(Connection conn, String nome, YearMonth mes) throws SQLException {
+        // Os valores vêm de YearMonth (não do usuário): DDL não aceita parâmetros
+        String inicio = "'" + mes.atDay(1) + "'";
+        String fim = "'" + mes.plusMonths(1).atDay(1) + "'";
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TEMP TABLE livros_comprados_mover (LIKE public.livros_comprados) ON COMMIT DROP");
+            int movidas = stmt.executeUpdate("WITH movidas AS (DELETE FROM public.livros_comprados_padrao"
+                    + " WHERE data_compra >= " + inicio + " AND data_compra < " + fim + " RETURNING *)"
+                    + " INSERT INTO livros_comprados_mover SELECT * FROM movidas");
+            stmt.execute("CREATE TABLE IF NOT EXISTS public." + nome
+                    + " PARTITION OF public.livros_comprados FOR VALUES FROM (" + inicio + ") TO (" + fim + ")");
+            if (movidas > 0) {
+                stmt.executeUpdate("INSERT INTO public.livros_comprados OVERRIDING SYSTEM VALUE"
+                        + " SELECT * FROM livros_comprados_mover");
+            }
+            return movidas;
+        }
+    }
+
+    /**
+     * Desanexa as partições dos meses anteriores ao informado e as move para o
+     * schema arquivo (ex: arquivo.livros_comprados_2023_01).
+     *
+     * @param primeiroMesMantido Meses anteriores a este são arquivados.
+     * @return Nomes das partições arquivadas.
+     * @throws SQLException Se ocorrer um erro durante a operação no banco.
+     */
+    public List<String> arquivarAnterioresA(YearMonth primeiroMesMantido) throws SQLException {
+        List<String> arquivadas = new ArrayList<>();
+        List<String[]> particoes = listarParticoes();
+
+        Connection conn = null;
+        try {
+            conn = ConexaoBD.getConexao();
+            conn.setAutoCommit(false); // Desanexar e mover juntos
+
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute("CREATE SCHEMA IF NOT EXISTS " + SCHEMA_ARQUIVO);
+                for (String[] particao : particoes) {
+                    YearMonth mes = YearMonth.parse(particao[1].substring(0, 7));
+                    if (!mes.isBefore(primeiroMesMantido)) {
+                        break; // Lista ordenada por mês
+                    }
+                    stmt.execute("ALTER TABLE public.livros_comprados DETACH PARTITION public." + particao[0]);
+                    stmt.execute("ALTER TABLE public." + particao[0] + " SET SCHEMA " + SCHEMA_ARQUIVO);
+                    arquivadas.add(particao[0]);
+                }
+            }
+            conn.commit();
+        } catch (SQLException e) {
+            System.err.println("Erro ao arquivar partições de compras: " + e.getMessage());
+            if (conn != null) {
+                try {
+                    conn.rollback();
+                    System.err.println("Transação revertida.");
+                } catch (SQLException ex) {
+                    System.err.println("Erro ao reverter transação: " + ex.getMessage());
+                }
+            }
+            throw e;
+        } finally {
+            ConexaoBD.devolverConexao(conn);
+        }
+        if (!arquivadas.isEmpty()) {
+            System.out.println("Partições de compras arquivadas: " + arquivadas);
+        }
+        return arquivadas;
+    }
+
+    /**
+     * Apaga as chaves de idempotência mais antigas que o prazo. Depois disso, uma
+     * repetição dessas vendas não é mais reconhecida (a janela em memória cobre
+     * as repetições imediatas).
+     *
+     * @param dias Prazo de guarda das chaves, em dias.
+     * @return Quantidade de chaves apagadas.
+     * @throws SQLException Se ocorrer um erro durante a operação no banco.
+     */
+    public int limparChavesIdempotencia(int dias) throws SQLException {
+        String sql = "DELETE FROM public.livros_comprados_chaves WHERE criada_em < now() - make_interval(days => ?)";
+        try (Connection conn = ConexaoBD.getConexao();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setInt(1, dias);
+            return pstmt.executeUpdate();
+        } catch (SQLException e) {
+            System.err.println("Erro ao limpar chaves de idempotência: " + e.getMessage());
+            throw e;
+        }
+    }
+
+    /**
+     * @return O mês mais recente já arquivado (partição no schema arquivo), ou null se nenhum foi arquivado.
+     * @throws SQLException Se ocorrer um erro durante a operação no banco.
+     */
+    public YearMonth buscarUltimoMesArquivado() throws SQLException {
+        String sql = "SELECT max(c.relname) AS ultima FROM pg_class c JOIN pg_namespace n ON n.oid = c.relnamespace"
+                + " WHERE n.nspname = ? AND c.relkind = 'r' AND c.relname ~ ?";
+        try (Connection conn = ConexaoBD.getConexao();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setString(1, SCHEMA_ARQUIVO);
+            pstmt.setString(2, "^" + PREFIXO_PARTICAO + "[0-9]{4}_[0-9]{2}$");
+            try (ResultSet rs = pstmt.executeQuery()) {
+                String ultima = rs.next() ? rs.getString("ultima") : null;
+                if (ultima == null) {
+                    return null;
+                }
+                String mes = ultima.substring(PREFIXO_PARTICAO.length()); // aaaa_mm
+                return YearMonth.of(Integer.parseInt(mes.substring(0, 4)), Integer.parseInt(mes.substring(5)));
+            }
+        } catch (SQLException e) {
+            System.err.println("Erro ao buscar último mês arquivado: " + e.getMessage());
+            throw e;
+        }
+    }
+
+    /**
+     * @return Partições mensais anexadas, em ordem de mês: {nome, início da faixa (aaaa-mm-dd)}.
+     * @throws SQLException Se ocorrer um erro durante a operação no banco.
+     */
+    public List<String[]> listarParticoes() throws SQLException {
+        List<String[]> particoes = new ArrayList<>();
+        try (Connection conn = ConexaoBD.getConexao();
+             PreparedStatement pstmt = conn.prepareStatement(SQL_LISTAR_PARTICOES);
+             ResultSet rs = pstmt.executeQuery()) {
+
+            while (rs.next()) {
+                particoes.add(new String[]{rs.getString("relname"), rs.getString("inicio")});
+            }
+        } catch (SQLException e) {
+            System.err.println("Erro ao listar partições de compras: " + e.getMessage());
+            throw e;
+        }
+        return particoes;
+    }
+
+    private static String nomeParticao(YearMonth mes) {
+        return PREFIXO_PARTICAO + String.format("%04d_%02d", mes.getYear(), mes.getMonthValue());
+    }
+
+    private static List<String> nomes(List<String[]> particoes) {
+        List<String> nomes = new ArrayList<>(particoes.size());
+        for (String[] particao : particoes) {
+            nomes.add(particao[0]);
+        }
+        return nomes;
+    }
+}
@@ -0,0 +1,330 @@
+package sistemalivraria.dados;
+
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+import javax.sql.DataSource;
+
+/**
+ * Pool limitado de conexões JDBC usado pelo ConexaoBD.
+ * Cada chamada a getConnection() empresta uma conexão física do pool;
+ * o close() da conexão emprestada a devolve ao pool em vez de fechá-la.
+ * Cada conexão física mantém seu próprio cache de PreparedStatement (CacheStatements).
+ */
+public class PoolConexoes implements DataSource {
+
+    private final String url;
+    private final String user;
+    private final String password;
+    private final int tamanhoMaximo;
+    private final long timeoutEmprestimoMs;
+    private final int timeoutValidacaoSeg;
+    private final int tamanhoCacheStatements;
+
+    private final LinkedBlockingDeque<ConexaoFisica> livres = new LinkedBlockingDeque<>();
+    private final Set<ConexaoFisica> abertas = ConcurrentHashMap.newKeySet();
+    private final Semaphore permissoes; // Limita o número de conexões emprestadas ao mesmo tempo
+    private final AtomicInteger totalFisicas = new AtomicInteger(0);
+    private volatile boolean encerrado = false;
+
+    /**
+     * Cria o pool e abre as conexões mínimas.
+     *
+     * @param url URL JDBC do banco.
+     * @param user Usuário do banco.
+     * @param password Senha do usuário.
+     * @param tamanhoMinimo Quantidade de conexões abertas na criação do pool.
+     * @param tamanhoMaximo Quantidade máxima de conexões emprestadas simultaneamente.
+     * @param timeoutEmprestimoMs Tempo máximo de espera por uma conexão livre, em milissegundos.
+     * @param timeoutValidacaoSeg Tempo máximo da validação (isValid) no empréstimo, em segundos.
+     * @param tamanhoCacheStatements Máximo de PreparedStatement em cache por conexão (0 desliga o cache).
+     * @throws SQLException Se não for possível abrir as conexões mínimas.
+     */
+    public PoolConexoes(String url, String user, String password, int tamanhoMinimo, int tamanhoMaximo,
+            long timeoutEmprestimoMs, int timeoutValidacaoSeg, int tamanhoCacheStatements) throws SQLException {
+        if (tamanhoMinimo < 0 || tamanhoMaximo <= 0 || tamanhoMinimo > tamanhoMaximo) {
+            throw new IllegalArgumentException("Tamanhos do pool inválidos: mínimo=" + tamanhoMinimo + ", máximo=" + tamanhoMaximo);
+        }
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.tamanhoMaximo = tamanhoMaximo;
+        this.timeoutEmprestimoMs = timeoutEmprestimoMs;
+        this.timeoutValidacaoSeg = timeoutValidacaoSeg;
+        this.tamanhoCacheStatements = tamanhoCacheStatements;
+        this.permissoes = new Semaphore(tamanhoMaximo, true);
+
+        for (int i = 0; i < tamanhoMinimo; i++) {
+            livres.offer(abrirFisica());
+        }
+    }
+
+    /**
+     * Empresta uma conexão do pool. A conexão é validada antes de ser entregue
+     * e deve ser fechada (close) para retornar ao pool.
+     *
+     * @return Uma conexão emprestada.
+     * @throws SQLException Se o tempo de espera esgotar ou não for possível conectar.
+     */
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (encerrado) {
+            throw new SQLException("Pool de conexões encerrado.");
+        }
+        try {
+            if (!permissoes.tryAcquire(timeoutEmprestimoMs, TimeUnit.MILLISECONDS)) {
+                throw new SQLException("Tempo esgotado ao aguardar conexão livre no pool (máximo " + tamanhoMaximo + ").");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrompido ao aguardar conexão do pool.", e);
+        }
+
+        try {
+            ConexaoFisica fisica;
+            while ((fisica = livres.pollFirst()) != null) {
+                if (validar(fisica.conexao)) {
+                    return emprestar(fisica);
+                }
+                descartar(fisica); // Conexão quebrada (ex: banco reiniciado), tenta a próxima
+            }
+            return emprestar(abrirFisica());
+        } catch (SQLException | RuntimeException e) {
+            permissoes.release();
+            throw e;
+        }
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        throw new SQLFeatureNotSupportedException("O pool usa as credenciais configuradas no ConexaoBD.");
+    }
+
+    /**
+     * Fecha todas as conexões livres e impede novos empréstimos.
+     * Conexões ainda emprestadas são fechadas quando forem devolvidas.
+     */
+    public void encerrar() {
+        encerrado = true;
+        ConexaoFisica fisica;
+        while ((fisica = livres.pollFirst()) != null) {
+            descartar(fisica);
+        }
+    }
+
+    /** @return Número de conexões físicas abertas (livres + emprestadas). */
+    public int getTotalConexoes() {
+        return totalFisicas.get();
+    }
+
+    /** @return Número de conexões físicas livres no pool. */
+    public int getConexoesLivres() {
+        return livres.size();
+    }
+
+    /** @return Total de PreparedStatement reaproveitados do cache, somando todas as conexões abertas. */
+    public long getAcertosCacheStatements() {
+        long total = 0;
+        for (ConexaoFisica fisica : abertas) {
+            total += fisica.cache.getAcertos();
+        }
+        return total;
+    }
+
+    /** @return Total de PreparedStatement preparados por não estarem no cache. */
+    public long getFalhasCacheStatements() {
+        long total = 0;
+        for (ConexaoFisica fisica : abertas) {
+            total += fisica.cache.getFalhas();
+        }
+        return total;
+    }
+
+    /** @return Total de PreparedStatement removidos do cache pela política LRU. */
+    public long getRemocoesCacheStatements() {
+        long total = 0;
+        for (ConexaoFisica fisica : abertas) {
+            total += fisica.cache.getRemocoes();
+        }
+        return total;
+    }
+
+    private ConexaoFisica abrirFisica() throws SQLException {
+        Connection conexao = DriverManager.getConnection(url, user, password);
+        ConexaoFisica fisica = new ConexaoFisica(conexao, new CacheStatements(conexao, tamanhoCacheStatements));
+        abertas.add(fisica);
+        totalFisicas.incrementAndGet();
+        return fisica;
+    }
+
+    private boolean validar(Connection fisica) {
+        try {
+            return !fisica.isClosed() && fisica.isValid(timeoutValidacaoSeg);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private void descartar(ConexaoFisica fisica) {
+        abertas.remove(fisica);
+        totalFisicas.decrementAndGet();
+        fisica.cache.fecharTodos();
+        try {
+            fisica.conexao.close();
+        } catch (SQLException e) {
+            System.err.println("Erro ao fechar conexão descartada do pool: " + e.getMessage());
+        }
+    }
+
+    private Connection emprestar(ConexaoFisica fisica) {
+        return (Connection) Proxy.newProxyInstance(
+                PoolConexoes.class.getClassLoader(),
+                new Class<?>[]{Connection.class},
+                new Emprestimo(fisica));
+    }
+
+    /**
+     * Devolve a conexão física ao pool, restaurando o estado padrão
+     * (autocommit ligado, sem transação pendente).
+     */
+    private void devolver(ConexaoFisica fisica) {
+        try {
+            fisica.cache.liberarTodos(); // Statements que o DAO esqueceu de fechar
+            Connection conexao = fisica.conexao;
+            boolean reutilizavel = !encerrado && !conexao.isClosed();
+            if (reutilizavel && !conexao.getAutoCommit()) {
+                conexao.rollback(); // Descarta transação esquecida aberta pelo DAO
+                conexao.setAutoCommit(true);
+            }
+            if (reutilizavel) {
+                conexao.clearWarnings();
+                livres.offerFirst(fisica); // LIFO: reaproveita a conexão mais "quente"
+            } else {
+                descartar(fisica);
+            }
+        } catch (SQLException e) {
+            System.err.println("Erro ao devolver conexão ao pool: " + e.getMessage());
+            descartar(fisica);
+        } finally {
+            permissoes.release();
+        }
+    }
+
+    /** Conexão física aberta com o banco e o cache de statements associado a ela. */
+    private static final class ConexaoFisica {
+        final Connection conexao;
+        final CacheStatements cache;
+
+        ConexaoFisica(Connection conexao, CacheStatements cache) {
+            this.conexao = conexao;
+            this.cache = cache;
+        }
+    }
+
+    /**
+     * Representa um empréstimo de conexão. Intercepta close() para devolver
+     * a conexão física ao pool e prepareStatement() para usar o cache de statements;
+     * chamadas após o close() falham.
+     */
+    private final class Emprestimo implements InvocationHandler {
+
+        private ConexaoFisica fisica;
+
+        Emprestimo(ConexaoFisica fisica) {
+            this.fisica = fisica;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String nome = method.getName();
+            if ("close".equals(nome)) {
+                if (fisica != null) {
+                    ConexaoFisica devolvida = fisica;
+                    fisica = null;
+                    devolver(devolvida);
+                }
+                return null;
+            }
+            if ("isClosed".equals(nome)) {
+                return fisica == null || fisica.conexao.isClosed();
+            }
+            if ("equals".equals(nome)) {
+                return proxy == args[0];
+            }
+            if ("hashCode".equals(nome)) {
+                return System.identityHashCode(proxy);
+            }
+            if ("toString".equals(nome)) {
+                return "Conexão emprestada do pool (" + (fisica != null ? fisica.conexao : null) + ")";
+            }
+            if (fisica == null) {
+                throw new SQLException("Conexão já devolvida ao pool.");
+            }
+            if ("prepareStatement".equals(nome) && args.length == 1) {
+                return fisica.cache.obter((String) args[0], Statement.NO_GENERATED_KEYS, (Connection) proxy);
+            }
+            if ("prepareStatement".equals(nome) && args.length == 2 && args[1] instanceof Integer) {
+                return fisica.cache.obter((String) args[0], (Integer) args[1], (Connection) proxy);
+            }
+            try {
+                return method.invoke(fisica.conexao, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+
+    // --- Métodos de DataSource sem uso no sistema ---
+
+    @Override
+    public PrintWriter getLogWriter() throws SQLException {
+        return DriverManager.getLogWriter();
+    }
+
+    @Override
+    public void setLogWriter(PrintWriter out) throws SQLException {
+        DriverManager.setLogWriter(out);
+    }
+
+    @Override
+    public void setLoginTimeout(int seconds) throws SQLException {
+        DriverManager.setLoginTimeout(seconds);
+    }
+
+    @Override
+    public int getLoginTimeout() throws SQLException {
+        return DriverManager.getLoginTimeout();
+    }
+
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        throw new SQLFeatureNotSupportedException();
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        if (iface.isInstance(this)) {
+            return iface.cast(this);
+        }
+        throw new SQLException("Não é possível converter o pool para " + iface.getName());
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) throws SQLException {
+        return iface.isInstance(this);
+    }
+}
@@ -0,0 +1,267 @@
+package sistemalivraria.controles;
+
+import sistemalivraria.dados.CompraDAO;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Ranking aproximado dos livros mais vendidos na última hora e nas últimas 24
+ * horas, mantido em memória a cada venda, sem GROUP BY sobre as compras.
+ *
+ * Cada janela é um anel de baldes de tempo (12 de 5 minutos; 24 de 1 hora), e
+ * cada balde é um resumo Space-Saving com número fixo de contadores: a memória
+ * não cresce com o número de títulos. Um livro fora do resumo toma o lugar do
+ * contador mínimo e herda a sua contagem como erro máximo, então os livros
+ * realmente mais vendidos de cada balde nunca são perdidos. O ranking soma os
+ * baldes da janela; a contagem de um livro pode estar acima do real em até
+ * getErroMaximo() (ou abaixo, se ele saiu do resumo de algum balde, o que só
+ * acontece com livros de pouca venda naquele balde).
+ *
+ * Ao iniciar, cada balde das duas janelas é preenchido com as vendas do seu
+ * intervalo de tempo (um GROUP BY por faixa), como se o sistema estivesse
+ * contando desde então: os baldes antigos saem da janela na hora certa.
+ */
+public final class RankingMaisVendidos {
+
+    /** Janelas de tempo disponíveis. */
+    public enum Janela {
+        HORA("Última hora"),
+        DIA("Últimas 24 horas");
+
+        private final String descricao;
+
+        Janela(String descricao) {
+            this.descricao = descricao;
+        }
+
+        @Override
+        public String toString() {
+            return descricao;
+        }
+    }
+
+    private static final RankingMaisVendidos INSTANCIA = new RankingMaisVendidos();
+
+    // Contadores por balde: folga sobre o top 20 exibido para manter o erro baixo
+    private static final int CONTADORES_POR_BALDE = 200;
+
+    private final JanelaDeslizante hora = new JanelaDeslizante(12, 5 * 60_000L, CONTADORES_POR_BALDE);
+    private final JanelaDeslizante dia = new JanelaDeslizante(24, 60 * 60_000L, CONTADORES_POR_BALDE);
+
+    private RankingMaisVendidos() {
+    }
+
+    /** @return O ranking de vendas do processo. */
+    public static RankingMaisVendidos getInstancia() {
+        return INSTANCIA;
+    }
+
+    /**
+     * Preenche as janelas com o histórico recente. Deve ser chamado uma vez, ao
+     * iniciar o sistema.
+     *
+     * @throws SQLException Se não for possível ler o histórico.
+     */
+    public void iniciar() throws SQLException {
+        long agora = System.currentTimeMillis();
+        CompraDAO compraDAO = new CompraDAO();
+        hora.preencher(compraDAO, agora);
+        dia.preencher(compraDAO, agora);
+    }
+
+    /**
+     * Conta unidades vendidas de um livro (chamado após a gravação da venda).
+     *
+     * @param idLivro ID do livro.
+     * @param quantidade Unidades vendidas.
+     */
+    public void registrar(int idLivro, int quantidade) {
+        long agora = System.currentTimeMillis();
+        hora.somar(idLivro, quantidade, agora);
+        dia.somar(idLivro, quantidade, agora);
+    }
+
+    /**
+     * @param janela Janela de tempo.
+     * @param limite Quantidade máxima de livros.
+     * @return Os livros mais vendidos na janela, do mais vendido ao menos vendido.
+     */
+    public List<Posicao> listar(Janela janela, int limite) {
+        if (limite <= 0) {
+            throw new IllegalArgumentException("Limite deve ser maior que zero.");
+        }
+        List<Posicao> ranking = (janela == Janela.HORA ? hora : dia).ranking(System.currentTimeMillis());
+        return (ranking.size() > limite) ? ranking.subList(0, limite) : ranking;
+    }
+
+    /**
+     * Um livro no ranking.
+     */
+    public static final class Posicao {
+        private final int idLivro;
+        private final long quantidade;
+        private final long erroMaximo;
+
+        Posicao(int idLivro, long quantidade, long erroMaximo) {
+            this.idLivro = idLivro;
+            this.quantidade = quantidade;
+            this.erroMaximo = erroMaximo;
+        }
+
+        public int getIdLivro() {
+            return idLivro;
+        }
+
+        /** @return Unidades vendidas estimadas. */
+        public long getQuantidade() {
+            return quantidade;
+        }
+
+        /** @return Quanto a estimativa pode estar acima do real. */
+        public long getErroMaximo() {
+            return erroMaximo;
+        }
+    }
+
+    /**
+     * Anel de baldes de tempo; o balde de um instante é (instante / duracao) % n.
+     * Um balde de uma volta anterior do anel é esvaziado antes de ser reutilizado.
+     */
+    private static final class JanelaDeslizante {
+        private final long duracaoBaldeMs;
+        private final ResumoSpaceSaving[] baldes;
+        private final long[] periodos; // Período (instante / duracao) de cada balde
+
+        private long versao = 0;
+        private long versaoRanking = -1;
+        private long periodoRanking = -1;
+        private List<Posicao> ranking = Collections.emptyList();
+
+        JanelaDeslizante(int numeroBaldes, long duracaoBaldeMs, int contadores) {
+            this.duracaoBaldeMs = duracaoBaldeMs;
+            this.baldes = new ResumoSpaceSaving[numeroBaldes];
+            this.periodos = new long[numeroBaldes];
+            for (int i = 0; i < numeroBaldes; i++) {
+                baldes[i] = new ResumoSpaceSaving(contadores);
+                periodos[i] = -1;
+            }
+        }
+
+        /**
+         * Soma em cada balde da janela as vendas do seu intervalo, lidas do banco.
+         * O balde atual vai até o fim do seu intervalo (ainda no futuro).
+         */
+        void preencher(CompraDAO compraDAO, long agora) throws SQLException {
+            long primeiroPeriodo = agora / duracaoBaldeMs - baldes.length + 1;
+            Timestamp[] limites = new Timestamp[baldes.length + 1];
+            for (int k = 0; k < limites.length; k++) {
+                limites[k] = new Timestamp((primeiroPeriodo + k) * duracaoBaldeMs);
+            }
+            int[][] vendas = compraDAO.totalizarPorLivroEFaixa(limites);
+            for (int i = 0; i < vendas[0].length; i++) {
+                // Faixa k (a partir de 1) = período primeiroPeriodo + k - 1
+                somar(vendas[1][i], vendas[2][i], (primeiroPeriodo + vendas[0][i] - 1) * duracaoBaldeMs);
+            }
+        }
+
+        synchronized void somar(int idLivro, long quantidade, long agora) {
+            long periodo = agora / duracaoBaldeMs;
+            int i = (int) (periodo % baldes.length);
+            if (periodos[i] != periodo) {
+                baldes[i].limpar();
+                periodos[i] = periodo;
+            }
+            baldes[i].somar(idLivro, quantidade);
+            versao++;
+        }
+
+        // Reaproveita o último ranking enquanto não houver venda nova nem troca de balde
+        synchronized List<Posicao> ranking(long agora) {
+            long periodoAtual = agora / duracaoBaldeMs;
+            if (versao == versaoRanking && periodoAtual == periodoRanking) {
+                return ranking;
+            }
+            Map<Integer, long[]> somas = new HashMap<>(baldes.length * 16);
+            for (int i = 0; i < baldes.length; i++) {
+                if (periodos[i] > periodoAtual - baldes.length) {
+                    baldes[i].somarEm(somas);
+                }
+            }
+            List<Posicao> novo = new ArrayList<>(somas.size());
+            for (Map.Entry<Integer, long[]> soma : somas.entrySet()) {
+                novo.add(new Posicao(soma.getKey(), soma.getValue()[0], soma.getValue()[1]));
+            }
+            novo.sort((a, b) -> (a.quantidade != b.quantidade)
+                    ? Long.compare(b.quantidade, a.quantidade) : Integer.compare(a.idLivro, b.idLivro));
+            ranking = Collections.unmodifiableList(novo);
+            versaoRanking = versao;
+            periodoRanking = periodoAtual;
+            return ranking;
+        }
+    }
+
+    /**
+     * Resumo Space-Saving com número fixo de contadores (vetores paralelos).
+     */
+    private static final class ResumoSpaceSaving {
+        private final int[] ids;
+        private final long[] contagens;
+        private final long[] erros;
+        private final Map<Integer, Integer> posicaoPorId;
+        private int tamanho = 0;
+
+        ResumoSpaceSaving(int contadores) {
+            ids = new int[contadores];
+            contagens = new long[contadores];
+            erros = new long[contadores];
+            posicaoPorId = new HashMap<>(contadores * 2);
+        }
+
+        void somar(int idLivro, long quantidade) {
+            Integer posicao = posicaoPorId.get(idLivro);
+            if (posicao == null) {
+                if (tamanho < ids.length) {
+                    posicao = tamanho++;
+                    contagens[posicao] = 0;
+                    erros[posicao] = 0;
+                } else {
+                    posicao = posicaoDoMinimo();
+                    posicaoPorId.remove(ids[posicao]);
+                    erros[posicao] = contagens[posicao]; // O novo livro herda a contagem do substituído
+                }
+                ids[posicao] = idLivro;
+                posicaoPorId.put(idLivro, posicao);
+            }
+            contagens[posicao] += quantidade;
+        }
+
+        // Soma as contagens e os erros deste balde em somas (idLivro -> {contagem, erro})
+        void somarEm(Map<Integer, long[]> somas) {
+            for (int i = 0; i < tamanho; i++) {
+                long[] soma = somas.computeIfAbsent(ids[i], id -> new long[2]);
+                soma[0] += contagens[i];
+                soma[1] += erros[i];
+            }
+        }
+
+        void limpar() {
+            tamanho = 0;
+            posicaoPorId.clear();
+        }
+
+        private int posicaoDoMinimo() {
+            int minimo = 0;
+            for (int i = 1; i < tamanho; i++) {
+                if (contagens[i] < contagens[minimo]) {
+                    minimo = i;
+                }
+            }
+            return minimo;
+        }
+    }
+}
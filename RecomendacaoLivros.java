@@ -0,0 +1,298 @@
+package sistemalivraria.controles;
+
+import sistemalivraria.dados.CompraDAO;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Recomendações "quem comprou este livro também comprou", a partir de uma matriz
+ * esparsa livro x livro: a célula (a, b) conta os clientes que compraram a e b.
+ * Cada cliente conta uma vez por par, mesmo que compre o livro de novo.
+ *
+ * A matriz e os livros de cada cliente ficam em mapas de int (MapaIntInt,
+ * TabelaInt), sem Integer por entrada. Cada venda gravada atualiza a matriz na
+ * hora (registrar); reconstruir() monta tudo de novo a partir do banco, com as
+ * linhas da matriz divididas entre os núcleos do processador.
+ *
+ * Um cliente com k livros gera k² células. Clientes com mais de
+ * MAXIMO_LIVROS_POR_CLIENTE livros distintos (ex: "consumidor final") ficam
+ * fora da matriz: estourariam a memória e dominariam todas as recomendações.
+ */
+public final class RecomendacaoLivros {
+
+    private static final RecomendacaoLivros INSTANCIA = new RecomendacaoLivros();
+
+    /** Livros distintos a partir dos quais as compras do cliente não entram na matriz. */
+    static final int MAXIMO_LIVROS_POR_CLIENTE = 500;
+
+    private final CompraDAO compraDAO = new CompraDAO();
+
+    private Indice indice = new Indice(new TabelaInt<>(64), new TabelaInt<>(64));
+
+    // Vendas registradas durante uma reconstrução, reaplicadas no índice novo (cliente << 32 | livro)
+    private long[] pendentes = null;
+    private int numeroPendentes = 0;
+
+    private RecomendacaoLivros() {
+    }
+
+    /** @return O índice de recomendações do processo. */
+    public static RecomendacaoLivros getInstancia() {
+        return INSTANCIA;
+    }
+
+    /**
+     * Inicia a reconstrução do índice em segundo plano (o índice fica vazio até ela terminar).
+     */
+    public void iniciar() {
+        Thread t = new Thread(() -> {
+            try {
+                reconstruir();
+            } catch (SQLException e) {
+                System.err.println("Erro ao montar índice de recomendações: " + e.getMessage());
+            }
+        }, "recomendacao-livros");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    /**
+     * Conta a compra de um livro por um cliente (chamado após a gravação da venda).
+     *
+     * @param idCliente ID do cliente.
+     * @param idLivro ID do livro.
+     */
+    public synchronized void registrar(int idCliente, int idLivro) {
+        if (idCliente <= 0 || idLivro <= 0) {
+            return;
+        }
+        indice.aplicar(idCliente, idLivro);
+        if (pendentes != null) {
+            if (numeroPendentes == pendentes.length) {
+                pendentes = Arrays.copyOf(pendentes, numeroPendentes * 2);
+            }
+            pendentes[numeroPendentes++] = ((long) idCliente << 32) | idLivro;
+        }
+    }
+
+    /**
+     * @param idLivro ID do livro.
+     * @param limite Quantidade máxima de livros.
+     * @return IDs dos livros mais comprados junto com o livro, do mais frequente ao menos frequente.
+     */
+    public synchronized int[] recomendar(int idLivro, int limite) {
+        if (limite <= 0) {
+            throw new IllegalArgumentException("Limite deve ser maior que zero.");
+        }
+        MapaIntInt linha = indice.linhas.get(idLivro);
+        if (linha == null) {
+            return new int[0];
+        }
+        // Os "limite" maiores, mantidos ordenados por inserção (limite pequeno)
+        int[] ids = new int[limite];
+        int[] contagens = new int[limite];
+        int n = 0;
+        for (int i = 0; i < linha.capacidade(); i++) {
+            int id = linha.chaveEm(i);
+            if (id == 0) {
+                continue;
+            }
+            int contagem = linha.valorEm(i);
+            if (contagem <= 0) {
+                continue; // Par retirado (cliente passou de MAXIMO_LIVROS_POR_CLIENTE)
+            }
+            if (n == limite && !antes(contagem, id, contagens[n - 1], ids[n - 1])) {
+                continue;
+            }
+            int j = (n < limite) ? n++ : n - 1;
+            while (j > 0 && antes(contagem, id, contagens[j - 1], ids[j - 1])) {
+                ids[j] = ids[j - 1];
+                contagens[j] = contagens[j - 1];
+                j--;
+            }
+            ids[j] = id;
+            contagens[j] = contagem;
+        }
+        return Arrays.copyOf(ids, n);
+    }
+
+    /**
+     * Monta o índice de novo a partir de todas as compras do banco. As vendas
+     * registradas enquanto isso são aplicadas também ao índice novo; como cada
+     * par cliente/livro conta uma vez, uma venda já lida do banco não é contada
+     * em dobro.
+     *
+     * @throws SQLException Se não for possível ler as compras.
+     */
+    public void reconstruir() throws SQLException {
+        synchronized (this) {
+            if (pendentes != null) {
+                return; // Já existe uma reconstrução em andamento
+            }
+            pendentes = new long[64];
+            numeroPendentes = 0;
+        }
+        try {
+            long inicio = System.nanoTime();
+            int[][] pares = compraDAO.listarParesClienteLivro();
+            Indice novo = montar(pares[0], pares[1]);
+
+            synchronized (this) {
+                for (int i = 0; i < numeroPendentes; i++) {
+                    novo.aplicar((int) (pendentes[i] >>> 32), (int) pendentes[i]);
+                }
+                indice = novo;
+            }
+            System.out.println("Índice de recomendações montado: " + novo.linhas.tamanho() + " livros, "
+                    + pares[0].length + " pares cliente/livro em " + (System.nanoTime() - inicio) / 1_000_000 + " ms.");
+        } finally {
+            synchronized (this) {
+                pendentes = null;
+            }
+        }
+    }
+
+    // Pares ordenados por cliente: a parte w da matriz fica com as linhas dos livros com id % partes == w
+    private static Indice montar(int[] clientes, int[] livros) {
+        int total = clientes.length;
+        // Início de cada cliente nos vetores (mais uma posição no fim)
+        int[] inicios = new int[total + 1];
+        int numeroClientes = 0;
+        for (int i = 0; i < total; i++) {
+            if (i == 0 || clientes[i] != clientes[i - 1]) {
+                inicios[numeroClientes++] = i;
+            }
+        }
+        inicios[numeroClientes] = total;
+        final int quantidadeClientes = numeroClientes;
+
+        TabelaInt<MapaIntInt> livrosPorCliente = new TabelaInt<>(quantidadeClientes);
+        for (int c = 0; c < quantidadeClientes; c++) {
+            MapaIntInt conjunto = new MapaIntInt(inicios[c + 1] - inicios[c]);
+            for (int i = inicios[c]; i < inicios[c + 1]; i++) {
+                conjunto.adicionar(livros[i]);
+            }
+            livrosPorCliente.colocar(clientes[inicios[c]], conjunto);
+        }
+
+        final int partes = Runtime.getRuntime().availableProcessors();
+        @SuppressWarnings("unchecked")
+        TabelaInt<MapaIntInt>[] linhasPorParte = IntStream.range(0, partes).parallel()
+                .mapToObj(parte -> montarParte(parte, partes, livros, inicios, quantidadeClientes))
+                .toArray(TabelaInt[]::new);
+
+        TabelaInt<MapaIntInt> linhas = new TabelaInt<>(64);
+        for (TabelaInt<MapaIntInt> parte : linhasPorParte) {
+            for (int i = 0; i < parte.capacidade(); i++) {
+                if (parte.chaveEm(i) != 0) {
+                    linhas.colocar(parte.chaveEm(i), parte.valorEm(i)); // Partes sem livros em comum
+                }
+            }
+        }
+        return new Indice(linhas, livrosPorCliente);
+    }
+
+    private static TabelaInt<MapaIntInt> montarParte(int parte, int partes, int[] livros, int[] inicios, int quantidadeClientes) {
+        TabelaInt<MapaIntInt> linhas = new TabelaInt<>(64);
+        for (int c = 0; c < quantidadeClientes; c++) {
+            if (inicios[c + 1] - inicios[c] > MAXIMO_LIVROS_POR_CLIENTE) {
+                continue;
+            }
+            for (int i = inicios[c]; i < inicios[c + 1]; i++) {
+                int a = livros[i];
+                if (a % partes != parte) {
+                    continue;
+                }
+                MapaIntInt linha = null;
+                for (int j = inicios[c]; j < inicios[c + 1]; j++) {
+                    if (j == i) {
+                        continue;
+                    }
+                    if (linha == null) {
+                        linha = linhas.get(a);
+                        if (linha == null) {
+                            linha = new MapaIntInt(8);
+                            linhas.colocar(a, linha);
+                        }
+                    }
+                    linha.somar(livros[j], 1);
+                }
+            }
+        }
+        return linhas;
+    }
+
+    // Maior contagem primeiro; empate pelo menor ID
+    private static boolean antes(int contagem, int id, int outraContagem, int outroId) {
+        return contagem > outraContagem || (contagem == outraContagem && id < outroId);
+    }
+
+    /**
+     * Matriz de coocorrência e livros já comprados por cliente.
+     */
+    private static final class Indice {
+        final TabelaInt<MapaIntInt> linhas;
+        final TabelaInt<MapaIntInt> livrosPorCliente;
+
+        Indice(TabelaInt<MapaIntInt> linhas, TabelaInt<MapaIntInt> livrosPorCliente) {
+            this.linhas = linhas;
+            this.livrosPorCliente = livrosPorCliente;
+        }
+
+        void aplicar(int idCliente, int idLivro) {
+            MapaIntInt comprados = livrosPorCliente.get(idCliente);
+            if (comprados == null) {
+                comprados = new MapaIntInt(4);
+                livrosPorCliente.colocar(idCliente, comprados);
+            }
+            if (!comprados.adicionar(idLivro)) {
+                return; // Par já contado
+            }
+            if (comprados.tamanho() > MAXIMO_LIVROS_POR_CLIENTE) {
+                if (comprados.tamanho() == MAXIMO_LIVROS_POR_CLIENTE + 1) {
+                    retirarPares(comprados, idLivro); // Como na reconstrução, o cliente sai da matriz
+                }
+                return;
+            }
+            MapaIntInt linha = null;
+            for (int i = 0; i < comprados.capacidade(); i++) {
+                int outro = comprados.chaveEm(i);
+                if (outro == 0 || outro == idLivro) {
+                    continue;
+                }
+                if (linha == null) {
+                    linha = linhaDe(idLivro);
+                }
+                linha.somar(outro, 1);
+                linhaDe(outro).somar(idLivro, 1);
+            }
+        }
+
+        // Desconta os pares entre os livros do cliente, exceto o livro recém-adicionado
+        private void retirarPares(MapaIntInt comprados, int novo) {
+            for (int i = 0; i < comprados.capacidade(); i++) {
+                int a = comprados.chaveEm(i);
+                if (a == 0 || a == novo) {
+                    continue;
+                }
+                MapaIntInt linha = linhas.get(a);
+                for (int j = 0; j < comprados.capacidade(); j++) {
+                    int b = comprados.chaveEm(j);
+                    if (b != 0 && b != a && b != novo) {
+                        linha.somar(b, -1);
+                    }
+                }
+            }
+        }
+
+        private MapaIntInt linhaDe(int idLivro) {
+            MapaIntInt linha = linhas.get(idLivro);
+            if (linha == null) {
+                linha = new MapaIntInt(8);
+                linhas.colocar(idLivro, linha);
+            }
+            return linha;
+        }
+    }
+}
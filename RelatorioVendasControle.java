@@ -0,0 +1,90 @@
+package sistemalivraria.controles;
+
+import sistemalivraria.dados.VendasDiariasDAO;
+import sistemalivraria.entidades.VendaDiaria;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Relatórios de vendas lidos do resumo por dia e livro (ver ServicoVendasDiarias),
+ * sem percorrer as compras uma a uma.
+ */
+public class RelatorioVendasControle {
+
+    private VendasDiariasDAO vendasDiariasDAO;
+
+    public RelatorioVendasControle() {
+        this.vendasDiariasDAO = new VendasDiariasDAO();
+    }
+
+    /**
+     * Lista as unidades vendidas de cada livro em cada dia do período.
+     *
+     * @param inicio Primeiro dia do período.
+     * @param fim Último dia do período.
+     * @return Lista de VendaDiaria, em ordem de dia e título.
+     * @throws SQLException Se ocorrer um erro de banco de dados.
+     * @throws IllegalArgumentException Se o período for inválido.
+     */
+    public List<VendaDiaria> listarVendasDiarias(LocalDate inicio, LocalDate fim) throws SQLException, IllegalArgumentException {
+        validarPeriodo(inicio, fim);
+        return vendasDiariasDAO.listarPorPeriodo(inicio, fim);
+    }
+
+    /**
+     * Lista as unidades vendidas de um livro em cada dia do período (dias sem venda não aparecem).
+     *
+     * @param idLivro O ID do livro.
+     * @param inicio Primeiro dia do período.
+     * @param fim Último dia do período.
+     * @return Lista de VendaDiaria, em ordem de dia.
+     * @throws SQLException Se ocorrer um erro de banco de dados.
+     * @throws IllegalArgumentException Se o período for inválido.
+     */
+    public List<VendaDiaria> listarVendasDiariasLivro(int idLivro, LocalDate inicio, LocalDate fim) throws SQLException, IllegalArgumentException {
+        validarPeriodo(inicio, fim);
+        return vendasDiariasDAO.listarPorPeriodoLivro(idLivro, inicio, fim);
+    }
+
+    /**
+     * Lista os livros mais vendidos do período, com o total de unidades de cada um.
+     *
+     * @param inicio Primeiro dia do período.
+     * @param fim Último dia do período.
+     * @param limite Quantidade máxima de livros.
+     * @return Lista de VendaDiaria (dia null), do mais vendido ao menos vendido.
+     * @throws SQLException Se ocorrer um erro de banco de dados.
+     * @throws IllegalArgumentException Se o período ou o limite forem inválidos.
+     */
+    public List<VendaDiaria> totalizarVendasPorLivro(LocalDate inicio, LocalDate fim, int limite) throws SQLException, IllegalArgumentException {
+        validarPeriodo(inicio, fim);
+        if (limite <= 0) {
+            throw new IllegalArgumentException("Limite deve ser maior que zero.");
+        }
+        return vendasDiariasDAO.totalizarPorLivro(inicio, fim, limite);
+    }
+
+    /**
+     * Lista o total de unidades vendidas em cada dia do período.
+     *
+     * @param inicio Primeiro dia do período.
+     * @param fim Último dia do período.
+     * @return Lista de VendaDiaria (idLivro 0), em ordem de dia.
+     * @throws SQLException Se ocorrer um erro de banco de dados.
+     * @throws IllegalArgumentException Se o período for inválido.
+     */
+    public List<VendaDiaria> totalizarVendasPorDia(LocalDate inicio, LocalDate fim) throws SQLException, IllegalArgumentException {
+        validarPeriodo(inicio, fim);
+        return vendasDiariasDAO.totalizarPorDia(inicio, fim);
+    }
+
+    private static void validarPeriodo(LocalDate inicio, LocalDate fim) {
+        if (inicio == null || fim == null) {
+            throw new IllegalArgumentException("Datas de início e fim do período não podem ser nulas.");
+        }
+        if (fim.isBefore(inicio)) {
+            throw new IllegalArgumentException("Data de fim não pode ser anterior à data de início.");
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package sistemalivraria.entidades;
+
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Resumo das compras de um cliente: quantidade, total gasto, última compra e
+ * categorias mais compradas. Imutável.
+ *
+ * O total usa o preço atual de cada livro (livros_comprados não guarda o preço
+ * da venda): muda quando o preço de um livro já comprado muda, e pode diferir
+ * do valor efetivamente pago (ver CacheResumoClientes).
+ */
+public class ResumoCliente {
+
+    private final int idCliente;
+    private final long quantidadeCompras;
+    private final double totalGasto;
+    private final LocalDateTime ultimaCompra;
+    private final List<String> categoriasFavoritas;
+
+    public ResumoCliente(int idCliente, long quantidadeCompras, double totalGasto, LocalDateTime ultimaCompra, List<String> categoriasFavoritas) {
+        this.idCliente = idCliente;
+        this.quantidadeCompras = quantidadeCompras;
+        this.totalGasto = totalGasto;
+        this.ultimaCompra = ultimaCompra;
+        this.categoriasFavoritas = Collections.unmodifiableList(categoriasFavoritas);
+    }
+
+    // Getters
+    public int getIdCliente() {
+        return idCliente;
+    }
+
+    public long getQuantidadeCompras() {
+        return quantidadeCompras;
+    }
+
+    public double getTotalGasto() {
+        return totalGasto;
+    }
+
+    /** @return Data/hora da compra mais recente, ou null se o cliente nunca comprou. */
+    public LocalDateTime getUltimaCompra() {
+        return ultimaCompra;
+    }
+
+    /** @return Categorias mais compradas, da mais à menos frequente. */
+    public List<String> getCategoriasFavoritas() {
+        return categoriasFavoritas;
+    }
+
+    @Override
+    public String toString() {
+        return quantidadeCompras + " compras, total " + String.format("%.2f", totalGasto)
+                + (ultimaCompra != null ? ", última em " + ultimaCompra : "")
+                + (categoriasFavoritas.isEmpty() ? "" : ", prefere " + String.join(", ", categoriasFavoritas));
+    }
+}
@@ -0,0 +1,254 @@
+package sistemalivraria.controles;
+
+import sistemalivraria.dados.CompraDAO;
+import sistemalivraria.dados.LivroDAO;
+import sistemalivraria.entidades.Livro;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Estoque dos livros mantido em memória para reservar unidades no momento da venda,
+ * sem esperar o banco. Os contadores são iniciados a partir de livros.quantidade e
+ * alterados sem bloqueio (compareAndSet).
+ *
+ * A baixa no banco é feita depois, em lotes, pela gravação agrupada de compras
+ * (CompraDAO.ativarGravacaoAgrupada), ligada junto com o serviço. Como outras
+ * operações também alteram o estoque (importação, alteração de livro, outros
+ * computadores), os contadores são conciliados com o banco periodicamente,
+ * descontando as reservas ainda não gravadas.
+ */
+public final class ServicoEstoque {
+
+    private static final ServicoEstoque INSTANCIA = new ServicoEstoque();
+
+    // Configuração da gravação agrupada usada pelo serviço (se ainda não estiver ligada)
+    private static final int CAPACIDADE_FILA_GRAVACAO = 1000;
+    private static final int TAMANHO_LOTE_GRAVACAO = 100;
+    private static final long ATRASO_MAXIMO_GRAVACAO_MS = 5;
+
+    private final LivroDAO livroDAO = new LivroDAO();
+
+    // Unidades disponíveis para reserva, por ID de livro
+    private final ConcurrentHashMap<Integer, AtomicInteger> disponiveis = new ConcurrentHashMap<>();
+    // Unidades reservadas cuja gravação no banco ainda não terminou, por ID de livro
+    private final ConcurrentHashMap<Integer, AtomicInteger> pendentes = new ConcurrentHashMap<>();
+    // Livros com gravação falha, a conciliar na thread de conciliação
+    private final Set<Integer> livrosAConciliar = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean conciliacaoLivrosAgendada = new AtomicBoolean();
+
+    private volatile ScheduledExecutorService agendador = null;
+    private volatile boolean ativo = false;
+
+    private ServicoEstoque() {
+    }
+
+    /** @return O serviço de estoque do processo. */
+    public static ServicoEstoque getInstancia() {
+        return INSTANCIA;
+    }
+
+    /**
+     * Carrega o estoque do banco, liga a gravação agrupada de compras e agenda a
+     * conciliação periódica.
+     *
+     * @param intervaloConciliacaoMs Intervalo entre conciliações com o banco (ms).
+     * @throws SQLException Se não for possível ler o estoque do banco.
+     */
+    public synchronized void iniciar(long intervaloConciliacaoMs) throws SQLException {
+        if (intervaloConciliacaoMs <= 0) {
+            throw new IllegalArgumentException("Intervalo de conciliação deve ser maior que zero.");
+        }
+        if (ativo) {
+            return;
+        }
+        conciliar();
+        if (!CompraDAO.isGravacaoAgrupadaAtiva()) {
+            CompraDAO.ativarGravacaoAgrupada(CAPACIDADE_FILA_GRAVACAO, TAMANHO_LOTE_GRAVACAO, ATRASO_MAXIMO_GRAVACAO_MS);
+        }
+        agendador = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "conciliacao-estoque");
+            t.setDaemon(true);
+            return t;
+        });
+        agendador.scheduleWithFixedDelay(() -> {
+            try {
+                conciliar();
+            } catch (SQLException e) {
+                System.err.println("Erro ao conciliar estoque com o banco: " + e.getMessage());
+            }
+        }, intervaloConciliacaoMs, intervaloConciliacaoMs, TimeUnit.MILLISECONDS);
+        ativo = true;
+        System.out.println("Serviço de estoque iniciado com " + disponiveis.size() + " livros.");
+    }
+
+    /**
+     * Para a conciliação e desliga a gravação agrupada, gravando as vendas pendentes.
+     */
+    public synchronized void encerrar() {
+        if (!ativo) {
+            return;
+        }
+        ativo = false;
+        agendador.shutdownNow();
+        agendador = null;
+        CompraDAO.desativarGravacaoAgrupada();
+        disponiveis.clear();
+        livrosAConciliar.clear();
+        conciliacaoLivrosAgendada.set(false);
+    }
+
+    /** @return true se o serviço estiver iniciado. */
+    public boolean isAtivo() {
+        return ativo;
+    }
+
+    /**
+     * Reserva unidades de um livro, se houver saldo em memória.
+     * Cada reserva deve ser encerrada com concluir() após a gravação no banco.
+     *
+     * @param idLivro ID do livro.
+     * @param quantidade Unidades a reservar.
+     * @return true se a reserva foi concedida.
+     * @throws SQLException Se o livro ainda não estiver em memória e não puder ser lido do banco.
+     */
+    public boolean reservar(int idLivro, int quantidade) throws SQLException {
+        AtomicInteger disponivel = obterDisponivel(idLivro);
+        if (disponivel == null) {
+            return false; // Livro inexistente
+        }
+        int atual;
+        do {
+            atual = disponivel.get();
+            if (atual < quantidade) {
+                return false;
+            }
+        } while (!disponivel.compareAndSet(atual, atual - quantidade));
+        pendentes.computeIfAbsent(idLivro, id -> new AtomicInteger()).addAndGet(quantidade);
+        return true;
+    }
+
+    /**
+     * Cancela uma reserva que não chegou a ser enviada ao banco.
+     *
+     * @param idLivro ID do livro.
+     * @param quantidade Unidades reservadas.
+     */
+    public void cancelar(int idLivro, int quantidade) {
+        pendentes.get(idLivro).addAndGet(-quantidade);
+        AtomicInteger disponivel = disponiveis.get(idLivro);
+        if (disponivel != null) {
+            disponivel.addAndGet(quantidade);
+        }
+    }
+
+    /**
+     * Encerra uma reserva após a tentativa de gravação no banco. Se a gravação
+     * falhou, o livro é marcado para conciliação (o banco pode ter menos estoque do
+     * que a memória), feita depois na thread de conciliação: concluir é chamado na
+     * conclusão da gravação agrupada e não pode ler o banco, senão a thread
+     * gravadora fica parada enquanto o banco estiver fora do ar.
+     *
+     * @param idLivro ID do livro.
+     * @param quantidade Unidades reservadas.
+     * @param gravada true se a venda foi gravada no banco.
+     */
+    public void concluir(int idLivro, int quantidade, boolean gravada) {
+        pendentes.get(idLivro).addAndGet(-quantidade);
+        if (!gravada) {
+            livrosAConciliar.add(idLivro);
+            agendarConciliacaoLivros();
+        }
+    }
+
+    /**
+     * @param idLivro ID do livro.
+     * @return Unidades disponíveis para reserva, ou -1 se o livro não estiver em memória.
+     */
+    public int getDisponivel(int idLivro) {
+        AtomicInteger disponivel = disponiveis.get(idLivro);
+        return (disponivel != null) ? disponivel.get() : -1;
+    }
+
+    /**
+     * Acerta os contadores com o estoque do banco, descontando as reservas ainda
+     * não gravadas. A leitura do banco e a dos pendentes não são atômicas entre si:
+     * uma venda concluída ou uma reserva feita durante a conciliação pode deixar o
+     * contador acima ou abaixo do real até a próxima conciliação. Acima do real, a
+     * reserva é concedida e a venda é barrada pela baixa no banco (quantidade > 0),
+     * que é quem de fato impede vender sem estoque.
+     *
+     * @throws SQLException Se não for possível ler o estoque do banco.
+     */
+    public void conciliar() throws SQLException {
+        livrosAConciliar.clear(); // Conciliados abaixo junto com os demais
+        Map<Integer, Integer> estoques = livroDAO.listarEstoques();
+        for (Map.Entry<Integer, Integer> estoque : estoques.entrySet()) {
+            acertar(estoque.getKey(), estoque.getValue());
+        }
+        disponiveis.keySet().retainAll(estoques.keySet()); // Livros excluídos
+    }
+
+    private void agendarConciliacaoLivros() {
+        ScheduledExecutorService executor = agendador;
+        if (executor == null || !conciliacaoLivrosAgendada.compareAndSet(false, true)) {
+            return; // Serviço parado, ou já há uma conciliação agendada que verá este livro
+        }
+        try {
+            executor.execute(this::conciliarLivrosMarcados);
+        } catch (RejectedExecutionException e) {
+            conciliacaoLivrosAgendada.set(false); // Serviço encerrado
+        }
+    }
+
+    // Executado na thread de conciliação. Se o banco falhar, os livros restantes
+    // ficam marcados e são acertados pela próxima conciliação completa.
+    private void conciliarLivrosMarcados() {
+        conciliacaoLivrosAgendada.set(false);
+        for (Integer idLivro : livrosAConciliar) {
+            if (!livrosAConciliar.remove(idLivro)) {
+                continue;
+            }
+            try {
+                conciliarLivro(idLivro);
+            } catch (SQLException e) {
+                livrosAConciliar.add(idLivro);
+                System.err.println("Erro ao conciliar estoque do livro " + idLivro + ": " + e.getMessage());
+                return;
+            }
+        }
+    }
+
+    private void conciliarLivro(int idLivro) throws SQLException {
+        Livro livro = livroDAO.buscarPorId(idLivro);
+        if (livro == null) {
+            disponiveis.remove(idLivro);
+        } else {
+            acertar(idLivro, livro.getEstoque());
+        }
+    }
+
+    // Não é atômico com reservar/concluir (ver conciliar): o saldo pode ficar fora por algumas unidades
+    private void acertar(int idLivro, int estoqueBanco) {
+        AtomicInteger pendente = pendentes.get(idLivro);
+        int reservado = (pendente != null) ? pendente.get() : 0;
+        disponiveis.computeIfAbsent(idLivro, id -> new AtomicInteger()).set(Math.max(0, estoqueBanco - reservado));
+    }
+
+    // Livros cadastrados depois da última conciliação são lidos do banco na primeira reserva
+    private AtomicInteger obterDisponivel(int idLivro) throws SQLException {
+        AtomicInteger disponivel = disponiveis.get(idLivro);
+        if (disponivel == null) {
+            conciliarLivro(idLivro);
+            disponivel = disponiveis.get(idLivro);
+        }
+        return disponivel;
+    }
+}
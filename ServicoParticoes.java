@@ -0,0 +1,112 @@
+package sistemalivraria.controles;
+
+import sistemalivraria.dados.ParticoesComprasDAO;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Manutenção periódica das partições mensais de compras: garante que as partições
+ * dos próximos meses existam antes da primeira venda do mês (senão as vendas caem
+ * na partição padrão) e apaga as chaves de idempotência vencidas.
+ *
+ * O arquivamento de meses antigos não é automático; é feito sob demanda com
+ * arquivarComprasAnterioresA(). Vendas com data em mês arquivado são recusadas
+ * (isMesArquivado): cairiam na partição padrão, separadas do resto do mês, e o
+ * recálculo de vendas_diarias apagaria os totais arquivados do dia.
+ */
+public final class ServicoParticoes {
+
+    private static final ServicoParticoes INSTANCIA = new ServicoParticoes();
+
+    private static final long INTERVALO_MANUTENCAO_HORAS = 24;
+    // Chaves de idempotência guardadas no banco (repetições mais antigas não são reconhecidas)
+    private static final int DIAS_GUARDA_CHAVES = 30;
+
+    private final ParticoesComprasDAO particoesDAO = new ParticoesComprasDAO();
+
+    private ScheduledExecutorService agendador = null;
+    private volatile YearMonth ultimoMesArquivado = null;
+
+    private ServicoParticoes() {
+    }
+
+    /** @return O serviço de partições do processo. */
+    public static ServicoParticoes getInstancia() {
+        return INSTANCIA;
+    }
+
+    /**
+     * Executa a manutenção na hora e a agenda uma vez por dia.
+     *
+     * @param mesesAdiante Quantidade de meses futuros com partição pronta.
+     * @throws SQLException Se a primeira manutenção falhar.
+     */
+    public synchronized void iniciar(int mesesAdiante) throws SQLException {
+        if (mesesAdiante < 1) {
+            throw new IllegalArgumentException("Deve haver ao menos um mês de partição adiante.");
+        }
+        if (agendador != null) {
+            return;
+        }
+        manter(mesesAdiante);
+        agendador = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "manutencao-particoes");
+            t.setDaemon(true);
+            return t;
+        });
+        agendador.scheduleWithFixedDelay(() -> {
+            try {
+                manter(mesesAdiante);
+            } catch (SQLException e) {
+                System.err.println("Erro na manutenção das partições de compras: " + e.getMessage());
+            }
+        }, INTERVALO_MANUTENCAO_HORAS, INTERVALO_MANUTENCAO_HORAS, TimeUnit.HOURS);
+    }
+
+    /** Para a manutenção agendada. */
+    public synchronized void encerrar() {
+        if (agendador != null) {
+            agendador.shutdownNow();
+            agendador = null;
+        }
+    }
+
+    /**
+     * Move para o schema arquivo as partições dos meses anteriores ao informado.
+     * As compras arquivadas deixam de aparecer nas listagens do sistema.
+     *
+     * @param primeiroMesMantido Primeiro mês que continua no histórico ativo.
+     * @return Nomes das partições arquivadas.
+     * @throws SQLException Se ocorrer um erro de banco de dados.
+     * @throws IllegalArgumentException Se o mês não for anterior ao mês atual.
+     */
+    public List<String> arquivarComprasAnterioresA(YearMonth primeiroMesMantido) throws SQLException, IllegalArgumentException {
+        if (primeiroMesMantido == null || primeiroMesMantido.isAfter(YearMonth.now().minusMonths(1))) {
+            throw new IllegalArgumentException("Só é possível arquivar meses anteriores ao mês passado.");
+        }
+        List<String> arquivadas = particoesDAO.arquivarAnterioresA(primeiroMesMantido);
+        ultimoMesArquivado = particoesDAO.buscarUltimoMesArquivado();
+        return arquivadas;
+    }
+
+    /**
+     * @param data Data de uma venda.
+     * @return true se o mês da data já foi arquivado (a venda não deve ser gravada).
+     *         Sem o serviço iniciado, os meses arquivados não são conhecidos e a resposta é false.
+     */
+    public boolean isMesArquivado(LocalDate data) {
+        YearMonth ultimo = ultimoMesArquivado;
+        return ultimo != null && !YearMonth.from(data).isAfter(ultimo);
+    }
+
+    private void manter(int mesesAdiante) throws SQLException {
+        particoesDAO.criarParticoesFuturas(mesesAdiante);
+        particoesDAO.limparChavesIdempotencia(DIAS_GUARDA_CHAVES);
+        ultimoMesArquivado = particoesDAO.buscarUltimoMesArquivado();
+    }
+}
@@ -0,0 +1,77 @@
+package sistemalivraria.controles;
+
+import sistemalivraria.dados.VendasDiariasDAO;
+import java.sql.SQLException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Atualização periódica do resumo de vendas por dia e livro (public.vendas_diarias).
+ * Os relatórios lidos do resumo ficam atrasados no máximo um intervalo em relação
+ * às vendas gravadas.
+ */
+public final class ServicoVendasDiarias {
+
+    private static final ServicoVendasDiarias INSTANCIA = new ServicoVendasDiarias();
+
+    private final VendasDiariasDAO vendasDiariasDAO = new VendasDiariasDAO();
+
+    private ScheduledExecutorService agendador = null;
+
+    private ServicoVendasDiarias() {
+    }
+
+    /** @return O serviço de vendas diárias do processo. */
+    public static ServicoVendasDiarias getInstancia() {
+        return INSTANCIA;
+    }
+
+    /**
+     * Atualiza o resumo na hora e agenda as atualizações seguintes.
+     *
+     * @param intervaloMs Intervalo entre atualizações (ms). Deve ser bem maior que
+     *                    a duração de uma transação de venda (ver VendasDiariasDAO.atualizar).
+     * @throws SQLException Se a primeira atualização falhar.
+     */
+    public synchronized void iniciar(long intervaloMs) throws SQLException {
+        if (intervaloMs <= 0) {
+            throw new IllegalArgumentException("Intervalo de atualização deve ser maior que zero.");
+        }
+        if (agendador != null) {
+            return;
+        }
+        atualizar();
+        agendador = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "vendas-diarias");
+            t.setDaemon(true);
+            return t;
+        });
+        agendador.scheduleWithFixedDelay(() -> {
+            try {
+                atualizar();
+            } catch (SQLException e) {
+                System.err.println("Erro ao atualizar vendas diárias: " + e.getMessage());
+            }
+        }, intervaloMs, intervaloMs, TimeUnit.MILLISECONDS);
+    }
+
+    /** Para as atualizações agendadas. */
+    public synchronized void encerrar() {
+        if (agendador != null) {
+            agendador.shutdownNow();
+            agendador = null;
+        }
+    }
+
+    /**
+     * Atualiza o resumo imediatamente (ex: antes de um relatório que precisa
+     * incluir as vendas dos últimos minutos).
+     *
+     * @return Quantidade de dias recalculados.
+     * @throws SQLException Se ocorrer um erro de banco de dados.
+     */
+    public int atualizar() throws SQLException {
+        return vendasDiariasDAO.atualizar();
+    }
+}
@@ -0,0 +1,76 @@
+package sistemalivraria.controles;
+
+/**
+ * Mapa de int para objeto com endereçamento aberto, sem Integer por chave.
+ * Mesmas regras de MapaIntInt: chaves maiores que zero, sem remoção, não sincronizado.
+ */
+final class TabelaInt<V> {
+
+    private int[] chaves;
+    private Object[] valores;
+    private int tamanho = 0;
+
+    TabelaInt(int capacidadeInicial) {
+        int capacidade = 4;
+        while (capacidade < capacidadeInicial * 2) {
+            capacidade <<= 1;
+        }
+        chaves = new int[capacidade];
+        valores = new Object[capacidade];
+    }
+
+    /** @return O valor da chave, ou null se não houver. */
+    @SuppressWarnings("unchecked")
+    V get(int chave) {
+        int i = MapaIntInt.posicao(chaves, chave);
+        return (chaves[i] == chave) ? (V) valores[i] : null;
+    }
+
+    /** Inclui ou substitui o valor da chave. */
+    void colocar(int chave, V valor) {
+        int i = MapaIntInt.posicao(chaves, chave);
+        if (chaves[i] == 0) {
+            chaves[i] = chave;
+            tamanho++;
+            if (tamanho * 3 > chaves.length * 2) {
+                valores[i] = valor;
+                crescer();
+                return;
+            }
+        }
+        valores[i] = valor;
+    }
+
+    int tamanho() {
+        return tamanho;
+    }
+
+    /** @return Número de posições, para percorrer com chaveEm/valorEm. */
+    int capacidade() {
+        return chaves.length;
+    }
+
+    /** @return A chave na posição, ou 0 se a posição estiver vazia. */
+    int chaveEm(int posicao) {
+        return chaves[posicao];
+    }
+
+    @SuppressWarnings("unchecked")
+    V valorEm(int posicao) {
+        return (V) valores[posicao];
+    }
+
+    private void crescer() {
+        int[] chavesAntigas = chaves;
+        Object[] valoresAntigos = valores;
+        chaves = new int[chavesAntigas.length * 2];
+        valores = new Object[chavesAntigas.length * 2];
+        for (int i = 0; i < chavesAntigas.length; i++) {
+            if (chavesAntigas[i] != 0) {
+                int j = MapaIntInt.posicao(chaves, chavesAntigas[i]);
+                chaves[j] = chavesAntigas[i];
+                valores[j] = valoresAntigos[i];
+            }
+        }
+    }
+}
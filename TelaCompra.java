@@ -5,14 +5,18 @@ import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
 import javax.swing.JOptionPane;
 import javax.swing.DefaultComboBoxModel;
+import javax.swing.SwingUtilities;
 import sistemalivraria.controles.CompraControle;
 import sistemalivraria.controles.ClienteControle;
 import sistemalivraria.controles.LivroControle;
+import sistemalivraria.controles.ServicoEstoque;
 import sistemalivraria.entidades.Compra;
 import sistemalivraria.entidades.Cliente;
 import sistemalivraria.entidades.Livro;
 import java.sql.SQLException;
 import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.Vector;
 
 /**
@@ -25,6 +29,11 @@ public class TelaCompra extends javax.swing.JFrame {
     private ClienteControle clienteControle;
     private LivroControle livroControle;
 
+    // Chave de idempotência da venda em andamento: repetida enquanto cliente, livro e data
+    // não mudarem (clique duplo ou nova tentativa após erro não gravam a venda duas vezes)
+    private String chaveCompra;
+    private String dadosChaveCompra;
+
     /**
      * Creates new form TelaCompra
      */
@@ -232,9 +241,33 @@ public class TelaCompra extends javax.swing.JFrame {
             return;
         }
 
+        String dadosCompra = clienteSelecionado.getId() + "/" + livroSelecionado.getId() + "/" + dataCompra;
+        if (!dadosCompra.equals(dadosChaveCompra)) {
+            chaveCompra = UUID.randomUUID().toString();
+            dadosChaveCompra = dadosCompra;
+        }
+
         try {
-            // Usar o controle para registrar a compra
-            compraControle.registrarCompra(clienteSelecionado, livroSelecionado, dataCompra);
+            // Usar o controle para registrar a compra. Com o serviço de estoque iniciado, a falta
+            // de estoque é informada na hora e a gravação no banco segue em segundo plano; o
+            // sucesso só é mostrado depois que o banco confirmar (outro caixa pode ter vendido
+            // a última unidade antes da conciliação do estoque em memória).
+            if (ServicoEstoque.getInstancia().isAtivo()) {
+                CompletableFuture<Void> gravacao = compraControle.registrarCompraAsync(clienteSelecionado, livroSelecionado, dataCompra, chaveCompra);
+                jButton1.setEnabled(false); // Até a resposta do banco
+                gravacao.whenComplete((resultado, erro) -> SwingUtilities.invokeLater(() -> {
+                    jButton1.setEnabled(true);
+                    if (erro != null) {
+                        Throwable causa = (erro.getCause() != null) ? erro.getCause() : erro;
+                        JOptionPane.showMessageDialog(this, "Erro ao registrar compra:\n" + causa.getMessage(), "Erro no Registro", JOptionPane.ERROR_MESSAGE);
+                        return; // Os campos continuam preenchidos para nova tentativa (mesma chave)
+                    }
+                    JOptionPane.showMessageDialog(this, "Compra registrada com sucesso!", "Sucesso", JOptionPane.INFORMATION_MESSAGE);
+                    limparCampos();
+                }));
+                return;
+            }
+            compraControle.registrarCompra(clienteSelecionado, livroSelecionado, dataCompra, chaveCompra);
             JOptionPane.showMessageDialog(this, "Compra registrada com sucesso!", "Sucesso", JOptionPane.INFORMATION_MESSAGE);
             limparCampos();
             // dispose(); // Opcional
@@ -251,6 +284,7 @@ public class TelaCompra extends javax.swing.JFrame {
         cliente.setSelectedIndex(-1);
         livro.setSelectedIndex(-1);
         data.setText("");
+        dadosChaveCompra = null; // Próxima venda recebe uma nova chave
         cliente.requestFocus(); // Foca no primeiro campo
     }
 
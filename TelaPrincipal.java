@@ -4,6 +4,20 @@
  */
 package sistemalivraria.telas;
 
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import javax.swing.SwingWorker;
+import sistemalivraria.controles.LivroControle;
+import sistemalivraria.controles.RankingMaisVendidos;
+import sistemalivraria.controles.RecomendacaoLivros;
+import sistemalivraria.controles.ServicoEstoque;
+import sistemalivraria.controles.ServicoParticoes;
+import sistemalivraria.controles.ServicoVendasDiarias;
+
 /**
  *
  * @author Calel e Diego (Modificado por Manus)
@@ -14,9 +28,92 @@ public class TelaPrincipal extends javax.swing.JFrame {
     /**
      * Creates new form TelaPrincipal
      */
+    // Quantidade de livros exibidos no ranking e intervalo de atualização da lista
+    private static final int TAMANHO_RANKING = 20;
+    private static final int INTERVALO_RANKING_MS = 2000;
+    private static final long VALIDADE_TITULOS_MS = 60_000; // Títulos alterados aparecem depois disso
+
+    private final LivroControle livroControle = new LivroControle();
+    private final javax.swing.DefaultListModel<String> modeloRanking = new javax.swing.DefaultListModel<>();
+
+    // Títulos já buscados; só os livros que entram no ranking pela primeira vez vão ao banco
+    private final Map<Integer, String> titulosRanking = new ConcurrentHashMap<>();
+    private boolean atualizandoRanking = false; // Só na EDT
+    // Só na thread do SwingWorker (uma atualização de cada vez)
+    private long titulosLidosEm = 0;
+    private boolean erroTitulosInformado = false;
+
     public TelaPrincipal() {
         initComponents();
         setLocationRelativeTo(null); // centraliza a janela no ecrã
+
+        cbxJanelaRanking.setModel(new javax.swing.DefaultComboBoxModel<>(RankingMaisVendidos.Janela.values()));
+        lstMaisVendidos.setModel(modeloRanking);
+        atualizarRanking();
+        new javax.swing.Timer(INTERVALO_RANKING_MS, evt -> atualizarRanking()).start();
+    }
+
+    // Lê o ranking em memória e busca fora da EDT só os títulos ainda não conhecidos
+    private void atualizarRanking() {
+        if (atualizandoRanking) {
+            return; // A atualização anterior ainda não terminou
+        }
+        atualizandoRanking = true;
+        RankingMaisVendidos.Janela janela = (RankingMaisVendidos.Janela) cbxJanelaRanking.getSelectedItem();
+
+        new SwingWorker<List<String>, Void>() {
+            @Override
+            protected List<String> doInBackground() {
+                List<RankingMaisVendidos.Posicao> ranking = RankingMaisVendidos.getInstancia().listar(janela, TAMANHO_RANKING);
+                buscarTitulosFaltantes(ranking);
+
+                List<String> linhas = new ArrayList<>(ranking.size());
+                int posicao = 1;
+                for (RankingMaisVendidos.Posicao item : ranking) {
+                    String titulo = titulosRanking.getOrDefault(item.getIdLivro(), "Livro " + item.getIdLivro());
+                    linhas.add(posicao++ + ". " + titulo + " (" + item.getQuantidade() + ")");
+                }
+                return linhas;
+            }
+
+            @Override
+            protected void done() {
+                atualizandoRanking = false;
+                try {
+                    List<String> linhas = get();
+                    modeloRanking.clear();
+                    for (String linha : linhas) {
+                        modeloRanking.addElement(linha);
+                    }
+                } catch (InterruptedException | ExecutionException ex) {
+                    System.err.println("Erro ao atualizar ranking: " + ex.getMessage());
+                }
+            }
+        }.execute();
+    }
+
+    private void buscarTitulosFaltantes(List<RankingMaisVendidos.Posicao> ranking) {
+        long agora = System.currentTimeMillis();
+        if (agora - titulosLidosEm > VALIDADE_TITULOS_MS) {
+            titulosRanking.clear();
+            titulosLidosEm = agora;
+        }
+        int[] faltantes = ranking.stream().mapToInt(RankingMaisVendidos.Posicao::getIdLivro)
+                .filter(id -> !titulosRanking.containsKey(id)).toArray();
+        if (faltantes.length == 0) {
+            return;
+        }
+        try {
+            for (sistemalivraria.entidades.Livro livro : livroControle.buscarLivrosPorIds(faltantes)) {
+                titulosRanking.put(livro.getId(), livro.getTitulo());
+            }
+            erroTitulosInformado = false;
+        } catch (SQLException ex) {
+            if (!erroTitulosInformado) { // Com o banco fora do ar, informa uma vez, não a cada atualização
+                System.err.println("Erro ao carregar títulos do ranking: " + ex.getMessage());
+                erroTitulosInformado = true;
+            }
+        }
     }
 
     /**
@@ -33,6 +130,10 @@ public class TelaPrincipal extends javax.swing.JFrame {
         btnLivro = new javax.swing.JButton();
         btnEditora = new javax.swing.JButton();
         btnCompra = new javax.swing.JButton();
+        jPanel2 = new javax.swing.JPanel();
+        cbxJanelaRanking = new javax.swing.JComboBox<>();
+        jScrollPane1 = new javax.swing.JScrollPane();
+        lstMaisVendidos = new javax.swing.JList<>();
 
         setDefaultCloseOperation(javax.swing.WindowConstants.EXIT_ON_CLOSE);
         setTitle("Sistema Livraria");
@@ -100,6 +201,37 @@ public class TelaPrincipal extends javax.swing.JFrame {
                 .addContainerGap(56, Short.MAX_VALUE))
         );
 
+        jPanel2.setBorder(javax.swing.BorderFactory.createTitledBorder("Mais Vendidos"));
+
+        cbxJanelaRanking.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                cbxJanelaRankingActionPerformed(evt);
+            }
+        });
+
+        jScrollPane1.setViewportView(lstMaisVendidos);
+
+        javax.swing.GroupLayout jPanel2Layout = new javax.swing.GroupLayout(jPanel2);
+        jPanel2.setLayout(jPanel2Layout);
+        jPanel2Layout.setHorizontalGroup(
+            jPanel2Layout.createParallelGroup(javax.swing.GroupLayout.Alignment.LEADING)
+            .addGroup(jPanel2Layout.createSequentialGroup()
+                .addContainerGap()
+                .addGroup(jPanel2Layout.createParallelGroup(javax.swing.GroupLayout.Alignment.LEADING)
+                    .addComponent(cbxJanelaRanking, 0, javax.swing.GroupLayout.DEFAULT_SIZE, Short.MAX_VALUE)
+                    .addComponent(jScrollPane1, javax.swing.GroupLayout.DEFAULT_SIZE, 260, Short.MAX_VALUE))
+                .addContainerGap())
+        );
+        jPanel2Layout.setVerticalGroup(
+            jPanel2Layout.createParallelGroup(javax.swing.GroupLayout.Alignment.LEADING)
+            .addGroup(jPanel2Layout.createSequentialGroup()
+                .addContainerGap()
+                .addComponent(cbxJanelaRanking, javax.swing.GroupLayout.PREFERRED_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.PREFERRED_SIZE)
+                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                .addComponent(jScrollPane1, javax.swing.GroupLayout.DEFAULT_SIZE, 200, Short.MAX_VALUE)
+                .addContainerGap())
+        );
+
         javax.swing.GroupLayout layout = new javax.swing.GroupLayout(getContentPane());
         getContentPane().setLayout(layout);
         layout.setHorizontalGroup(
@@ -107,13 +239,17 @@ public class TelaPrincipal extends javax.swing.JFrame {
             .addGroup(layout.createSequentialGroup()
                 .addGap(18, 18, 18)
                 .addComponent(jPanel1, javax.swing.GroupLayout.PREFERRED_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.PREFERRED_SIZE)
+                .addGap(18, 18, 18)
+                .addComponent(jPanel2, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, Short.MAX_VALUE)
                 .addContainerGap(22, Short.MAX_VALUE))
         );
         layout.setVerticalGroup(
             layout.createParallelGroup(javax.swing.GroupLayout.Alignment.LEADING)
             .addGroup(javax.swing.GroupLayout.Alignment.TRAILING, layout.createSequentialGroup()
                 .addContainerGap(javax.swing.GroupLayout.DEFAULT_SIZE, Short.MAX_VALUE)
-                .addComponent(jPanel1, javax.swing.GroupLayout.PREFERRED_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.PREFERRED_SIZE)
+                .addGroup(layout.createParallelGroup(javax.swing.GroupLayout.Alignment.LEADING)
+                    .addComponent(jPanel1, javax.swing.GroupLayout.PREFERRED_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.PREFERRED_SIZE)
+                    .addComponent(jPanel2, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, Short.MAX_VALUE))
                 .addContainerGap())
         );
 
@@ -144,6 +280,10 @@ public class TelaPrincipal extends javax.swing.JFrame {
         editora.setVisible(true);
     }//GEN-LAST:event_btnEditoraActionPerformed
 
+    private void cbxJanelaRankingActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_cbxJanelaRankingActionPerformed
+        atualizarRanking();
+    }//GEN-LAST:event_cbxJanelaRankingActionPerformed
+
     /**
      * @param args the command line arguments
      */
@@ -175,6 +315,38 @@ public class TelaPrincipal extends javax.swing.JFrame {
         }
         //</editor-fold>
 
+        // Estoque em memória para as vendas (conciliado com o banco a cada minuto).
+        // Sem banco disponível, as vendas seguem direto para o banco.
+        try {
+            ServicoEstoque.getInstancia().iniciar(60_000);
+        } catch (SQLException ex) {
+            System.err.println("Serviço de estoque não iniciado: " + ex.getMessage());
+        }
+
+        // Partições mensais de compras prontas para os próximos três meses
+        try {
+            ServicoParticoes.getInstancia().iniciar(3);
+        } catch (SQLException ex) {
+            System.err.println("Manutenção das partições de compras não iniciada: " + ex.getMessage());
+        }
+
+        // Resumo de vendas por dia e livro, atualizado a cada cinco minutos
+        try {
+            ServicoVendasDiarias.getInstancia().iniciar(5 * 60_000);
+        } catch (SQLException ex) {
+            System.err.println("Resumo de vendas diárias não iniciado: " + ex.getMessage());
+        }
+
+        // Ranking de mais vendidos parte das vendas da última hora e das últimas 24 horas
+        try {
+            RankingMaisVendidos.getInstancia().iniciar();
+        } catch (SQLException ex) {
+            System.err.println("Ranking de mais vendidos iniciado vazio: " + ex.getMessage());
+        }
+
+        // Índice "quem comprou também comprou", montado em segundo plano
+        RecomendacaoLivros.getInstancia().iniciar();
+
         /* Create and display the form */
         java.awt.EventQueue.invokeLater(new Runnable() {
             public void run() {
@@ -189,7 +361,11 @@ public class TelaPrincipal extends javax.swing.JFrame {
     private javax.swing.JButton btnCompra;
     private javax.swing.JButton btnEditora;
     private javax.swing.JButton btnLivro;
+    private javax.swing.JComboBox<RankingMaisVendidos.Janela> cbxJanelaRanking;
     private javax.swing.JPanel jPanel1;
+    private javax.swing.JPanel jPanel2;
+    private javax.swing.JScrollPane jScrollPane1;
+    private javax.swing.JList<String> lstMaisVendidos;
     // End of variables declaration//GEN-END:variables
 }
 
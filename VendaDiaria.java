@@ -0,0 +1,61 @@
+package sistemalivraria.entidades;
+
+import java.time.LocalDate;
+
+/**
+ * Unidades vendidas de um livro em um dia (linha de public.vendas_diarias), ou o
+ * total de um período quando agrupado só por livro (dia null) ou só por dia
+ * (idLivro 0).
+ */
+public class VendaDiaria {
+
+    private LocalDate dia;
+    private int idLivro;
+    private String tituloLivro;
+    private long quantidade;
+
+    public VendaDiaria(LocalDate dia, int idLivro, String tituloLivro, long quantidade) {
+        this.dia = dia;
+        this.idLivro = idLivro;
+        this.tituloLivro = tituloLivro;
+        this.quantidade = quantidade;
+    }
+
+    // Getters e Setters
+    public LocalDate getDia() {
+        return dia;
+    }
+
+    public void setDia(LocalDate dia) {
+        this.dia = dia;
+    }
+
+    public int getIdLivro() {
+        return idLivro;
+    }
+
+    public void setIdLivro(int idLivro) {
+        this.idLivro = idLivro;
+    }
+
+    public String getTituloLivro() {
+        return tituloLivro;
+    }
+
+    public void setTituloLivro(String tituloLivro) {
+        this.tituloLivro = tituloLivro;
+    }
+
+    public long getQuantidade() {
+        return quantidade;
+    }
+
+    public void setQuantidade(long quantidade) {
+        this.quantidade = quantidade;
+    }
+
+    @Override
+    public String toString() {
+        return (dia != null ? dia + " " : "") + (tituloLivro != null ? tituloLivro : "") + ": " + quantidade;
+    }
+}
@@ -0,0 +1,228 @@
+package sistemalivraria.dados;
+
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import sistemalivraria.entidades.VendaDiaria;
+
+/**
+ * Resumo de vendas por (dia, livro) em public.vendas_diarias, para relatórios que
+ * não precisam ler cada compra: o custo passa a ser dias x títulos, e não o
+ * número de compras.
+ *
+ * O resumo é atualizado por delta (atualizar()), fora da transação da venda,
+ * para não criar uma linha disputada por todas as vendas de um best-seller.
+ * Cada atualização recalcula por inteiro os dias que receberam compras novas
+ * (pelo id de livros_comprados), os dias com compras apagadas (marcados em
+ * vendas_diarias_dias_alterados pelo gatilho livros_comprados_marcar_dia_apagado,
+ * ex: exclusão de cliente em cascata) e o dia atual; recalcular é idempotente,
+ * então a releitura de compras já vistas não conta nada em dobro.
+ *
+ * Dias de meses arquivados (ParticoesComprasDAO) mantêm seus totais: não
+ * recebem compras novas (CompraControle recusa essas datas) e apagar compras
+ * arquivadas não marca o dia.
+ */
+public class VendasDiariasDAO {
+
+    private static final String SQL_CONTROLE =
+            "SELECT ultimo_id, id_pendente FROM public.vendas_diarias_controle FOR UPDATE";
+
+    // Dias com compras de id acima da marca, mais o dia atual, e o maior id visto
+    private static final String SQL_DIAS_ALTERADOS =
+            "SELECT data_compra::date AS dia, max(id) AS maior_id FROM public.livros_comprados"
+            + " WHERE id > ? GROUP BY 1"
+            + " UNION ALL SELECT CURRENT_DATE, NULL";
+
+    // Consome as marcas de dias com compras apagadas
+    private static final String SQL_DIAS_APAGADOS =
+            "DELETE FROM public.vendas_diarias_dias_alterados RETURNING dia";
+
+    private static final String SQL_APAGAR_DIAS =
+            "DELETE FROM public.vendas_diarias WHERE dia = ANY (?)";
+
+    // Uma faixa de data_compra por dia: usa as partições e livros_comprados_data_compra_idx
+    private static final String SQL_RECALCULAR_DIAS =
+            "INSERT INTO public.vendas_diarias (dia, id_livro, quantidade)"
+            + " SELECT d.dia, lc.id_livro, count(*) FROM unnest(?::date[]) AS d(dia)"
+            + " JOIN public.livros_comprados lc ON lc.data_compra >= d.dia AND lc.data_compra < d.dia + 1"
+            + " GROUP BY d.dia, lc.id_livro";
+
+    private static final String SQL_AVANCAR_CONTROLE =
+            "UPDATE public.vendas_diarias_controle SET ultimo_id = id_pendente, id_pendente = ?, atualizado_em = now()";
+
+    private static final String SELECT_VENDAS =
+            "SELECT v.dia, v.id_livro, l.nome, v.quantidade FROM public.vendas_diarias v"
+            + " JOIN public.livros l ON l.id = v.id_livro";
+
+    /**
+     * Recalcula os dias com compras novas ou apagadas desde a última atualização.
+     *
+     * A marca usada é a da penúltima atualização: uma venda cujo id foi gerado
+     * antes da última atualização mas cujo commit veio depois ainda é vista
+     * (basta que nenhuma transação de venda dure mais que o intervalo entre
+     * atualizações).
+     *
+     * @return Quantidade de dias recalculados.
+     * @throws SQLException Se ocorrer um erro durante a operação no banco.
+     */
+    public int atualizar() throws SQLException {
+        Connection conn = null;
+        try {
+            conn = ConexaoBD.getConexao();
+            conn.setAutoCommit(false); // A trava na linha de controle evita duas atualizações simultâneas
+
+            long ultimoId;
+            long idPendente;
+            try (PreparedStatement pstmt = conn.prepareStatement(SQL_CONTROLE);
+                 ResultSet rs = pstmt.executeQuery()) {
+                if (!rs.next()) {
+                    throw new SQLException("Tabela vendas_diarias_controle sem a linha de controle.");
+                }
+                ultimoId = rs.getLong("ultimo_id");
+                idPendente = rs.getLong("id_pendente");
+            }
+
+            List<Date> dias = new ArrayList<>();
+            try (PreparedStatement pstmt = conn.prepareStatement(SQL_DIAS_APAGADOS);
+                 ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    dias.add(rs.getDate("dia")); // Chave primária: sem repetição
+                }
+            }
+            long maiorId = idPendente;
+            try (PreparedStatement pstmt = conn.prepareStatement(SQL_DIAS_ALTERADOS)) {
+                pstmt.setLong(1, ultimoId);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        Date dia = rs.getDate("dia");
+                        if (!dias.contains(dia)) {
+                            dias.add(dia);
+                        }
+                        maiorId = Math.max(maiorId, rs.getLong("maior_id")); // NULL lido como 0
+                    }
+                }
+            }
+
+            Array diasSql = conn.createArrayOf("date", dias.toArray());
+            try (PreparedStatement apagar = conn.prepareStatement(SQL_APAGAR_DIAS);
+                 PreparedStatement recalcular = conn.prepareStatement(SQL_RECALCULAR_DIAS);
+                 PreparedStatement avancar = conn.prepareStatement(SQL_AVANCAR_CONTROLE)) {
+
+                apagar.setArray(1, diasSql);
+                apagar.executeUpdate();
+                recalcular.setArray(1, diasSql);
+                recalcular.executeUpdate();
+                avancar.setLong(1, maiorId);
+                avancar.executeUpdate();
+            } finally {
+                diasSql.free();
+            }
+
+            conn.commit();
+            return dias.size();
+        } catch (SQLException e) {
+            System.err.println("Erro ao atualizar vendas diárias: " + e.getMessage());
+            if (conn != null) {
+                try {
+                    conn.rollback();
+                    System.err.println("Transação revertida.");
+                } catch (SQLException ex) {
+                    System.err.println("Erro ao reverter transação: " + ex.getMessage());
+                }
+            }
+            throw e;
+        } finally {
+            ConexaoBD.devolverConexao(conn);
+        }
+    }
+
+    /**
+     * Lista as vendas por dia e livro entre duas datas (inclusive), em ordem de dia e título.
+     *
+     * @param inicio Primeiro dia do período.
+     * @param fim Último dia do período.
+     * @return Uma lista de VendaDiaria.
+     * @throws SQLException Se ocorrer um erro durante a operação no banco.
+     */
+    public List<VendaDiaria> listarPorPeriodo(LocalDate inicio, LocalDate fim) throws SQLException {
+        String sql = SELECT_VENDAS + " WHERE v.dia BETWEEN ? AND ? ORDER BY v.dia, l.nome";
+        return listar(sql, inicio, fim, null, "Erro ao listar vendas diárias: ");
+    }
+
+    /**
+     * Lista as vendas diárias de um livro entre duas datas (inclusive), em ordem de dia.
+     * Dias sem venda não aparecem.
+     *
+     * @param idLivro O ID do livro.
+     * @param inicio Primeiro dia do período.
+     * @param fim Último dia do período.
+     * @return Uma lista de VendaDiaria.
+     * @throws SQLException Se ocorrer um erro durante a operação no banco.
+     */
+    public List<VendaDiaria> listarPorPeriodoLivro(int idLivro, LocalDate inicio, LocalDate fim) throws SQLException {
+        String sql = SELECT_VENDAS + " WHERE v.dia BETWEEN ? AND ? AND v.id_livro = ? ORDER BY v.dia";
+        return listar(sql, inicio, fim, idLivro, "Erro ao listar vendas diárias do livro: ");
+    }
+
+    /**
+     * Totaliza as vendas de cada livro no período (inclusive), do mais vendido ao menos vendido.
+     *
+     * @param inicio Primeiro dia do período.
+     * @param fim Último dia do período.
+     * @param limite Quantidade máxima de livros.
+     * @return Uma lista de VendaDiaria com dia null.
+     * @throws SQLException Se ocorrer um erro durante a operação no banco.
+     */
+    public List<VendaDiaria> totalizarPorLivro(LocalDate inicio, LocalDate fim, int limite) throws SQLException {
+        String sql = "SELECT NULL::date AS dia, v.id_livro, l.nome, sum(v.quantidade) AS quantidade"
+                + " FROM public.vendas_diarias v JOIN public.livros l ON l.id = v.id_livro"
+                + " WHERE v.dia BETWEEN ? AND ? GROUP BY v.id_livro, l.nome"
+                + " ORDER BY quantidade DESC, v.id_livro LIMIT ?";
+        return listar(sql, inicio, fim, limite, "Erro ao totalizar vendas por livro: ");
+    }
+
+    /**
+     * Totaliza as vendas de cada dia do período (inclusive), em ordem de dia.
+     *
+     * @param inicio Primeiro dia do período.
+     * @param fim Último dia do período.
+     * @return Uma lista de VendaDiaria com idLivro 0.
+     * @throws SQLException Se ocorrer um erro durante a operação no banco.
+     */
+    public List<VendaDiaria> totalizarPorDia(LocalDate inicio, LocalDate fim) throws SQLException {
+        String sql = "SELECT v.dia, 0 AS id_livro, NULL AS nome, sum(v.quantidade) AS quantidade"
+                + " FROM public.vendas_diarias v WHERE v.dia BETWEEN ? AND ? GROUP BY v.dia ORDER BY v.dia";
+        return listar(sql, inicio, fim, null, "Erro ao totalizar vendas por dia: ");
+    }
+
+    // terceiro: parâmetro 3 da consulta (ID do livro ou limite), ou null se a consulta tiver só 2
+    private List<VendaDiaria> listar(String sql, LocalDate inicio, LocalDate fim, Integer terceiro, String mensagemErro) throws SQLException {
+        List<VendaDiaria> vendas = new ArrayList<>();
+        try (Connection conn = ConexaoBD.getConexao();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setDate(1, Date.valueOf(inicio));
+            pstmt.setDate(2, Date.valueOf(fim));
+            if (terceiro != null) {
+                pstmt.setInt(3, terceiro);
+            }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    Date dia = rs.getDate("dia");
+                    vendas.add(new VendaDiaria(dia != null ? dia.toLocalDate() : null, rs.getInt("id_livro"),
+                            rs.getString("nome"), rs.getLong("quantidade")));
+                }
+            }
+        } catch (SQLException e) {
+            System.err.println(mensagemErro + e.getMessage());
+            throw e;
+        }
+        return vendas;
+    }
+}
@@ -32,6 +32,35 @@ ALTER SCHEMA public OWNER TO postgres;
 COMMENT ON SCHEMA public IS '';
 
 
+--
+-- Name: arquivo; Type: SCHEMA; Schema: -; Owner: postgres
+--
+
+CREATE SCHEMA arquivo;
+
+
+ALTER SCHEMA arquivo OWNER TO postgres;
+
+
+--
+-- Name: marcar_dia_venda_apagada(); Type: FUNCTION; Schema: public; Owner: postgres
+--
+
+CREATE FUNCTION public.marcar_dia_venda_apagada() RETURNS trigger
+    LANGUAGE plpgsql
+    AS $$
+BEGIN
+    IF TG_TABLE_SCHEMA = 'public' THEN -- Partições arquivadas não entram no recálculo
+        INSERT INTO public.vendas_diarias_dias_alterados (dia) VALUES (OLD.data_compra::date) ON CONFLICT DO NOTHING;
+    END IF;
+    RETURN NULL;
+END;
+$$;
+
+
+ALTER FUNCTION public.marcar_dia_venda_apagada() OWNER TO postgres;
+
+
 SET default_tablespace = '';
 
 SET default_table_access_method = heap;
@@ -125,7 +154,9 @@ CREATE TABLE public.livros (
     preco numeric(10,2),
     categoria character varying(50),
     isbn character varying(20) NOT NULL,
-    quantidade integer DEFAULT 0 NOT NULL
+    quantidade integer DEFAULT 0 NOT NULL,
+    busca tsvector GENERATED ALWAYS AS (((setweight(to_tsvector('portuguese'::regconfig, (COALESCE(nome, ''::character varying))::text), 'A'::"char") || setweight(to_tsvector('portuguese'::regconfig, (COALESCE(autor, ''::character varying))::text), 'B'::"char")) || setweight(to_tsvector('portuguese'::regconfig, (COALESCE(categoria, ''::character varying))::text), 'C'::"char"))) STORED,
+    estoque_fatiado boolean DEFAULT false NOT NULL
 );
 
 
@@ -138,12 +169,74 @@ ALTER TABLE public.livros OWNER TO postgres;
 CREATE TABLE public.livros_comprados (
     id_cliente integer NOT NULL,
     id_livro integer NOT NULL,
-    data_compra timestamp without time zone DEFAULT CURRENT_TIMESTAMP NOT NULL
-);
+    data_compra timestamp without time zone DEFAULT CURRENT_TIMESTAMP NOT NULL,
+    chave_idempotencia character varying(64),
+    id bigint NOT NULL
+)
+PARTITION BY RANGE (data_compra);
 
 
 ALTER TABLE public.livros_comprados OWNER TO postgres;
 
+--
+-- Name: livros_comprados_id_seq; Type: SEQUENCE; Schema: public; Owner: postgres
+--
+
+ALTER TABLE public.livros_comprados ALTER COLUMN id ADD GENERATED ALWAYS AS IDENTITY (
+    SEQUENCE NAME public.livros_comprados_id_seq
+    START WITH 1
+    INCREMENT BY 1
+    NO MINVALUE
+    NO MAXVALUE
+    CACHE 1
+);
+
+
+--
+-- Name: livros_comprados_2025_05; Type: TABLE; Schema: public; Owner: postgres
+--
+
+CREATE TABLE public.livros_comprados_2025_05 PARTITION OF public.livros_comprados
+    FOR VALUES FROM ('2025-05-01 00:00:00') TO ('2025-06-01 00:00:00');
+
+
+ALTER TABLE public.livros_comprados_2025_05 OWNER TO postgres;
+
+--
+-- Name: livros_comprados_chaves; Type: TABLE; Schema: public; Owner: postgres
+--
+
+CREATE TABLE public.livros_comprados_chaves (
+    chave character varying(64) NOT NULL,
+    criada_em timestamp without time zone DEFAULT CURRENT_TIMESTAMP NOT NULL
+);
+
+
+ALTER TABLE public.livros_comprados_chaves OWNER TO postgres;
+
+--
+-- Name: livros_comprados_padrao; Type: TABLE; Schema: public; Owner: postgres
+--
+
+CREATE TABLE public.livros_comprados_padrao PARTITION OF public.livros_comprados DEFAULT;
+
+
+ALTER TABLE public.livros_comprados_padrao OWNER TO postgres;
+
+--
+-- Name: livros_estoque_slots; Type: TABLE; Schema: public; Owner: postgres
+--
+
+CREATE TABLE public.livros_estoque_slots (
+    id_livro integer NOT NULL,
+    slot smallint NOT NULL,
+    quantidade integer DEFAULT 0 NOT NULL,
+    CONSTRAINT livros_estoque_slots_quantidade_check CHECK ((quantidade >= 0))
+);
+
+
+ALTER TABLE public.livros_estoque_slots OWNER TO postgres;
+
 --
 -- Name: livros_id_seq; Type: SEQUENCE; Schema: public; Owner: postgres
 --
@@ -166,6 +259,45 @@ ALTER SEQUENCE public.livros_id_seq OWNER TO postgres;
 ALTER SEQUENCE public.livros_id_seq OWNED BY public.livros.id;
 
 
+--
+-- Name: vendas_diarias; Type: TABLE; Schema: public; Owner: postgres
+--
+
+CREATE TABLE public.vendas_diarias (
+    dia date NOT NULL,
+    id_livro integer NOT NULL,
+    quantidade integer NOT NULL
+);
+
+
+ALTER TABLE public.vendas_diarias OWNER TO postgres;
+
+--
+-- Name: vendas_diarias_controle; Type: TABLE; Schema: public; Owner: postgres
+--
+
+CREATE TABLE public.vendas_diarias_controle (
+    unica boolean DEFAULT true NOT NULL,
+    ultimo_id bigint DEFAULT 0 NOT NULL,
+    id_pendente bigint DEFAULT 0 NOT NULL,
+    atualizado_em timestamp without time zone,
+    CONSTRAINT vendas_diarias_controle_unica_check CHECK (unica)
+);
+
+
+ALTER TABLE public.vendas_diarias_controle OWNER TO postgres;
+
+--
+-- Name: vendas_diarias_dias_alterados; Type: TABLE; Schema: public; Owner: postgres
+--
+
+CREATE TABLE public.vendas_diarias_dias_alterados (
+    dia date NOT NULL
+);
+
+
+ALTER TABLE public.vendas_diarias_dias_alterados OWNER TO postgres;
+
 --
 -- Name: cliente id; Type: DEFAULT; Schema: public; Owner: postgres
 --
@@ -209,8 +341,8 @@ COPY public.editora (id, nome, categoria, endereco, telefone, gerente) FROM stdi
 -- Data for Name: livros; Type: TABLE DATA; Schema: public; Owner: postgres
 --
 
-COPY public.livros (id, id_editora, nome, autor, preco, categoria, isbn, quantidade) FROM stdin;
-1	1	biblia	Deus	39.00	naosei	182738	19
+COPY public.livros (id, id_editora, nome, autor, preco, categoria, isbn, quantidade, estoque_fatiado) FROM stdin;
+1	1	biblia	Deus	39.00	naosei	182738	19	f
 \.
 
 
@@ -218,8 +350,50 @@ COPY public.livros (id, id_editora, nome, autor, preco, categoria, isbn, quantid
 -- Data for Name: livros_comprados; Type: TABLE DATA; Schema: public; Owner: postgres
 --
 
-COPY public.livros_comprados (id_cliente, id_livro, data_compra) FROM stdin;
-1	1	2025-05-26 00:27:58.573731
+COPY public.livros_comprados (id_cliente, id_livro, data_compra, chave_idempotencia, id) FROM stdin;
+1	1	2025-05-26 00:27:58.573731	\N	1
+\.
+
+
+--
+-- Data for Name: livros_comprados_chaves; Type: TABLE DATA; Schema: public; Owner: postgres
+--
+
+COPY public.livros_comprados_chaves (chave, criada_em) FROM stdin;
+\.
+
+
+--
+-- Data for Name: livros_estoque_slots; Type: TABLE DATA; Schema: public; Owner: postgres
+--
+
+COPY public.livros_estoque_slots (id_livro, slot, quantidade) FROM stdin;
+\.
+
+
+--
+-- Data for Name: vendas_diarias; Type: TABLE DATA; Schema: public; Owner: postgres
+--
+
+COPY public.vendas_diarias (dia, id_livro, quantidade) FROM stdin;
+2025-05-26	1	1
+\.
+
+
+--
+-- Data for Name: vendas_diarias_controle; Type: TABLE DATA; Schema: public; Owner: postgres
+--
+
+COPY public.vendas_diarias_controle (unica, ultimo_id, id_pendente, atualizado_em) FROM stdin;
+t	0	1	\N
+\.
+
+
+--
+-- Data for Name: vendas_diarias_dias_alterados; Type: TABLE DATA; Schema: public; Owner: postgres
+--
+
+COPY public.vendas_diarias_dias_alterados (dia) FROM stdin;
 \.
 
 
@@ -237,6 +411,13 @@ SELECT pg_catalog.setval('public.cliente_id_seq', 1, true);
 SELECT pg_catalog.setval('public.editora_id_seq', 1, true);
 
 
+--
+-- Name: livros_comprados_id_seq; Type: SEQUENCE SET; Schema: public; Owner: postgres
+--
+
+SELECT pg_catalog.setval('public.livros_comprados_id_seq', 1, true);
+
+
 --
 -- Name: livros_id_seq; Type: SEQUENCE SET; Schema: public; Owner: postgres
 --
@@ -268,12 +449,28 @@ ALTER TABLE ONLY public.editora
     ADD CONSTRAINT editora_pk PRIMARY KEY (id);
 
 
+--
+-- Name: livros_comprados_chaves livros_comprados_chaves_pkey; Type: CONSTRAINT; Schema: public; Owner: postgres
+--
+
+ALTER TABLE ONLY public.livros_comprados_chaves
+    ADD CONSTRAINT livros_comprados_chaves_pkey PRIMARY KEY (chave);
+
+
 --
 -- Name: livros_comprados livros_comprados_pkey; Type: CONSTRAINT; Schema: public; Owner: postgres
 --
 
-ALTER TABLE ONLY public.livros_comprados
-    ADD CONSTRAINT livros_comprados_pkey PRIMARY KEY (id_cliente, id_livro, data_compra);
+ALTER TABLE public.livros_comprados
+    ADD CONSTRAINT livros_comprados_pkey PRIMARY KEY (id, data_compra);
+
+
+--
+-- Name: livros_estoque_slots livros_estoque_slots_pkey; Type: CONSTRAINT; Schema: public; Owner: postgres
+--
+
+ALTER TABLE ONLY public.livros_estoque_slots
+    ADD CONSTRAINT livros_estoque_slots_pkey PRIMARY KEY (id_livro, slot);
 
 
 --
@@ -292,11 +489,98 @@ ALTER TABLE ONLY public.livros
     ADD CONSTRAINT livros_pkey PRIMARY KEY (id);
 
 
+--
+-- Name: vendas_diarias vendas_diarias_pkey; Type: CONSTRAINT; Schema: public; Owner: postgres
+--
+
+ALTER TABLE ONLY public.vendas_diarias
+    ADD CONSTRAINT vendas_diarias_pkey PRIMARY KEY (dia, id_livro);
+
+
+--
+-- Name: vendas_diarias_controle vendas_diarias_controle_pkey; Type: CONSTRAINT; Schema: public; Owner: postgres
+--
+
+ALTER TABLE ONLY public.vendas_diarias_controle
+    ADD CONSTRAINT vendas_diarias_controle_pkey PRIMARY KEY (unica);
+
+
+--
+-- Name: vendas_diarias_dias_alterados vendas_diarias_dias_alterados_pkey; Type: CONSTRAINT; Schema: public; Owner: postgres
+--
+
+ALTER TABLE ONLY public.vendas_diarias_dias_alterados
+    ADD CONSTRAINT vendas_diarias_dias_alterados_pkey PRIMARY KEY (dia);
+
+
+--
+-- Name: cliente_ativo_nome_id_idx; Type: INDEX; Schema: public; Owner: postgres
+--
+
+CREATE INDEX cliente_ativo_nome_id_idx ON public.cliente USING btree (nome, id) WHERE ativo;
+
+
+--
+-- Name: editora_nome_idx; Type: INDEX; Schema: public; Owner: postgres
+--
+
+CREATE INDEX editora_nome_idx ON public.editora USING btree (nome);
+
+
+--
+-- Name: livros_busca_idx; Type: INDEX; Schema: public; Owner: postgres
+--
+
+CREATE INDEX livros_busca_idx ON public.livros USING gin (busca);
+
+
+--
+-- Name: livros_comprados_cliente_data_idx; Type: INDEX; Schema: public; Owner: postgres
+--
+
+CREATE INDEX livros_comprados_cliente_data_idx ON public.livros_comprados USING btree (id_cliente, data_compra);
+
+
+--
+-- Name: livros_comprados_data_compra_idx; Type: INDEX; Schema: public; Owner: postgres
+--
+
+CREATE INDEX livros_comprados_data_compra_idx ON public.livros_comprados USING btree (data_compra, id);
+
+
+--
+-- Name: livros_comprados_livro_data_idx; Type: INDEX; Schema: public; Owner: postgres
+--
+
+CREATE INDEX livros_comprados_livro_data_idx ON public.livros_comprados USING btree (id_livro, data_compra);
+
+
+--
+-- Name: livros_nome_id_idx; Type: INDEX; Schema: public; Owner: postgres
+--
+
+CREATE INDEX livros_nome_id_idx ON public.livros USING btree (nome, id);
+
+
+--
+-- Name: vendas_diarias_livro_dia_idx; Type: INDEX; Schema: public; Owner: postgres
+--
+
+CREATE INDEX vendas_diarias_livro_dia_idx ON public.vendas_diarias USING btree (id_livro, dia);
+
+
+--
+-- Name: livros_comprados livros_comprados_marcar_dia_apagado; Type: TRIGGER; Schema: public; Owner: postgres
+--
+
+CREATE TRIGGER livros_comprados_marcar_dia_apagado AFTER DELETE ON public.livros_comprados FOR EACH ROW EXECUTE FUNCTION public.marcar_dia_venda_apagada();
+
+
 --
 -- Name: livros_comprados fk_livros_comprados_cliente; Type: FK CONSTRAINT; Schema: public; Owner: postgres
 --
 
-ALTER TABLE ONLY public.livros_comprados
+ALTER TABLE public.livros_comprados
     ADD CONSTRAINT fk_livros_comprados_cliente FOREIGN KEY (id_cliente) REFERENCES public.cliente(id) ON DELETE CASCADE;
 
 
@@ -304,10 +588,18 @@ ALTER TABLE ONLY public.livros_comprados
 -- Name: livros_comprados fk_livros_comprados_livro; Type: FK CONSTRAINT; Schema: public; Owner: postgres
 --
 
-ALTER TABLE ONLY public.livros_comprados
+ALTER TABLE public.livros_comprados
     ADD CONSTRAINT fk_livros_comprados_livro FOREIGN KEY (id_livro) REFERENCES public.livros(id) ON DELETE RESTRICT;
 
 
+--
+-- Name: livros_estoque_slots fk_livros_estoque_slots_livro; Type: FK CONSTRAINT; Schema: public; Owner: postgres
+--
+
+ALTER TABLE ONLY public.livros_estoque_slots
+    ADD CONSTRAINT fk_livros_estoque_slots_livro FOREIGN KEY (id_livro) REFERENCES public.livros(id) ON DELETE CASCADE;
+
+
 --
 -- Name: livros fk_livros_editora; Type: FK CONSTRAINT; Schema: public; Owner: postgres
 --
@@ -316,6 +608,14 @@ ALTER TABLE ONLY public.livros
     ADD CONSTRAINT fk_livros_editora FOREIGN KEY (id_editora) REFERENCES public.editora(id) ON DELETE SET NULL;
 
 
+--
+-- Name: vendas_diarias fk_vendas_diarias_livro; Type: FK CONSTRAINT; Schema: public; Owner: postgres
+--
+
+ALTER TABLE ONLY public.vendas_diarias
+    ADD CONSTRAINT fk_vendas_diarias_livro FOREIGN KEY (id_livro) REFERENCES public.livros(id) ON DELETE CASCADE;
+
+
 --
 -- Name: SCHEMA public; Type: ACL; Schema: -; Owner: postgres
 --
@@ -326,4 +626,3 @@ REVOKE USAGE ON SCHEMA public FROM PUBLIC;
 --
 -- PostgreSQL database dump complete
 --
-
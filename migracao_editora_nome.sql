@@ -0,0 +1,19 @@
+--
+-- Migração: índice por nome de editora (public.editora_nome_idx)
+--
+-- Antes: a importação de catálogo CSV procura cada editora pelo nome com
+-- varredura completa da tabela editora.
+-- Depois: índice editora_nome_idx, usado pelo ImportacaoCatalogoDAO para
+-- encontrar as editoras já cadastradas e associar os livros importados.
+--
+-- Executar uma única vez, com o sistema parado:
+--   psql -U postgres -d postgres -f migracao_editora_nome.sql
+--
+
+BEGIN;
+
+CREATE INDEX editora_nome_idx ON public.editora USING btree (nome);
+
+COMMIT;
+
+ANALYZE public.editora;
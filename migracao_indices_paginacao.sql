@@ -0,0 +1,23 @@
+--
+-- Migração: índices da paginação por chave de livros e clientes
+--
+-- Antes: listagens paginadas ordenadas por nome sem índice (ordenação completa
+-- a cada página).
+-- Depois: índices usados pelo LivroDAO.listarPagina e pelo ClienteDAO.listarPagina:
+--   livros (nome, id)                  páginas de livros
+--   cliente (nome, id) WHERE ativo     páginas de clientes ativos
+--
+-- Executar uma única vez, com o sistema parado:
+--   psql -U postgres -d postgres -f migracao_indices_paginacao.sql
+--
+
+BEGIN;
+
+CREATE INDEX livros_nome_id_idx ON public.livros USING btree (nome, id);
+
+CREATE INDEX cliente_ativo_nome_id_idx ON public.cliente USING btree (nome, id) WHERE ativo;
+
+COMMIT;
+
+ANALYZE public.livros;
+ANALYZE public.cliente;
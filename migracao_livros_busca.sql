@@ -0,0 +1,21 @@
+--
+-- Migração: busca textual de livros (public.livros.busca)
+--
+-- Antes: sem coluna de busca; LivroDAO.buscarPorTexto não funciona.
+-- Depois: coluna gerada busca (tsvector em português, pesos A/B/C para
+-- nome, autor e categoria) e o índice GIN livros_busca_idx sobre ela.
+--
+-- A coluna gerada é calculada para todos os livros existentes (reescreve a tabela).
+-- Executar uma única vez, com o sistema parado:
+--   psql -U postgres -d postgres -f migracao_livros_busca.sql
+--
+
+BEGIN;
+
+ALTER TABLE public.livros ADD COLUMN busca tsvector GENERATED ALWAYS AS (((setweight(to_tsvector('portuguese'::regconfig, (COALESCE(nome, ''::character varying))::text), 'A'::"char") || setweight(to_tsvector('portuguese'::regconfig, (COALESCE(autor, ''::character varying))::text), 'B'::"char")) || setweight(to_tsvector('portuguese'::regconfig, (COALESCE(categoria, ''::character varying))::text), 'C'::"char"))) STORED;
+
+CREATE INDEX livros_busca_idx ON public.livros USING gin (busca);
+
+COMMIT;
+
+ANALYZE public.livros;
@@ -0,0 +1,23 @@
+--
+-- Migração: chave de idempotência das compras (livros_comprados.chave_idempotencia)
+--
+-- Antes: nada impede gravar duas vezes a mesma venda reenviada.
+-- Depois: coluna chave_idempotencia, com a restrição UNIQUE
+-- livros_comprados_chave_idempotencia_key, consultada pelo CompraDAO para
+-- reconhecer repetições.
+--
+-- As compras existentes ficam com chave nula (a restrição aceita várias).
+-- Deve ser aplicada antes de migracao_livros_comprados_id.sql e
+-- migracao_livros_comprados_particionada.sql.
+-- Executar uma única vez, com o sistema parado:
+--   psql -U postgres -d postgres -f migracao_livros_comprados_chave_idempotencia.sql
+--
+
+BEGIN;
+
+ALTER TABLE public.livros_comprados ADD COLUMN chave_idempotencia character varying(64);
+
+ALTER TABLE public.livros_comprados
+    ADD CONSTRAINT livros_comprados_chave_idempotencia_key UNIQUE (chave_idempotencia);
+
+COMMIT;
@@ -0,0 +1,57 @@
+--
+-- Migração: chave substituta bigint para public.livros_comprados
+--
+-- Antes: chave primária composta (id_cliente, id_livro, data_compra).
+-- Depois: id bigint (identidade) como chave primária, mais os índices usados
+-- pelo CompraDAO:
+--   (data_compra, id)       paginação por chave e listagem geral
+--   (id_cliente, data_compra) histórico de compras do cliente
+--   (id_livro, data_compra)   vendas de um livro
+--
+-- As compras já existentes recebem ids em ordem de data_compra.
+-- Requer migracao_livros_comprados_chave_idempotencia.sql já aplicada.
+-- Executar uma única vez, com o sistema parado:
+--   psql -U postgres -d postgres -f migracao_livros_comprados_id.sql
+--
+
+BEGIN;
+
+ALTER TABLE public.livros_comprados ADD COLUMN id bigint;
+
+UPDATE public.livros_comprados lc
+SET id = numerada.id
+FROM (
+    SELECT ctid, row_number() OVER (ORDER BY data_compra, id_cliente, id_livro) AS id
+    FROM public.livros_comprados
+) numerada
+WHERE lc.ctid = numerada.ctid;
+
+ALTER TABLE public.livros_comprados ALTER COLUMN id SET NOT NULL;
+
+ALTER TABLE public.livros_comprados ALTER COLUMN id ADD GENERATED ALWAYS AS IDENTITY (
+    SEQUENCE NAME public.livros_comprados_id_seq
+    START WITH 1
+    INCREMENT BY 1
+    NO MINVALUE
+    NO MAXVALUE
+    CACHE 1
+);
+
+SELECT pg_catalog.setval('public.livros_comprados_id_seq', COALESCE((SELECT max(id) FROM public.livros_comprados), 0) + 1, false);
+
+ALTER TABLE ONLY public.livros_comprados DROP CONSTRAINT livros_comprados_pkey;
+
+ALTER TABLE ONLY public.livros_comprados
+    ADD CONSTRAINT livros_comprados_pkey PRIMARY KEY (id);
+
+DROP INDEX IF EXISTS public.livros_comprados_data_compra_idx;
+
+CREATE INDEX livros_comprados_data_compra_idx ON public.livros_comprados USING btree (data_compra, id);
+
+CREATE INDEX livros_comprados_cliente_data_idx ON public.livros_comprados USING btree (id_cliente, data_compra);
+
+CREATE INDEX livros_comprados_livro_data_idx ON public.livros_comprados USING btree (id_livro, data_compra);
+
+COMMIT;
+
+ANALYZE public.livros_comprados;
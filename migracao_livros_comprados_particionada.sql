@@ -0,0 +1,104 @@
+--
+-- Migração: particionamento mensal de public.livros_comprados
+--
+-- Antes: tabela única, chave primária (id) e chave_idempotencia UNIQUE.
+-- Depois: tabela particionada por faixa de data_compra, uma partição por mês
+-- (livros_comprados_aaaa_mm) mais a partição padrão livros_comprados_padrao.
+--   - A chave primária passa a ser (id, data_compra): em tabela particionada,
+--     toda restrição de unicidade precisa incluir a coluna de partição.
+--   - Por isso a unicidade das chaves de idempotência vai para a tabela
+--     livros_comprados_chaves, preenchida pelo CompraDAO na mesma instrução
+--     que grava a compra.
+--   - Os índices e chaves estrangeiras são recriados na tabela pai e valem
+--     para todas as partições.
+--
+-- São criadas partições do mês da compra mais antiga até três meses à frente;
+-- depois disso o sistema cria as partições seguintes (ParticoesComprasDAO).
+-- Partições antigas podem ser movidas para o schema arquivo.
+-- Requer migracao_livros_comprados_id.sql já aplicada.
+-- Executar uma única vez, com o sistema parado:
+--   psql -U postgres -d postgres -f migracao_livros_comprados_particionada.sql
+--
+
+BEGIN;
+
+ALTER TABLE public.livros_comprados RENAME TO livros_comprados_antiga;
+ALTER TABLE public.livros_comprados_antiga DROP CONSTRAINT fk_livros_comprados_cliente;
+ALTER TABLE public.livros_comprados_antiga DROP CONSTRAINT fk_livros_comprados_livro;
+ALTER TABLE public.livros_comprados_antiga DROP CONSTRAINT livros_comprados_pkey;
+ALTER TABLE public.livros_comprados_antiga DROP CONSTRAINT livros_comprados_chave_idempotencia_key;
+DROP INDEX public.livros_comprados_cliente_data_idx;
+DROP INDEX public.livros_comprados_data_compra_idx;
+DROP INDEX public.livros_comprados_livro_data_idx;
+ALTER TABLE public.livros_comprados_antiga ALTER COLUMN id DROP IDENTITY;
+
+CREATE TABLE public.livros_comprados (
+    id_cliente integer NOT NULL,
+    id_livro integer NOT NULL,
+    data_compra timestamp without time zone DEFAULT CURRENT_TIMESTAMP NOT NULL,
+    chave_idempotencia character varying(64),
+    id bigint NOT NULL GENERATED ALWAYS AS IDENTITY (SEQUENCE NAME public.livros_comprados_id_seq)
+)
+PARTITION BY RANGE (data_compra);
+
+ALTER TABLE public.livros_comprados OWNER TO postgres;
+
+DO $$
+DECLARE
+    mes date;
+    ultimo date;
+BEGIN
+    SELECT date_trunc('month', COALESCE(min(data_compra), CURRENT_TIMESTAMP))::date
+      INTO mes FROM public.livros_comprados_antiga;
+    SELECT (date_trunc('month', GREATEST(COALESCE(max(data_compra), CURRENT_TIMESTAMP), CURRENT_TIMESTAMP))
+            + interval '3 months')::date
+      INTO ultimo FROM public.livros_comprados_antiga;
+
+    WHILE mes <= ultimo LOOP
+        EXECUTE format('CREATE TABLE public.%I PARTITION OF public.livros_comprados FOR VALUES FROM (%L) TO (%L)',
+                       'livros_comprados_' || to_char(mes, 'YYYY_MM'), mes, (mes + interval '1 month')::date);
+        mes := (mes + interval '1 month')::date;
+    END LOOP;
+END
+$$;
+
+CREATE TABLE public.livros_comprados_padrao PARTITION OF public.livros_comprados DEFAULT;
+
+INSERT INTO public.livros_comprados (id_cliente, id_livro, data_compra, chave_idempotencia, id)
+    OVERRIDING SYSTEM VALUE
+    SELECT id_cliente, id_livro, data_compra, chave_idempotencia, id FROM public.livros_comprados_antiga;
+
+SELECT pg_catalog.setval('public.livros_comprados_id_seq', COALESCE(max(id), 1), max(id) IS NOT NULL)
+    FROM public.livros_comprados;
+
+CREATE TABLE public.livros_comprados_chaves (
+    chave character varying(64) NOT NULL,
+    criada_em timestamp without time zone DEFAULT CURRENT_TIMESTAMP NOT NULL,
+    CONSTRAINT livros_comprados_chaves_pkey PRIMARY KEY (chave)
+);
+
+ALTER TABLE public.livros_comprados_chaves OWNER TO postgres;
+
+INSERT INTO public.livros_comprados_chaves (chave, criada_em)
+    SELECT chave_idempotencia, data_compra FROM public.livros_comprados_antiga
+    WHERE chave_idempotencia IS NOT NULL;
+
+DROP TABLE public.livros_comprados_antiga;
+
+ALTER TABLE public.livros_comprados
+    ADD CONSTRAINT livros_comprados_pkey PRIMARY KEY (id, data_compra);
+
+CREATE INDEX livros_comprados_cliente_data_idx ON public.livros_comprados USING btree (id_cliente, data_compra);
+CREATE INDEX livros_comprados_data_compra_idx ON public.livros_comprados USING btree (data_compra, id);
+CREATE INDEX livros_comprados_livro_data_idx ON public.livros_comprados USING btree (id_livro, data_compra);
+
+ALTER TABLE public.livros_comprados
+    ADD CONSTRAINT fk_livros_comprados_cliente FOREIGN KEY (id_cliente) REFERENCES public.cliente(id) ON DELETE CASCADE;
+ALTER TABLE public.livros_comprados
+    ADD CONSTRAINT fk_livros_comprados_livro FOREIGN KEY (id_livro) REFERENCES public.livros(id) ON DELETE RESTRICT;
+
+CREATE SCHEMA IF NOT EXISTS arquivo;
+
+COMMIT;
+
+ANALYZE public.livros_comprados;
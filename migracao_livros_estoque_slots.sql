@@ -0,0 +1,29 @@
+--
+-- Migração: estoque fatiado dos livros mais vendidos (public.livros_estoque_slots)
+--
+-- Antes: estoque apenas em livros.quantidade.
+-- Depois: coluna livros.estoque_fatiado e a tabela livros_estoque_slots
+-- (id_livro, slot, quantidade), usada pelo LivroDAO e pelo CompraDAO quando o
+-- estoque de um livro é dividido em fatias (LivroControle.fatiarEstoqueLivro).
+--
+-- Nenhum livro é fatiado pela migração: todos continuam com estoque_fatiado = false.
+-- Executar uma única vez, com o sistema parado:
+--   psql -U postgres -d postgres -f migracao_livros_estoque_slots.sql
+--
+
+BEGIN;
+
+ALTER TABLE public.livros ADD COLUMN estoque_fatiado boolean DEFAULT false NOT NULL;
+
+CREATE TABLE public.livros_estoque_slots (
+    id_livro integer NOT NULL,
+    slot smallint NOT NULL,
+    quantidade integer DEFAULT 0 NOT NULL,
+    CONSTRAINT livros_estoque_slots_quantidade_check CHECK ((quantidade >= 0)),
+    CONSTRAINT livros_estoque_slots_pkey PRIMARY KEY (id_livro, slot),
+    CONSTRAINT fk_livros_estoque_slots_livro FOREIGN KEY (id_livro) REFERENCES public.livros(id) ON DELETE CASCADE
+);
+
+ALTER TABLE public.livros_estoque_slots OWNER TO postgres;
+
+COMMIT;
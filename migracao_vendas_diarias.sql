@@ -0,0 +1,73 @@
+--
+-- Migração: resumo de vendas por dia e livro (public.vendas_diarias)
+--
+-- Cria as tabelas usadas pelo VendasDiariasDAO:
+--   vendas_diarias                 unidades vendidas por (dia, livro)
+--   vendas_diarias_controle        marca de id da última atualização (uma linha)
+--   vendas_diarias_dias_alterados  dias com compras apagadas, a recalcular
+-- e o gatilho que marca os dias de compras apagadas (ex: exclusão de cliente,
+-- em cascata). O resumo é preenchido com todas as compras existentes.
+--
+-- Requer migracao_livros_comprados_particionada.sql já aplicada.
+-- Executar uma única vez, com o sistema parado:
+--   psql -U postgres -d postgres -f migracao_vendas_diarias.sql
+--
+
+BEGIN;
+
+CREATE TABLE public.vendas_diarias (
+    dia date NOT NULL,
+    id_livro integer NOT NULL,
+    quantidade integer NOT NULL,
+    CONSTRAINT vendas_diarias_pkey PRIMARY KEY (dia, id_livro),
+    CONSTRAINT fk_vendas_diarias_livro FOREIGN KEY (id_livro) REFERENCES public.livros(id) ON DELETE CASCADE
+);
+
+ALTER TABLE public.vendas_diarias OWNER TO postgres;
+
+CREATE INDEX vendas_diarias_livro_dia_idx ON public.vendas_diarias USING btree (id_livro, dia);
+
+CREATE TABLE public.vendas_diarias_controle (
+    unica boolean DEFAULT true NOT NULL,
+    ultimo_id bigint DEFAULT 0 NOT NULL,
+    id_pendente bigint DEFAULT 0 NOT NULL,
+    atualizado_em timestamp without time zone,
+    CONSTRAINT vendas_diarias_controle_pkey PRIMARY KEY (unica),
+    CONSTRAINT vendas_diarias_controle_unica_check CHECK (unica)
+);
+
+ALTER TABLE public.vendas_diarias_controle OWNER TO postgres;
+
+CREATE TABLE public.vendas_diarias_dias_alterados (
+    dia date NOT NULL,
+    CONSTRAINT vendas_diarias_dias_alterados_pkey PRIMARY KEY (dia)
+);
+
+ALTER TABLE public.vendas_diarias_dias_alterados OWNER TO postgres;
+
+CREATE FUNCTION public.marcar_dia_venda_apagada() RETURNS trigger
+    LANGUAGE plpgsql
+    AS $$
+BEGIN
+    IF TG_TABLE_SCHEMA = 'public' THEN -- Partições arquivadas não entram no recálculo
+        INSERT INTO public.vendas_diarias_dias_alterados (dia) VALUES (OLD.data_compra::date) ON CONFLICT DO NOTHING;
+    END IF;
+    RETURN NULL;
+END;
+$$;
+
+ALTER FUNCTION public.marcar_dia_venda_apagada() OWNER TO postgres;
+
+CREATE TRIGGER livros_comprados_marcar_dia_apagado AFTER DELETE ON public.livros_comprados
+    FOR EACH ROW EXECUTE FUNCTION public.marcar_dia_venda_apagada();
+
+-- Sistema parado: nenhuma compra nova entre o preenchimento e a marca
+INSERT INTO public.vendas_diarias (dia, id_livro, quantidade)
+    SELECT data_compra::date, id_livro, count(*) FROM public.livros_comprados GROUP BY 1, 2;
+
+INSERT INTO public.vendas_diarias_controle (unica, ultimo_id, id_pendente, atualizado_em)
+    SELECT true, COALESCE(max(id), 0), COALESCE(max(id), 0), now() FROM public.livros_comprados;
+
+COMMIT;
+
+ANALYZE public.vendas_diarias;